@@ -0,0 +1,498 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Sorts many independent graphs at once with TopologicalSort.sort(Graph).
+ * That sort keeps its state in local arrays and writes nothing to the
+ * nodes, so any number of them can run side by side (unlike the step by
+ * step simulation, which keeps costs, ranks and colors on the GraphNodes).
+ * A fixed number of workers, each on its own virtual thread when the JVM
+ * has them (Java 21 and later) or else on a platform thread, take the
+ * graphs from the input one at a time. That bounds how many graphs are
+ * being sorted at once, and a long (or endless) stream of graphs is read
+ * no faster than it is sorted. The graphs here are small, so a worker
+ * sorts many of them in a row instead of starting a thread for each,
+ * and hands its results over in small batches. A worker that has to wait
+ * for another one to finish reading hands its batch over first, and one
+ * that reads an input that is not a Collection leaves its batch where the
+ * caller takes it if nothing else arrives for a while, so finished
+ * results never sit behind a slow producer. The input is read
+ * under a ReentrantLock rather than a synchronized block, which would pin
+ * a virtual thread to its carrier while the input blocks.
+ * A graph must not be changed while it is in the batch.
+ * @author Phat Tran
+ */
+final class BatchSort {
+
+    /**
+     * a worker hands over its results once it has this many.
+     */
+    private static final int FLUSH_COUNT = 64;
+
+    /**
+     * or once this long has passed since it last did, in nanoseconds.
+     */
+    private static final long FLUSH_NANOS = 1000000L;
+
+    /**
+     * how long to wait for the workers to stop after a failure, in milliseconds.
+     */
+    private static final long STOP_MILLIS = 1000L;
+
+    /**
+     * not instantiable.
+     */
+    private BatchSort() {
+    }
+
+    /**
+     * Sorts the graphs with one sort per core at a time.
+     * @param graphs the graphs (for a Stream s, pass s::iterator)
+     * @return the results, in the order of the graphs
+     */
+    public static List<SortResult> sortAll(Iterable<? extends Graph<GraphNode, GraphEdge>> graphs) {
+        return sortAll(graphs, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Sorts the graphs and returns the results in submission order.
+     * @param graphs the graphs (for a Stream s, pass s::iterator)
+     * @param parallelism how many graphs may be sorted at the same time
+     * @return the results, in the order of the graphs
+     * @throws IllegalArgumentException if parallelism is not positive, or a
+     *                                  graph has a negative vertex id
+     */
+    public static List<SortResult> sortAll(Iterable<? extends Graph<GraphNode, GraphEdge>> graphs,
+            int parallelism) {
+        final ArrayList<SortResult> results = new ArrayList<>();
+        sortAll(graphs, parallelism, new ObjIntConsumer<SortResult>() {
+            public void accept(SortResult result, int index) {
+                while (results.size() <= index) {
+                    results.add(null);
+                }
+                results.set(index, result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Sorts the graphs and hands over each result as soon as it is done.
+     * The callback runs on the calling thread, never on two results at
+     * once, so it needs no locking of its own.
+     * @param graphs the graphs (for a Stream s, pass s::iterator)
+     * @param parallelism how many graphs may be sorted at the same time
+     * @param done receives each result with the position of its graph in the input
+     * @throws IllegalArgumentException if parallelism is not positive, or a
+     *                                  graph has a negative vertex id
+     */
+    public static void sortAll(Iterable<? extends Graph<GraphNode, GraphEdge>> graphs, int parallelism,
+            ObjIntConsumer<SortResult> done) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final Iterator<? extends Graph<GraphNode, GraphEdge>> it = graphs.iterator();
+        // a Collection is already in memory; anything else may block in hasNext() or next()
+        final boolean mayBlock = !(graphs instanceof Collection);
+        final ReentrantLock reading = new ReentrantLock();
+        final LinkedBlockingQueue<ArrayList<Finished>> finished = new LinkedBlockingQueue<>();
+        // the batch of the worker that is reading, while the input may block
+        final AtomicReference<ArrayList<Finished>> parked = new AtomicReference<>();
+        final AtomicInteger submitted = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executor = newExecutor();
+        int delivered = 0;
+        int workers = 0;
+        try {
+            // a worker takes the next graph only when it is done with the last one
+            for (; workers < parallelism; workers++) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        // results go over in small batches: a small graph sorts in a
+                        // few microseconds, about what waking up the caller costs
+                        ArrayList<Finished> batch = new ArrayList<>();
+                        long flushed = System.nanoTime();
+                        try {
+                            while (!failed.get()) {
+                                Graph<GraphNode, GraphEdge> graph;
+                                int index;
+                                if (!reading.tryLock()) {
+                                    // another worker is reading, maybe waiting on the input
+                                    batch = handOver(batch, finished);
+                                    reading.lockInterruptibly();
+                                }
+                                try {
+                                    // the caller takes a parked batch only if the read stalls
+                                    boolean park = mayBlock && !batch.isEmpty();
+                                    if (park) {
+                                        parked.set(batch);
+                                    }
+                                    try {
+                                        if (!it.hasNext()) {
+                                            break;
+                                        }
+                                        graph = it.next();
+                                    } finally {
+                                        if (park) {
+                                            batch = parked.getAndSet(null);
+                                            if (batch == null) {
+                                                batch = new ArrayList<>();
+                                                flushed = System.nanoTime();
+                                            }
+                                        }
+                                    }
+                                    index = submitted.getAndIncrement();
+                                } finally {
+                                    reading.unlock();
+                                }
+                                try {
+                                    batch.add(new Finished(index, TopologicalSort.sort(graph), null));
+                                } catch (RuntimeException e) {
+                                    failed.set(true);
+                                    batch.add(new Finished(index, null, e));
+                                }
+                                long now = System.nanoTime();
+                                if (batch.size() >= FLUSH_COUNT || now - flushed >= FLUSH_NANOS) {
+                                    batch = handOver(batch, finished);
+                                    flushed = now;
+                                }
+                            }
+                        } catch (RuntimeException e) {
+                            // the input itself failed
+                            failed.set(true);
+                            batch.add(new Finished(-1, null, e));
+                        } catch (InterruptedException e) {
+                            // stopped after the caller failed
+                            failed.set(true);
+                        } finally {
+                            batch.add(Finished.END);
+                            finished.add(batch);
+                        }
+                    }
+                });
+            }
+            while (workers > 0) {
+                ArrayList<Finished> next = finished.poll(FLUSH_NANOS, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    // nothing for a while: the reading worker may be stuck on the input
+                    next = parked.getAndSet(null);
+                    if (next == null) {
+                        continue;
+                    }
+                }
+                for (Finished f : next) {
+                    if (f == Finished.END) {
+                        workers--;
+                    } else {
+                        deliver(f, done);
+                        delivered++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted after " + delivered + " graphs", e);
+        } catch (RuntimeException e) {
+            failed.set(true);
+            throw e;
+        } finally {
+            if (workers == 0) {
+                executor.shutdown();
+            } else {
+                // a worker may be blocked on the input for good: interrupt it, and
+                // give up waiting on any that does not stop
+                executor.shutdownNow();
+                try {
+                    executor.awaitTermination(STOP_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands a worker's finished sorts over to the caller.
+     * @param batch the finished sorts
+     * @param finished where the caller takes them from
+     * @return an empty batch to go on with
+     */
+    private static ArrayList<Finished> handOver(ArrayList<Finished> batch,
+            LinkedBlockingQueue<ArrayList<Finished>> finished) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        finished.add(batch);
+        return new ArrayList<>();
+    }
+
+    /**
+     * Passes one result on, or throws what its sort threw.
+     * @param f the finished sort
+     * @param done receives the result
+     */
+    private static void deliver(Finished f, ObjIntConsumer<SortResult> done) {
+        if (f.error != null) {
+            throw f.error;
+        }
+        done.accept(f.result, f.index);
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task if the JVM
+     * has them (looked up by name, so this class still compiles and runs
+     * on older JVMs), or else a platform thread.
+     * @return the executor
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Tells whether the tasks run on virtual threads in this JVM.
+     * @return true for virtual threads, false for platform threads
+     */
+    static boolean usesVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The outcome of one sort.
+     */
+    private static final class Finished {
+        /**
+         * what a worker sends when it stops.
+         */
+        static final Finished END = new Finished(-1, null, null);
+
+        /**
+         * position of the graph in the input.
+         */
+        final int index;
+
+        /**
+         * the result, or null if the sort failed.
+         */
+        final SortResult result;
+
+        /**
+         * what the sort threw, or null.
+         */
+        final RuntimeException error;
+
+        /**
+         * constructor.
+         * @param index position of the graph in the input
+         * @param result the result, or null if the sort failed
+         * @param error what the sort threw, or null
+         */
+        Finished(int index, SortResult result, RuntimeException error) {
+            this.index = index;
+            this.result = result;
+            this.error = error;
+        }
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        // 20000 small random DAGs, 40 nodes each, edges from lower to higher id
+        java.util.Random rand = new java.util.Random(0);
+        ArrayList<SparseThreeTenGraph> graphs = new ArrayList<>();
+        for (int g = 0; g < 20000; g++) {
+            SparseThreeTenGraph graph = new SparseThreeTenGraph();
+            GraphNode[] nodes = new GraphNode[40];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = new GraphNode(nodes.length - 1 - i);
+                graph.addVertex(nodes[i]);
+            }
+            for (int k = 0; k < 80; k++) {
+                int a = rand.nextInt(nodes.length);
+                int b = rand.nextInt(nodes.length);
+                if (a != b) {
+                    graph.addEdge(new GraphEdge(k), nodes[Math.min(a, b)], nodes[Math.max(a, b)]);
+                }
+            }
+            graphs.add(graph);
+        }
+
+        // in submission order, the same results as one by one, and about as fast
+        // (best of 5 runs each, for a list and for a stream that is not a Collection)
+        ArrayList<SortResult> one = null;
+        List<SortResult> batch = null;
+        List<SortResult> streamed = null;
+        long sequentialMillis = Long.MAX_VALUE;
+        long batchMillis = Long.MAX_VALUE;
+        long streamMillis = Long.MAX_VALUE;
+        final ArrayList<SparseThreeTenGraph> source = graphs;
+        Iterable<SparseThreeTenGraph> stream = new Iterable<SparseThreeTenGraph>() {
+            public Iterator<SparseThreeTenGraph> iterator() {
+                return source.stream().iterator();
+            }
+        };
+        for (int round = 0; round < 5; round++) {
+            System.gc();
+            long begin = System.nanoTime();
+            one = new ArrayList<>();
+            for (SparseThreeTenGraph graph : graphs) {
+                one.add(TopologicalSort.sort(graph));
+            }
+            sequentialMillis = Math.min(sequentialMillis, (System.nanoTime() - begin) / 1000000);
+            System.gc();
+            begin = System.nanoTime();
+            batch = sortAll(graphs);
+            batchMillis = Math.min(batchMillis, (System.nanoTime() - begin) / 1000000);
+            System.gc();
+            begin = System.nanoTime();
+            streamed = sortAll(stream);
+            streamMillis = Math.min(streamMillis, (System.nanoTime() - begin) / 1000000);
+        }
+        boolean same = batch.size() == graphs.size() && streamed.size() == graphs.size();
+        for (int g = 0; g < graphs.size() && same; g++) {
+            same = Arrays.equals(one.get(g).getOrder(), batch.get(g).getOrder()) && !batch.get(g).hasCycle()
+                    && Arrays.equals(one.get(g).getOrder(), streamed.get(g).getOrder());
+        }
+        // one core runs the workers one after another, so allow a little for the hand-overs
+        long allowed = sequentialMillis * 3 / 2 + 20;
+        if (same && batchMillis <= allowed && streamMillis <= allowed) {
+            System.out.println("Yay 1 (" + (usesVirtualThreads() ? "virtual" : "platform") + " threads, "
+                    + Runtime.getRuntime().availableProcessors() + " cores: " + batchMillis
+                    + " ms, as a stream " + streamMillis + " ms, one by one " + sequentialMillis + " ms)");
+        }
+
+        // as they complete: every graph once, with at most 2 sorts at a time
+        final int[] seen = new int[graphs.size()];
+        sortAll(graphs, 2, new ObjIntConsumer<SortResult>() {
+            public void accept(SortResult result, int index) {
+                seen[index]++;
+            }
+        });
+        boolean once = true;
+        for (int count : seen) {
+            once &= count == 1;
+        }
+        if (once) {
+            System.out.println("Yay 2");
+        }
+
+        // a graph that cannot be sorted fails the batch
+        try {
+            sortAll(Arrays.asList(graphs.get(0), null, graphs.get(1)), 2);
+        } catch (RuntimeException e) {
+            System.out.println("Yay 3");
+        }
+
+        // a producer that stalls for half a second after 200 graphs: those 200 arrive before it goes on
+        final List<SparseThreeTenGraph> first = graphs.subList(0, 200);
+        final long[] stalled = new long[1];
+        Iterable<SparseThreeTenGraph> slow = new Iterable<SparseThreeTenGraph>() {
+            public Iterator<SparseThreeTenGraph> iterator() {
+                return new Iterator<SparseThreeTenGraph>() {
+                    private int next = 0;
+
+                    public boolean hasNext() {
+                        if (next == first.size() && stalled[0] == 0) {
+                            stalled[0] = System.nanoTime();
+                            try {
+                                Thread.sleep(500);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return next < first.size();
+                    }
+
+                    public SparseThreeTenGraph next() {
+                        return first.get(next++);
+                    }
+                };
+            }
+        };
+        final long[] lastArrival = new long[1];
+        final int[] arrived = new int[1];
+        sortAll(slow, 4, new ObjIntConsumer<SortResult>() {
+            public void accept(SortResult result, int index) {
+                lastArrival[0] = System.nanoTime();
+                arrived[0]++;
+            }
+        });
+        long lateMillis = (lastArrival[0] - stalled[0]) / 1000000;
+        if (arrived[0] == first.size() && lateMillis < 250) {
+            System.out.println("Yay 4 (last result " + lateMillis + " ms into the stall)");
+        }
+
+        // a sort that fails while another worker waits on an input that never goes on:
+        // the batch fails without waiting for the input
+        final java.util.concurrent.CountDownLatch waiting = new java.util.concurrent.CountDownLatch(1);
+        final SparseThreeTenGraph failing = new SparseThreeTenGraph() {
+            public Collection<GraphNode> getVertices() {
+                try {
+                    waiting.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException();
+            }
+        };
+        Iterable<SparseThreeTenGraph> stuck = new Iterable<SparseThreeTenGraph>() {
+            public Iterator<SparseThreeTenGraph> iterator() {
+                return new Iterator<SparseThreeTenGraph>() {
+                    private int next = 0;
+
+                    public boolean hasNext() {
+                        if (next == 1) {
+                            waiting.countDown();
+                            try {
+                                Thread.sleep(Long.MAX_VALUE);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return false;
+                        }
+                        return true;
+                    }
+
+                    public SparseThreeTenGraph next() {
+                        next++;
+                        return failing;
+                    }
+                };
+            }
+        };
+        long begin = System.nanoTime();
+        try {
+            sortAll(stuck, 2);
+        } catch (RuntimeException e) {
+            long failMillis = (System.nanoTime() - begin) / 1000000;
+            if (failMillis < STOP_MILLIS) {
+                System.out.println("Yay 5 (failed after " + failMillis + " ms)");
+            }
+        }
+    }
+}
@@ -0,0 +1,479 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A priority queue of GraphNodes keyed on cost, for small non-negative
+ * costs such as in-degrees. It hands out nodes in exactly the order of
+ * WeissPriorityQueue (lowest cost, then lowest id) and can be used in its
+ * place (see UpdatableQueue).
+ * <p>
+ * There is one bucket per cost, an array of the ids in it. Buckets above
+ * the lowest non-empty one are kept in no order, so moving a node between
+ * them is O(1). The lowest bucket, the one being drained, is turned into
+ * a binary heap of ids the first time a node is taken from it (O(b) for
+ * b ids, paid for by the adds that filled it) and stays one until it
+ * empties; adding to it or taking from it is O(lg b).
+ * Node ids must be non-negative. The queue takes O(largest id) for the
+ * per-id arrays, O(largest cost) for the bucket headers and O(size) for
+ * the buckets themselves, which shrink as they empty.
+ * @author Phat Tran
+ */
+public class BucketQueue implements UpdatableQueue<GraphNode> {
+
+	/**
+	 * Marks "not queued" in bucketOf.
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * Smallest array a bucket is given.
+	 */
+	private static final int MIN_BUCKET = 4;
+
+	/**
+	 * The queued nodes, indexed by id.
+	 */
+	private GraphNode[] nodes = new GraphNode[16];
+
+	/**
+	 * The bucket (cost) each id is in, or NONE.
+	 */
+	private int[] bucketOf = new int[16];
+
+	/**
+	 * Where each id is in its bucket.
+	 */
+	private int[] slot = new int[16];
+
+	/**
+	 * The ids in each bucket, indexed by cost (null while empty).
+	 */
+	private int[][] buckets = new int[16][];
+
+	/**
+	 * Number of ids in each bucket.
+	 */
+	private int[] count = new int[16];
+
+	/**
+	 * Whether each bucket is a heap of ids (lowest id first).
+	 */
+	private boolean[] ordered = new boolean[16];
+
+	/**
+	 * No bucket below this one is non-empty.
+	 */
+	private int low = 0;
+
+	/**
+	 * Number of queued nodes.
+	 */
+	private int size = 0;
+
+	/**
+	 * constructor.
+	 */
+	public BucketQueue() {
+		Arrays.fill(bucketOf, NONE);
+	}
+
+	/**
+	 * Adds a node with its current cost.
+	 * @param x the node
+	 * @return true, or false if x was already queued
+	 * @throws IllegalArgumentException if x is null or its id or cost is negative
+	 */
+	public boolean add(GraphNode x) {
+		// amortized O(1), O(lg b) into the lowest bucket
+		if (x == null || x.getId() < 0 || x.getCost() < 0) {
+			throw new IllegalArgumentException();
+		}
+		int id = x.getId();
+		if (id >= nodes.length) {
+			int capacity = Math.max(id + 1, nodes.length * 2);
+			int old = nodes.length;
+			nodes = Arrays.copyOf(nodes, capacity);
+			bucketOf = Arrays.copyOf(bucketOf, capacity);
+			Arrays.fill(bucketOf, old, capacity, NONE);
+			slot = Arrays.copyOf(slot, capacity);
+		}
+		if (bucketOf[id] != NONE) {
+			return false;
+		}
+		nodes[id] = x;
+		link(id, x.getCost());
+		size++;
+		return true;
+	}
+
+	/**
+	 * Moves a node to the bucket of its (changed) cost.
+	 * @param x the node
+	 * @return true, or false if x is not queued
+	 */
+	public boolean update(GraphNode x) {
+		// amortized O(1), O(lg b) into or out of the lowest bucket
+		if (!contains(x) || x.getCost() < 0) {
+			return false;
+		}
+		if (bucketOf[x.getId()] != x.getCost()) {
+			unlink(x.getId());
+			link(x.getId(), x.getCost());
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the node with the lowest cost, lowest id first.
+	 * @return the node
+	 * @throws NoSuchElementException if empty
+	 */
+	public GraphNode element() {
+		return nodes[min()];
+	}
+
+	/**
+	 * Removes the node with the lowest cost, lowest id first.
+	 * @return the node
+	 * @throws NoSuchElementException if empty
+	 */
+	public GraphNode remove() {
+		// amortized O(lg b)
+		int id = min();
+		GraphNode x = nodes[id];
+		unlink(id);
+		nodes[id] = null;
+		size--;
+		return x;
+	}
+
+	/**
+	 * Removes a node from anywhere in the queue.
+	 * @param x the node
+	 * @return true, or false if x is not queued
+	 */
+	public boolean remove(GraphNode x) {
+		// amortized O(1), O(lg b) from the lowest bucket
+		if (!contains(x)) {
+			return false;
+		}
+		unlink(x.getId());
+		nodes[x.getId()] = null;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Tells whether a node is queued.
+	 * @param x the node
+	 * @return true if it is
+	 */
+	public boolean contains(GraphNode x) {
+		// O(1)
+		return x != null && x.getId() >= 0 && x.getId() < nodes.length && nodes[x.getId()] != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void clear() {
+		Arrays.fill(nodes, null);
+		Arrays.fill(bucketOf, NONE);
+		Arrays.fill(buckets, null);
+		Arrays.fill(count, 0);
+		Arrays.fill(ordered, false);
+		low = 0;
+		size = 0;
+	}
+
+	/**
+	 * Iterates over the queued nodes by cost, in no particular order
+	 * within a cost. The queue must not be changed while iterating.
+	 * @return the iterator
+	 */
+	public Iterator<GraphNode> iterator() {
+		return new Iterator<GraphNode>() {
+			private int bucket = low;
+			private int index = 0;
+			private int left = size;
+
+			public boolean hasNext() {
+				return left > 0;
+			}
+
+			public GraphNode next() {
+				if (left == 0) {
+					throw new NoSuchElementException();
+				}
+				while (index == count[bucket]) {
+					bucket++;
+					index = 0;
+				}
+				left--;
+				return nodes[buckets[bucket][index++]];
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Finds the id that comes out next, making its bucket a heap first if
+	 * it is not one yet.
+	 * @return the id
+	 * @throws NoSuchElementException if empty
+	 */
+	private int min() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		while (count[low] == 0) {
+			low++;
+		}
+		if (!ordered[low]) {
+			for (int i = count[low] / 2 - 1; i >= 0; i--) {
+				siftDown(buckets[low], count[low], i);
+			}
+			ordered[low] = true;
+		}
+		return buckets[low][0];
+	}
+
+	/**
+	 * Puts an id into a bucket.
+	 * @param id the id
+	 * @param cost the bucket
+	 */
+	private void link(int id, int cost) {
+		if (cost >= buckets.length) {
+			int capacity = Math.max(cost + 1, buckets.length * 2);
+			buckets = Arrays.copyOf(buckets, capacity);
+			count = Arrays.copyOf(count, capacity);
+			ordered = Arrays.copyOf(ordered, capacity);
+		}
+		int n = count[cost];
+		if (buckets[cost] == null) {
+			buckets[cost] = new int[MIN_BUCKET];
+		} else if (n == buckets[cost].length) {
+			buckets[cost] = Arrays.copyOf(buckets[cost], 2 * n);
+		}
+		bucketOf[id] = cost;
+		place(buckets[cost], n, id);
+		count[cost] = n + 1;
+		if (ordered[cost]) {
+			siftUp(buckets[cost], n);
+		}
+		low = Math.min(low, cost);
+	}
+
+	/**
+	 * Takes an id out of its bucket: the last id of the bucket fills the
+	 * hole (and is sifted into place if the bucket is a heap).
+	 * @param id the id
+	 */
+	private void unlink(int id) {
+		int cost = bucketOf[id];
+		bucketOf[id] = NONE;
+		int[] ids = buckets[cost];
+		int i = slot[id];
+		int n = --count[cost];
+		if (i < n) {
+			int moved = ids[n];
+			place(ids, i, moved);
+			if (ordered[cost]) {
+				siftDown(ids, n, i);
+				siftUp(ids, slot[moved]);
+			}
+		}
+		if (n == 0) {
+			buckets[cost] = null;
+			ordered[cost] = false;
+		} else if (ids.length > MIN_BUCKET && n <= ids.length / 4) {
+			buckets[cost] = Arrays.copyOf(ids, ids.length / 2);
+		}
+	}
+
+	/**
+	 * Stores an id in a bucket and records where it is.
+	 * @param ids the bucket
+	 * @param i where
+	 * @param id the id
+	 */
+	private void place(int[] ids, int i, int id) {
+		ids[i] = id;
+		slot[id] = i;
+	}
+
+	/**
+	 * Moves an id up a heap bucket until its parent has a lower id.
+	 * @param ids the bucket
+	 * @param i where the id is
+	 */
+	private void siftUp(int[] ids, int i) {
+		int id = ids[i];
+		while (i > 0 && ids[(i - 1) / 2] > id) {
+			place(ids, i, ids[(i - 1) / 2]);
+			i = (i - 1) / 2;
+		}
+		place(ids, i, id);
+	}
+
+	/**
+	 * Moves an id down a heap bucket until its children have higher ids.
+	 * @param ids the bucket
+	 * @param n number of ids in it
+	 * @param i where the id is
+	 */
+	private void siftDown(int[] ids, int n, int i) {
+		int id = ids[i];
+		while (2 * i + 1 < n) {
+			int child = 2 * i + 1;
+			if (child + 1 < n && ids[child + 1] < ids[child]) {
+				child++;
+			}
+			if (ids[child] > id) {
+				break;
+			}
+			place(ids, i, ids[child]);
+			i = child;
+		}
+		place(ids, i, id);
+	}
+
+	/**
+	 * test cases.
+	 * @param args command line arguments
+	 */
+	public static void main(String[] args) {
+		// random costs and decreases, checked against WeissPriorityQueue
+		java.util.Random rand = new java.util.Random(0);
+		int n = 2000;
+		GraphNode[] a = new GraphNode[n];
+		GraphNode[] b = new GraphNode[n];
+		BucketQueue buckets = new BucketQueue();
+		WeissPriorityQueue<GraphNode> heap = new WeissPriorityQueue<>();
+		for (int i = 0; i < n; i++) {
+			int id = (i * 7919) % n;// added out of id order
+			a[id] = new GraphNode(id);
+			b[id] = new GraphNode(id);
+			a[id].setCost(rand.nextInt(6));
+			b[id].setCost(a[id].getCost());
+			buckets.add(a[id]);
+			heap.add(b[id]);
+		}
+		boolean same = buckets.size() == n && !buckets.add(a[0]);
+		while (!heap.isEmpty()) {
+			same &= buckets.element().getId() == heap.element().getId();
+			GraphNode x = buckets.remove();
+			same &= x.getId() == heap.remove().getId();
+			for (int k = 0; k < 3; k++) {
+				int id = rand.nextInt(n);
+				if (buckets.contains(a[id]) && a[id].getCost() > 0) {
+					a[id].setCost(a[id].getCost() - 1);
+					b[id].setCost(a[id].getCost());
+					buckets.update(a[id]);
+					heap.update(b[id]);
+				}
+			}
+		}
+		if (same && buckets.isEmpty() && !buckets.contains(a[5]))
+			System.out.println("Yay 1");
+
+		// iteration goes by cost; removal from the middle
+		buckets.clear();
+		for (int i = 0; i < 6; i++) {
+			a[i].setCost(i % 3);
+			buckets.add(a[i]);
+		}
+		StringBuilder costs = new StringBuilder();
+		int idSum = 0;
+		for (GraphNode x : buckets) {
+			costs.append(x.getCost());
+			idSum += x.getId();
+		}
+		boolean middle = costs.toString().equals("001122") && idSum == 15 && buckets.remove(a[3])
+				&& !buckets.contains(a[3]) && buckets.remove().getId() == 0 && buckets.element().getId() == 1;
+		// removals from the middle of the bucket being drained keep it in id order
+		buckets.clear();
+		for (int i = 0; i < 500; i++) {
+			a[i].setCost(rand.nextInt(3));
+			buckets.add(a[i]);
+		}
+		buckets.element();
+		for (int i = 0; i < 500; i += 3) {
+			middle &= buckets.remove(a[i]);
+		}
+		GraphNode last = buckets.remove();
+		int left = 1;
+		while (!buckets.isEmpty()) {
+			GraphNode x = buckets.remove();
+			middle &= last.getCost() < x.getCost() || last.getCost() == x.getCost() && last.getId() < x.getId();
+			last = x;
+			left++;
+		}
+		if (middle && left == 333)
+			System.out.println("Yay 2");
+
+		// a ring: every node keeps cost 1, and they must still come out in O(n lg n)
+		int ring = 200000;
+		BucketQueue stuck = new BucketQueue();
+		for (int i = 0; i < ring; i++) {
+			GraphNode x = new GraphNode(i);
+			x.setCost(1);
+			stuck.add(x);
+		}
+		long begin = System.nanoTime();
+		boolean inOrder = true;
+		for (int i = 0; i < ring; i++) {
+			inOrder &= stuck.remove().getId() == i;
+		}
+		long millis = (System.nanoTime() - begin) / 1000000;
+		if (inOrder && stuck.isEmpty() && millis < 1000)
+			System.out.println("Yay 3 (" + ring + " pops in " + millis + " ms)");
+
+		// a hub whose cost walks down through every value below 100000, next to
+		// 100000 nodes waiting at cost 0: the buckets it leaves must not keep
+		// memory that grows with the ids
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+		BucketQueue star = new BucketQueue();
+		GraphNode hub = new GraphNode(ring);
+		hub.setCost(ring);
+		star.add(hub);
+		for (int i = 0; i < ring / 2; i++) {
+			GraphNode x = new GraphNode(i);
+			x.setCost(0);
+			star.add(x);
+		}
+		while (hub.getCost() > 0) {
+			hub.setCost(hub.getCost() - 1);
+			star.update(hub);
+		}
+		System.gc();
+		long used = (runtime.totalMemory() - runtime.freeMemory() - before) / (1024 * 1024);
+		boolean hubLast = true;
+		for (int i = 0; i < ring / 2; i++) {
+			hubLast &= star.remove().getId() == i;
+		}
+		if (hubLast && star.remove() == hub && star.isEmpty() && used < 64)
+			System.out.println("Yay 4 (" + used + " MB)");
+	}
+}
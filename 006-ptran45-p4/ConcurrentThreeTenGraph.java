@@ -0,0 +1,900 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import org.apache.commons.collections15.Factory;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A directed graph that many threads can add to, remove from and read at
+ * the same time.
+ * <p>
+ * Vertices and edges are kept in ConcurrentHashMaps. Every vertex holds
+ * its outgoing and incoming edges in two append-only arrays with a
+ * volatile published length: an add fills the next slot and then
+ * publishes the new length, and the array is only copied (to twice its
+ * size) when it is full, so adding is amortized O(1) even at a hub. A
+ * slot below a published length never changes, so a reader that takes
+ * the length first has a stable prefix; a removal publishes a new list
+ * without the edge instead (O(1) for the last edge, O(d) otherwise).
+ * Every vertex also maps each destination to its outgoing edge, for the
+ * O(1) duplicate check of addEdge and for findEdge. Writers take the
+ * lock of the stripe (id mod STRIPES) of both endpoints, always in
+ * stripe order, so two writers only wait for each other when they touch
+ * vertices in the same stripe. Readers never lock.
+ * <p>
+ * Consistency model:
+ * <ul>
+ * <li>addVertex, addEdge, removeEdge and removeVertex are atomic.
+ * An edge is added or removed under the locks of both of its endpoints,
+ * and a vertex that is being removed accepts no new edges.</li>
+ * <li>Per-vertex reads (inDegree, outDegree, getInEdges, getOutEdges,
+ * getPredecessors, getSuccessors, findEdge) see one consistent snapshot
+ * of that vertex's adjacency: the degree always equals the number of
+ * edges the collections hold. The collections are snapshots, not live
+ * views, so they never change while being iterated.</li>
+ * <li>A read of one vertex is not synchronized with a read of another,
+ * so a reader may see an edge at its source a moment before it sees it
+ * at its destination.</li>
+ * <li>getVertices() and getEdges() are weakly consistent live views
+ * (the ConcurrentHashMap rules), and getVertexCount()/getEdgeCount()
+ * are exact whenever no write is in progress.</li>
+ * <li>Unlike ThreeTenGraph, the counts never touch the static
+ * GraphNode.nodeCount or GraphEdge.edgeCount.</li>
+ * <li>The color, cost and rank of the nodes are not protected;
+ * an algorithm such as TopologicalSort should run once writers are done
+ * (or on freeze()).</li>
+ * </ul>
+ * Edges of a vertex are reported in the order they were added, and
+ * vertices in hash order, so the depth first traversal may differ
+ * from ThreeTenGraph.
+ * @author Phat Tran
+ */
+class ConcurrentThreeTenGraph extends ThreeTenAbstractGraph {
+
+    /**
+     * number of lock stripes, a power of two.
+     */
+    private static final int STRIPES = 64;
+
+    /**
+     * shared empty adjacency list.
+     */
+    private static final EdgeList NO_EDGES = new EdgeList(new Edge[0], 0, 0);
+
+    /**
+     * a vertex with its adjacency.
+     */
+    private static final class Vertex {
+        /**
+         * the node.
+         */
+        final GraphNode node;
+
+        /**
+         * outgoing edges; appended to or replaced under the stripe lock.
+         */
+        volatile EdgeList out = NO_EDGES;
+
+        /**
+         * incoming edges; appended to or replaced under the stripe lock.
+         */
+        volatile EdgeList in = NO_EDGES;
+
+        /**
+         * the outgoing edge to each destination, changed under the stripe lock.
+         */
+        final ConcurrentHashMap<Vertex, Edge> targets = new ConcurrentHashMap<>(4);
+
+        /**
+         * set (under the stripe lock) once removeVertex() has started.
+         */
+        boolean removed;
+
+        /**
+         * constructor.
+         * @param node the node
+         */
+        Vertex(GraphNode node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * an edge with its endpoints.
+     */
+    private static final class Edge {
+        /**
+         * the edge.
+         */
+        final GraphEdge edge;
+
+        /**
+         * the source.
+         */
+        final Vertex from;
+
+        /**
+         * the destination.
+         */
+        final Vertex to;
+
+        /**
+         * constructor.
+         * @param edge the edge
+         * @param from the source
+         * @param to the destination
+         */
+        Edge(GraphEdge edge, Vertex from, Vertex to) {
+            this.edge = edge;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * an adjacency list: a prefix of an array that only grows at the end.
+     */
+    private static final class EdgeList {
+        /**
+         * the edges; no slot below a published size is ever changed.
+         */
+        final Edge[] items;
+
+        /**
+         * appends may fill the slots below this (a list that shares items
+         * with a longer one may not fill any).
+         */
+        final int limit;
+
+        /**
+         * number of edges, written after the slot it publishes.
+         */
+        volatile int size;
+
+        /**
+         * constructor.
+         * @param items the edges
+         * @param limit how far appends may fill items
+         * @param size number of edges
+         */
+        EdgeList(Edge[] items, int limit, int size) {
+            this.items = items;
+            this.limit = limit;
+            this.size = size;
+        }
+    }
+
+    /**
+     * the vertices.
+     */
+    private final ConcurrentHashMap<GraphNode, Vertex> vertices;
+
+    /**
+     * the edges.
+     */
+    private final ConcurrentHashMap<GraphEdge, Edge> edges;
+
+    /**
+     * one lock per stripe of vertex ids.
+     */
+    private final Object[] locks;
+
+    /**
+     * constructor.
+     */
+    public ConcurrentThreeTenGraph() {
+        this(16, 16);
+    }
+
+    /**
+     * constructor with an expected size, to avoid rehashing while loading.
+     * @param vertexCapacity expected number of vertices
+     * @param edgeCapacity expected number of edges
+     */
+    public ConcurrentThreeTenGraph(int vertexCapacity, int edgeCapacity) {
+        vertices = new ConcurrentHashMap<>(Math.max(vertexCapacity, 1));
+        edges = new ConcurrentHashMap<>(Math.max(edgeCapacity, 1));
+        locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the stripe of a vertex.
+     * @param v the vertex
+     * @return the stripe
+     */
+    private static int stripe(Vertex v) {
+        return v.node.getId() & (STRIPES - 1);
+    }
+
+    /**
+     * Adds e at the end of an adjacency list, in place if there is room.
+     * @param adj adjacency list
+     * @param e the edge
+     * @return the list to publish (adj itself, or a bigger copy)
+     */
+    private static EdgeList append(EdgeList adj, Edge e) {
+        // amortized O(1)
+        int n = adj.size;
+        if (n < adj.limit) {
+            adj.items[n] = e;
+            adj.size = n + 1;
+            return adj;
+        }
+        Edge[] grown = new Edge[Math.max(4, 2 * n)];
+        System.arraycopy(adj.items, 0, grown, 0, n);
+        grown[n] = e;
+        return new EdgeList(grown, grown.length, n + 1);
+    }
+
+    /**
+     * Returns an adjacency list without e; adj itself is left as it is for
+     * the readers that have it.
+     * @param adj adjacency list
+     * @param e the edge, which must be in adj
+     * @return the new list
+     */
+    private static EdgeList without(EdgeList adj, Edge e) {
+        // O(1) for the last edge, O(d) otherwise
+        int n = adj.size;
+        if (adj.items[n - 1] == e) {
+            return new EdgeList(adj.items, n - 1, n - 1);
+        }
+        Edge[] copy = new Edge[n - 1];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (adj.items[i] != e) {
+                copy[j++] = adj.items[i];
+            }
+        }
+        return new EdgeList(copy, copy.length, copy.length);
+    }
+
+    /**
+     * Returns a view of all edges in this graph.
+     * @return a weakly consistent, read-only Collection view of all edges
+     */
+    public Collection<GraphEdge> getEdges() {
+        return Collections.unmodifiableSet(edges.keySet());
+    }
+
+    /**
+     * Returns a view of all vertices in this graph.
+     * @return a weakly consistent, read-only Collection view of all vertices
+     */
+    public Collection<GraphNode> getVertices() {
+        return Collections.unmodifiableSet(vertices.keySet());
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     * @return the number of edges in this graph
+     */
+    public int getEdgeCount() {
+        return edges.size();
+    }
+
+    /**
+     * Returns the number of vertices in this graph.
+     * @return the number of vertices in this graph
+     */
+    public int getVertexCount() {
+        return vertices.size();
+    }
+
+    /**
+     * Returns true if this graph's vertex collection contains vertex.
+     * @param vertex the vertex whose presence is being queried
+     * @return true iff this graph contains a vertex vertex
+     */
+    public boolean containsVertex(GraphNode vertex) {
+        // O(1)
+        return vertex != null && vertices.containsKey(vertex);
+    }
+
+    /**
+     * Returns true if this graph's edge collection contains edge.
+     * @param edge the edge whose presence is being queried
+     * @return true iff this graph contains an edge edge
+     */
+    public boolean containsEdge(GraphEdge edge) {
+        // O(1)
+        return edge != null && edges.containsKey(edge);
+    }
+
+    /**
+     * Returns the vertex record of a node.
+     * @param vertex the node
+     * @return the record, or null if vertex is not in the graph
+     */
+    private Vertex lookup(GraphNode vertex) {
+        return (vertex == null) ? null : vertices.get(vertex);
+    }
+
+    /**
+     * Returns a snapshot of the incoming edges incident to vertex.
+     * @param vertex the vertex whose incoming edges are to be returned
+     * @return a read-only snapshot of the incoming edges incident
+     *         to vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphEdge> getInEdges(GraphNode vertex) {
+        // O(1)
+        Vertex v = lookup(vertex);
+        if (v == null) {
+            return null;
+        }
+        return new Snapshot<GraphEdge>(v.in) {
+            GraphEdge map(Edge e) {
+                return e.edge;
+            }
+        };
+    }
+
+    /**
+     * Returns a snapshot of the outgoing edges incident to vertex.
+     * @param vertex the vertex whose outgoing edges are to be returned
+     * @return a read-only snapshot of the outgoing edges incident
+     *         to vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphEdge> getOutEdges(GraphNode vertex) {
+        // O(1)
+        Vertex v = lookup(vertex);
+        if (v == null) {
+            return null;
+        }
+        return new Snapshot<GraphEdge>(v.out) {
+            GraphEdge map(Edge e) {
+                return e.edge;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of incoming edges incident to vertex.
+     * @param vertex the vertex whose indegree is to be calculated
+     * @return the number of incoming edges incident to vertex
+     */
+    public int inDegree(GraphNode vertex) {
+        // O(1)
+        Vertex v = lookup(vertex);
+        return (v == null) ? 0 : v.in.size;
+    }
+
+    /**
+     * Returns the number of outgoing edges incident to vertex.
+     * @param vertex the vertex whose outdegree is to be calculated
+     * @return the number of outgoing edges incident to vertex
+     */
+    public int outDegree(GraphNode vertex) {
+        // O(1)
+        Vertex v = lookup(vertex);
+        return (v == null) ? 0 : v.out.size;
+    }
+
+    /**
+     * Returns a snapshot of the predecessors of vertex.
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return a read-only snapshot of the predecessors of
+     *         vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphNode> getPredecessors(GraphNode vertex) {
+        // O(1), iterating is O(degree)
+        Vertex v = lookup(vertex);
+        if (v == null) {
+            return null;
+        }
+        return new Snapshot<GraphNode>(v.in) {
+            GraphNode map(Edge e) {
+                return e.from.node;
+            }
+        };
+    }
+
+    /**
+     * Returns a snapshot of the successors of vertex.
+     * @param vertex the vertex whose successors are to be returned
+     * @return a read-only snapshot of the successors of
+     *         vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphNode> getSuccessors(GraphNode vertex) {
+        // O(1), iterating is O(degree)
+        Vertex v = lookup(vertex);
+        if (v == null) {
+            return null;
+        }
+        return new Snapshot<GraphNode>(v.out) {
+            GraphNode map(Edge e) {
+                return e.to.node;
+            }
+        };
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the source.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the source of directedEdge, or null if it is not in this graph
+     */
+    public GraphNode getSource(GraphEdge directedEdge) {
+        // O(1)
+        Edge e = (directedEdge == null) ? null : edges.get(directedEdge);
+        return (e == null) ? null : e.from.node;
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the destination.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the destination of directedEdge, or null if it is not in this graph
+     */
+    public GraphNode getDest(GraphEdge directedEdge) {
+        // O(1)
+        Edge e = (directedEdge == null) ? null : edges.get(directedEdge);
+        return (e == null) ? null : e.to.node;
+    }
+
+    /**
+     * Returns the edge that connects v1 to v2.
+     * @param v1 first vertex
+     * @param v2 second vertex
+     * @return an edge that connects v1 to v2
+     *         or null if no such edge exists (or either vertex is not present).
+     */
+    public GraphEdge findEdge(GraphNode v1, GraphNode v2) {
+        // O(1)
+        Vertex from = lookup(v1);
+        Vertex to = lookup(v2);
+        if (from == null || to == null) {
+            return null;
+        }
+        Edge e = from.targets.get(to);
+        return (e == null) ? null : e.edge;
+    }
+
+    /**
+     * Adds vertex to this graph.
+     * Fails if vertex is already in the graph (or is still being removed).
+     * @param vertex the vertex to add
+     * @return true if the add is successful, and false otherwise
+     * @throws IllegalArgumentException if vertex is null or has a negative id
+     */
+    public boolean addVertex(GraphNode vertex) {
+        // O(1)
+        if (vertex == null || vertex.getId() < 0) {
+            throw new IllegalArgumentException();
+        }
+        return vertices.putIfAbsent(vertex, new Vertex(vertex)) == null;
+    }
+
+    /**
+     * Adds edge e to this graph such that it connects vertex v1 to v2.
+     * Fails if either vertex is null, v1 equals v2, e is null or already
+     * in the graph, or v1 is already connected to v2.
+     * @param e  the edge to be added
+     * @param v1 the first vertex to be connected
+     * @param v2 the second vertex to be connected
+     * @return true if the add is successful, false otherwise
+     * @throws IllegalArgumentException if v1 or v2 is not in this graph,
+     *                                  or e has a negative id
+     */
+    public boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2) {
+        // amortized O(1)
+        if ((v1 == null) || (v2 == null)) {
+            return false;
+        }
+        Vertex from = lookup(v1);
+        Vertex to = lookup(v2);
+        if (from == null || to == null) {
+            throw new IllegalArgumentException();
+        }
+        if (from == to || e == null) {
+            return false;
+        }
+        if (e.getId() < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        int first = Math.min(stripe(from), stripe(to));
+        int second = Math.max(stripe(from), stripe(to));
+        synchronized (locks[first]) {
+            synchronized (locks[second]) {
+                if (from.removed || to.removed) {
+                    // lost a race with removeVertex()
+                    throw new IllegalArgumentException();
+                }
+                if (from.targets.containsKey(to)) {
+                    // vertices are already connected by another edge
+                    return false;
+                }
+                Edge edge = new Edge(e, from, to);
+                if (edges.putIfAbsent(e, edge) != null) {
+                    return false;
+                }
+                from.out = append(from.out, edge);
+                to.in = append(to.in, edge);
+                from.targets.put(to, edge);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes edge from this graph.
+     * Fails if edge is null, or is otherwise not an element of this graph.
+     * @param edge the edge to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public boolean removeEdge(GraphEdge edge) {
+        // O(d) where d is the degree of its endpoints, O(1) for the edge
+        // added last at both
+        Edge e = (edge == null) ? null : edges.get(edge);
+        return e != null && unlink(e);
+    }
+
+    /**
+     * Removes exactly this edge record, if another thread has not already.
+     * @param e the edge record
+     * @return true if this call removed it
+     */
+    private boolean unlink(Edge e) {
+        int first = Math.min(stripe(e.from), stripe(e.to));
+        int second = Math.max(stripe(e.from), stripe(e.to));
+        synchronized (locks[first]) {
+            synchronized (locks[second]) {
+                if (!edges.remove(e.edge, e)) {
+                    return false;
+                }
+                e.from.targets.remove(e.to, e);
+                e.from.out = without(e.from.out, e);
+                e.to.in = without(e.to.in, e);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes vertex from this graph, together with all its incident edges.
+     * Fails if vertex is null or not an element of this graph.
+     * The vertex stops accepting new edges first, then its edges are
+     * removed one at a time, and finally the vertex itself.
+     * @param vertex the vertex to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public boolean removeVertex(GraphNode vertex) {
+        // O(sum of the degrees of vertex and its neighbors)
+        Vertex v = lookup(vertex);
+        if (v == null) {
+            return false;
+        }
+        synchronized (locks[stripe(v)]) {
+            if (v.removed) {
+                return false;
+            }
+            v.removed = true;
+        }
+        for (EdgeList adj = v.out; adj.size > 0; adj = v.out) {
+            unlink(adj.items[adj.size - 1]);
+        }
+        for (EdgeList adj = v.in; adj.size > 0; adj = v.in) {
+            unlink(adj.items[adj.size - 1]);
+        }
+        vertices.remove(v.node, v);
+        return true;
+    }
+
+    /**
+     * Read-only collection over the prefix of one adjacency list that was
+     * published when it was made.
+     * @param <T> what each edge is reported as
+     */
+    private abstract static class Snapshot<T> extends AbstractCollection<T> {
+        /**
+         * the edges, of which the first size are never modified.
+         */
+        private final Edge[] adj;
+
+        /**
+         * number of edges in the snapshot.
+         */
+        private final int size;
+
+        /**
+         * constructor.
+         * @param list the adjacency list
+         */
+        Snapshot(EdgeList list) {
+            // the size first: the slots below it are already written
+            this.size = list.size;
+            this.adj = list.items;
+        }
+
+        /**
+         * Converts an edge into the reported element.
+         * @param e the edge
+         * @return the element
+         */
+        abstract T map(Edge e);
+
+        /**
+         * {@inheritDoc}
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int slot = 0;
+
+                public boolean hasNext() {
+                    return slot < size;
+                }
+
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return map(adj[slot++]);
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns a {@code Factory} that creates an instance of this graph type.
+     * @return a new Factory object
+     */
+    public static Factory<Graph<GraphNode, GraphEdge>> getFactory() {
+        return new Factory<Graph<GraphNode, GraphEdge>>() {
+            public Graph<GraphNode, GraphEdge> create() {
+                return new ConcurrentThreeTenGraph();
+            }
+        };
+    }
+
+    /**
+     * Adds a share of the stress test edges: edge i goes from node i mod n
+     * to node (i mod n) + 1 + i / n (mod n), so no pair repeats.
+     * Edges whose endpoints were removed meanwhile are skipped.
+     * @param graph the graph
+     * @param nodes the nodes
+     * @param edges the edges
+     * @param first index of this thread
+     * @param step number of threads
+     */
+    private static void addShare(ConcurrentThreeTenGraph graph, GraphNode[] nodes, GraphEdge[] edges,
+                                 int first, int step) {
+        int n = nodes.length;
+        for (int i = first; i < edges.length; i += step) {
+            try {
+                graph.addEdge(edges[i], nodes[i % n], nodes[(i % n + 1 + i / n) % n]);
+            } catch (IllegalArgumentException e) {
+                // an endpoint was removed by another thread
+            }
+        }
+    }
+
+    /**
+     * Checks that the edge map and every adjacency array agree.
+     * Only meaningful once all writers are done.
+     * @param graph the graph
+     * @return true if the graph is consistent
+     */
+    private static boolean consistent(ConcurrentThreeTenGraph graph) {
+        long outs = 0;
+        long ins = 0;
+        for (Vertex v : graph.vertices.values()) {
+            for (int i = 0; i < v.out.size; i++) {
+                Edge e = v.out.items[i];
+                if (e.from != v || graph.edges.get(e.edge) != e || !graph.vertices.containsKey(e.to.node)
+                        || v.targets.get(e.to) != e) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < v.in.size; i++) {
+                Edge e = v.in.items[i];
+                if (e.to != v || graph.edges.get(e.edge) != e) {
+                    return false;
+                }
+            }
+            if (v.targets.size() != v.out.size) {
+                return false;
+            }
+            outs += v.out.size;
+            ins += v.in.size;
+        }
+        return outs == graph.getEdgeCount() && ins == graph.getEdgeCount();
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     * @throws InterruptedException if interrupted while waiting for the stress test
+     */
+    public static void main(String[] args) throws InterruptedException {
+        GraphNode[] nodes = new GraphNode[10];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(i);
+        }
+        GraphEdge[] edges = new GraphEdge[8];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new GraphEdge(i);
+        }
+
+        // same graph as ThreeTenGraph.main()
+        ConcurrentThreeTenGraph graph = new ConcurrentThreeTenGraph();
+        for (GraphNode n : nodes) {
+            graph.addVertex(n);
+        }
+        graph.addEdge(edges[0], nodes[0], nodes[1]);
+        graph.addEdge(edges[1], nodes[1], nodes[2]);
+        graph.addEdge(edges[2], nodes[3], nodes[6]);
+        graph.addEdge(edges[3], nodes[6], nodes[7]);
+        graph.addEdge(edges[4], nodes[8], nodes[9]);
+        graph.addEdge(edges[5], nodes[9], nodes[0]);
+        graph.addEdge(edges[6], nodes[2], nodes[7]);
+        graph.addEdge(edges[7], nodes[1], nodes[8]);
+        int staticCount = GraphEdge.edgeCount;
+
+        if (graph.getVertexCount() == 10 && graph.getEdgeCount() == 8 && GraphEdge.edgeCount == staticCount
+                && !graph.addEdge(new GraphEdge(99), nodes[0], nodes[1])) {
+            System.out.println("Yay 1");
+        }
+        if (graph.inDegree(nodes[0]) == 1 && graph.outDegree(nodes[1]) == 2
+                && graph.getSource(edges[5]) == nodes[9] && graph.findEdge(nodes[1], nodes[8]) == edges[7]) {
+            System.out.println("Yay 2");
+        }
+        Collection<GraphNode> before = graph.getSuccessors(nodes[1]);
+        graph.removeVertex(nodes[1]);
+        if (graph.getEdgeCount() == 5 && graph.inDegree(nodes[2]) == 0 && graph.outDegree(nodes[0]) == 0
+                && before.size() == 2 && consistent(graph)) {
+            System.out.println("Yay 3");
+        }
+
+        // stress: a million edges from 1, 2, 4 and 8 writer threads while a
+        // reader checks that every degree matches the snapshot it reads
+        final int n = 100000;
+        final int m = 1000000;
+        final GraphNode[] bigNodes = new GraphNode[n];
+        for (int i = 0; i < n; i++) {
+            bigNodes[i] = new GraphNode(i);
+        }
+        final GraphEdge[] bigEdges = new GraphEdge[m];
+        for (int i = 0; i < m; i++) {
+            bigEdges[i] = new GraphEdge(i);
+        }
+        StringBuilder times = new StringBuilder();
+        boolean ok = true;
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            final ConcurrentThreeTenGraph big = new ConcurrentThreeTenGraph(n, m);
+            for (GraphNode v : bigNodes) {
+                big.addVertex(v);
+            }
+            final AtomicBoolean done = new AtomicBoolean(false);
+            final AtomicBoolean torn = new AtomicBoolean(false);
+            Thread reader = new Thread(new Runnable() {
+                public void run() {
+                    Random rand = new Random(1);
+                    while (!done.get()) {
+                        GraphNode v = bigNodes[rand.nextInt(n)];
+                        Collection<GraphEdge> out = big.getOutEdges(v);
+                        int count = 0;
+                        for (GraphEdge e : out) {
+                            if (big.getSource(e) != v) {
+                                torn.set(true);
+                            }
+                            count++;
+                        }
+                        if (count != out.size()) {
+                            torn.set(true);
+                        }
+                    }
+                }
+            });
+            Thread[] writers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                final int step = threads;
+                writers[t] = new Thread(new Runnable() {
+                    public void run() {
+                        addShare(big, bigNodes, bigEdges, first, step);
+                    }
+                });
+            }
+            reader.start();
+            long begin = System.nanoTime();
+            for (Thread w : writers) {
+                w.start();
+            }
+            for (Thread w : writers) {
+                w.join();
+            }
+            long millis = (System.nanoTime() - begin) / 1000000;
+            done.set(true);
+            reader.join();
+            ok &= !torn.get() && big.getEdgeCount() == m && consistent(big);
+            times.append(threads).append(threads == 1 ? " writer: " : " writers: ").append(millis).append(" ms, ");
+        }
+        if (ok) {
+            System.out.println("Yay 4 (" + times.substring(0, times.length() - 2) + ")");
+        }
+
+        // writers adding while another thread removes vertices
+        final ConcurrentThreeTenGraph churn = new ConcurrentThreeTenGraph(n, m);
+        for (GraphNode v : bigNodes) {
+            churn.addVertex(v);
+        }
+        Thread remover = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < n; i += 3) {
+                    churn.removeVertex(bigNodes[i]);
+                }
+            }
+        });
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final int first = t;
+            writers[t] = new Thread(new Runnable() {
+                public void run() {
+                    addShare(churn, bigNodes, bigEdges, first, 4);
+                }
+            });
+        }
+        remover.start();
+        for (Thread w : writers) {
+            w.start();
+        }
+        remover.join();
+        for (Thread w : writers) {
+            w.join();
+        }
+        if (churn.getVertexCount() == n - (n + 2) / 3 && consistent(churn)) {
+            System.out.println("Yay 5");
+        }
+
+        // a hub with 100000 edges in and 100000 out: adding must stay close to
+        // SparseThreeTenGraph instead of copying the hub's arrays every time
+        long concurrentMillis = Long.MAX_VALUE;
+        long sparseMillis = Long.MAX_VALUE;
+        boolean hubOk = true;
+        for (int round = 0; round < 3; round++) {
+            ConcurrentThreeTenGraph star = new ConcurrentThreeTenGraph(n, 2 * n);
+            SparseThreeTenGraph reference = new SparseThreeTenGraph(n, 2 * n);
+            for (GraphNode v : bigNodes) {
+                star.addVertex(v);
+                reference.addVertex(v);
+            }
+            long begin = System.nanoTime();
+            for (int i = 1; i < n; i++) {
+                star.addEdge(bigEdges[i], bigNodes[i], bigNodes[0]);
+                star.addEdge(bigEdges[n + i], bigNodes[0], bigNodes[i]);
+            }
+            concurrentMillis = Math.min(concurrentMillis, (System.nanoTime() - begin) / 1000000);
+            begin = System.nanoTime();
+            for (int i = 1; i < n; i++) {
+                reference.addEdge(bigEdges[i], bigNodes[i], bigNodes[0]);
+                reference.addEdge(bigEdges[n + i], bigNodes[0], bigNodes[i]);
+            }
+            sparseMillis = Math.min(sparseMillis, (System.nanoTime() - begin) / 1000000);
+            hubOk &= star.inDegree(bigNodes[0]) == n - 1 && star.outDegree(bigNodes[0]) == n - 1
+                    && !star.addEdge(new GraphEdge(3 * n), bigNodes[0], bigNodes[n - 1])
+                    && star.findEdge(bigNodes[n - 1], bigNodes[0]) == bigEdges[n - 1] && consistent(star);
+        }
+        if (hubOk && concurrentMillis < 10 * Math.max(sparseMillis, 10)) {
+            System.out.println("Yay 6 (" + concurrentMillis + " ms, sparse " + sparseMillis + " ms)");
+        }
+    }
+}
@@ -0,0 +1,332 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import java.util.Arrays;
+
+/**
+ * Longest paths through a weighted DAG, computed along a topological
+ * order: the earliest start of every vertex, the predecessor it waits
+ * for, the slack it has, and the critical path (the chain of vertices
+ * that decides how long the whole graph takes).
+ * A vertex's weight is how long it takes; an edge's weight is how long
+ * its destination must wait after its source is done. A vertex starts
+ * when all of its predecessors (plus edge weights) are done, at 0 if it
+ * has none. One forward pass over the order gives the starts and the
+ * predecessors, one backward pass the latest starts and so the slack;
+ * both are O(V + E) over int and long arrays.
+ * Vertices are reported by id (GraphNode id, or the vertex number of an
+ * IntDigraph). The arrays are shared, not copied; do not modify them.
+ * @author Phat Tran
+ */
+final class CriticalPath {
+
+    /**
+     * earliest start of each id, or -1 for ids not in the graph.
+     */
+    private final long[] start;
+
+    /**
+     * how much each id could be delayed without delaying the whole graph.
+     */
+    private final long[] slack;
+
+    /**
+     * the predecessor each id waits for, or -1.
+     */
+    private final int[] predecessor;
+
+    /**
+     * the critical path, first vertex first.
+     */
+    private final int[] path;
+
+    /**
+     * when the last vertex is done.
+     */
+    private final long length;
+
+    /**
+     * constructor.
+     * @param start earliest start of each id, or -1 for ids not in the graph
+     * @param slack how much each id could be delayed
+     * @param predecessor the predecessor each id waits for, or -1
+     * @param path the critical path, first vertex first
+     * @param length when the last vertex is done
+     */
+    private CriticalPath(long[] start, long[] slack, int[] predecessor, int[] path, long length) {
+        this.start = start;
+        this.slack = slack;
+        this.predecessor = predecessor;
+        this.path = path;
+        this.length = length;
+    }
+
+    /**
+     * Computes the critical path of a primitive graph.
+     * @param graph the graph
+     * @param order all the vertices in topological order (see TopologicalSort.sort())
+     * @param vertexWeights weight of each vertex
+     * @param edgeWeights weight of each edge id
+     * @return the starts, slacks, predecessors and the critical path
+     * @throws IllegalArgumentException if order does not hold every vertex
+     *                                  (the graph has a cycle), a weight is
+     *                                  negative or an array has the wrong length
+     */
+    public static CriticalPath compute(IntDigraph graph, int[] order, int[] vertexWeights, int[] edgeWeights) {
+        // O(V + E)
+        int n = graph.vertexCount();
+        if (order.length != n || vertexWeights.length != n || edgeWeights.length != graph.edgeCount()) {
+            throw new IllegalArgumentException();
+        }
+        for (int w : vertexWeights) {
+            if (w < 0) {
+                throw new IllegalArgumentException();
+            }
+        }
+        for (int w : edgeWeights) {
+            if (w < 0) {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        // forward: push each vertex's finish to its successors
+        long[] start = new long[n];
+        int[] predecessor = new int[n];
+        Arrays.fill(predecessor, -1);
+        int last = -1;
+        long length = 0;
+        for (int u : order) {
+            long finish = start[u] + vertexWeights[u];
+            for (int e = graph.outBegin(u), end = graph.outEnd(u); e < end; e++) {
+                int v = graph.target(e);
+                long arrival = finish + edgeWeights[e];
+                if (predecessor[v] == -1 || arrival > start[v]) {
+                    start[v] = arrival;
+                    predecessor[v] = u;
+                }
+            }
+            if (last == -1 || finish > length) {
+                last = u;
+                length = finish;
+            }
+        }
+
+        // backward: the latest each vertex may finish is what its successors allow
+        long[] slack = new long[n];
+        long[] latest = new long[n];
+        for (int i = n - 1; i >= 0; i--) {
+            int u = order[i];
+            long finish = length;
+            for (int e = graph.outBegin(u), end = graph.outEnd(u); e < end; e++) {
+                finish = Math.min(finish, latest[graph.target(e)] - edgeWeights[e]);
+            }
+            latest[u] = finish - vertexWeights[u];
+            slack[u] = latest[u] - start[u];
+        }
+
+        int count = 0;
+        for (int v = last; v != -1; v = predecessor[v]) {
+            count++;
+        }
+        int[] path = new int[count];
+        for (int v = last; v != -1; v = predecessor[v]) {
+            path[--count] = v;
+        }
+        return new CriticalPath(start, slack, predecessor, path, length);
+    }
+
+    /**
+     * Computes the critical path of a graph of GraphNode/GraphEdge, with
+     * the weights of its nodes and edges, through a frozen copy of its
+     * structure (see IntDigraphAdapter.freeze()). Nothing is written to
+     * the nodes.
+     * @param graph the graph (vertex ids must be non-negative)
+     * @return the starts, slacks, predecessors and the critical path, by node id
+     * @throws IllegalArgumentException if the graph has a cycle or a negative weight
+     */
+    public static CriticalPath compute(Graph<GraphNode, GraphEdge> graph) {
+        // O(V + E + largest id) to freeze, then O(V + E)
+        IntDigraphAdapter frozen = (graph instanceof IntDigraphAdapter)
+                ? (IntDigraphAdapter) graph : IntDigraphAdapter.freeze(graph);
+        IntDigraph core = frozen.getCore();
+        int[] vertexWeights = new int[core.vertexCount()];
+        int maxId = -1;
+        for (int v = 0; v < vertexWeights.length; v++) {
+            vertexWeights[v] = frozen.node(v).getWeight();
+            maxId = Math.max(maxId, frozen.node(v).getId());
+        }
+        int[] edgeWeights = new int[core.edgeCount()];
+        for (int e = 0; e < edgeWeights.length; e++) {
+            edgeWeights[e] = frozen.edge(e).getWeight();
+        }
+        CriticalPath byVertex = compute(core, TopologicalSort.sort(core).getOrder(), vertexWeights, edgeWeights);
+
+        long[] start = new long[maxId + 1];
+        long[] slack = new long[maxId + 1];
+        int[] predecessor = new int[maxId + 1];
+        Arrays.fill(start, -1);
+        Arrays.fill(slack, -1);
+        Arrays.fill(predecessor, -1);
+        for (int v = 0; v < vertexWeights.length; v++) {
+            int id = frozen.node(v).getId();
+            start[id] = byVertex.start[v];
+            slack[id] = byVertex.slack[v];
+            if (byVertex.predecessor[v] != -1) {
+                predecessor[id] = frozen.node(byVertex.predecessor[v]).getId();
+            }
+        }
+        int[] path = byVertex.path;
+        for (int i = 0; i < path.length; i++) {
+            path[i] = frozen.node(path[i]).getId();
+        }
+        return new CriticalPath(start, slack, predecessor, path, byVertex.length);
+    }
+
+    /**
+     * Returns the earliest start of every id: entry i is when vertex i can
+     * start, or -1 if there is no vertex i.
+     * @return the starts, indexed by id
+     */
+    public long[] getStarts() {
+        return start;
+    }
+
+    /**
+     * Returns the earliest start of a vertex.
+     * @param id vertex id
+     * @return when it can start, or -1 if it is not in the graph
+     */
+    public long getStart(int id) {
+        return (id >= 0 && id < start.length) ? start[id] : -1;
+    }
+
+    /**
+     * Returns the slack of every id: entry i is how much vertex i could
+     * start late without making the whole graph take longer, or -1 if
+     * there is no vertex i.
+     * @return the slacks, indexed by id
+     */
+    public long[] getSlacks() {
+        return slack;
+    }
+
+    /**
+     * Returns the slack of a vertex.
+     * @param id vertex id
+     * @return how much it could start late, or -1 if it is not in the graph
+     */
+    public long getSlack(int id) {
+        return (id >= 0 && id < slack.length) ? slack[id] : -1;
+    }
+
+    /**
+     * Returns the predecessor every id waits for: entry i is the
+     * predecessor whose finish decides when vertex i starts, or -1 if it
+     * has none (or there is no vertex i).
+     * @return the predecessors, indexed by id
+     */
+    public int[] getPredecessors() {
+        return predecessor;
+    }
+
+    /**
+     * Returns the critical path: a longest chain of vertices, each the
+     * predecessor of the next, ending with the vertex that finishes last.
+     * Every vertex on it has no slack.
+     * @return the path, first vertex first (empty for an empty graph)
+     */
+    public int[] getPath() {
+        return path;
+    }
+
+    /**
+     * Returns how long the whole graph takes.
+     * @return when the last vertex is done
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        // 0-->1 0-->2 1-->3 2-->3 3-->4, with weights 3 2 5 1 4 and 1 on edge 0-->2
+        IntDigraph small = new IntDigraph(5, new int[] {0, 0, 1, 2, 3}, new int[] {1, 2, 3, 3, 4});
+        int[] order = TopologicalSort.sort(small).getOrder();
+        CriticalPath cp = compute(small, order, new int[] {3, 2, 5, 1, 4}, new int[] {0, 1, 0, 0, 0});
+        if (Arrays.toString(cp.getStarts()).equals("[0, 3, 4, 9, 10]") && cp.getLength() == 14
+                && Arrays.toString(cp.getPath()).equals("[0, 2, 3, 4]")
+                && Arrays.toString(cp.getSlacks()).equals("[0, 4, 0, 0, 0]") && cp.getPredecessors()[3] == 2) {
+            System.out.println("Yay 1");
+        }
+
+        // the same through GraphNodes with gaps in the ids, and weights on the objects
+        SparseThreeTenGraph sparse = new SparseThreeTenGraph();
+        GraphNode[] nodes = new GraphNode[5];
+        int[] weights = {3, 2, 5, 1, 4};
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(10 * i);
+            nodes[i].setWeight(weights[i]);
+            sparse.addVertex(nodes[i]);
+        }
+        int[][] pairs = {{0, 1}, {0, 2}, {1, 3}, {2, 3}, {3, 4}};
+        for (int i = 0; i < pairs.length; i++) {
+            GraphEdge e = new GraphEdge(i);
+            e.setWeight((i == 1) ? 1 : 0);
+            sparse.addEdge(e, nodes[pairs[i][0]], nodes[pairs[i][1]]);
+        }
+        CriticalPath byId = compute(sparse);
+        if (Arrays.toString(byId.getPath()).equals("[0, 20, 30, 40]") && byId.getStart(30) == 9
+                && byId.getSlack(10) == 4 && byId.getStart(5) == -1 && byId.getPredecessors()[30] == 20
+                && byId.getLength() == 14) {
+            System.out.println("Yay 2");
+        }
+
+        // a cycle has no critical path
+        try {
+            compute(small, new int[] {0, 1, 2}, new int[5], new int[5]);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Yay 3");
+        }
+
+        // a million vertices with 4 million random forward edges
+        int n = 1000000;
+        int m = 4 * n;
+        java.util.Random rand = new java.util.Random(0);
+        int[] from = new int[m];
+        int[] to = new int[m];
+        for (int i = 0; i < m; i++) {
+            int a = rand.nextInt(n - 1);
+            from[i] = a;
+            to[i] = a + 1 + rand.nextInt(Math.min(1000, n - 1 - a));
+        }
+        IntDigraph big = new IntDigraph(n, from, to);
+        int[] vertexWeights = new int[n];
+        for (int v = 0; v < n; v++) {
+            vertexWeights[v] = rand.nextInt(10);
+        }
+        int[] edgeWeights = new int[big.edgeCount()];
+        int[] bigOrder = TopologicalSort.sort(big).getOrder();
+        compute(big, bigOrder, vertexWeights, edgeWeights);// warm up
+        long begin = System.nanoTime();
+        CriticalPath bigPath = compute(big, bigOrder, vertexWeights, edgeWeights);
+        long millis = (System.nanoTime() - begin) / 1000000;
+        boolean valid = true;
+        int[] path = bigPath.getPath();
+        long total = 0;
+        for (int i = 0; i < path.length; i++) {
+            valid &= bigPath.getSlack(path[i]) == 0 && (i == 0 || big.edge(path[i - 1], path[i]) != -1);
+            total += vertexWeights[path[i]];
+        }
+        for (int u = 0; u < n; u++) {
+            valid &= bigPath.getSlack(u) >= 0;
+            for (int e = big.outBegin(u); e < big.outEnd(u); e++) {
+                valid &= bigPath.getStart(big.target(e)) >= bigPath.getStart(u) + vertexWeights[u];
+            }
+        }
+        if (valid && total == bigPath.getLength() && bigPath.getStart(path[0]) == 0) {
+            System.out.println("Yay 4 (" + millis + " ms)");
+        }
+    }
+}
@@ -0,0 +1,1178 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import org.apache.commons.collections15.Factory;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A directed graph for dense inputs: the adjacency matrix is stored as
+ * bits instead of ThreeTenGraph's GraphEdge[][] references.
+ * Row u has bit v set when there is an edge u to v, and column v has
+ * bit u set for the same edge. Each row also keeps its edges in
+ * destination order, so the edge of a set bit is the one at its rank
+ * (the number of set bits before it), and the rank is one popcount
+ * since every row keeps the count of set bits before each of its words.
+ * Those counts are brought up to date lazily, from the first word a
+ * change may have moved, so a row filled in destination order is counted
+ * once in all, and addEdges() fills each row it touches in one pass.
+ * An edge id maps to its cell (source * capacity + destination) in one
+ * table, which gives both of its endpoints.
+ * In-degree and out-degree are counters, isPredecessor/isSuccessor a
+ * single bit test, findEdge and the edge of each set bit O(1), and
+ * neighbors are walked with numberOfTrailingZeros, in id order, so
+ * iteration order matches ThreeTenGraph.
+ * Memory is V^2 / 4 bytes for the two bit matrices and V^2 / 16 for the
+ * counts before each word, plus 8 to 12 bytes per edge (its reference in
+ * its row, which grows by doubling, and its cell), where ThreeTenGraph's matrix takes 4 or 8 bytes
+ * per cell whether there is an edge or not. Vertex ids should be dense,
+ * and below MAX_CAPACITY. All the collections returned are read-only live
+ * views.
+ * @author Phat Tran
+ */
+class DenseThreeTenGraph extends ThreeTenAbstractGraph {
+
+    /**
+     * vertex ids must be below this, so that every cell fits an int.
+     */
+    static final int MAX_CAPACITY = 46340;
+
+    /**
+     * initial capacity of the id-indexed arrays.
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * shared empty row of edges.
+     */
+    private static final GraphEdge[] NO_EDGES = new GraphEdge[0];
+
+    /**
+     * number of vertex ids that fit in the bit matrices.
+     */
+    private int capacity;
+
+    /**
+     * number of longs per row or column.
+     */
+    private int words;
+
+    /**
+     * row bitsets, row u at rows[u * words].
+     */
+    private long[] rows;
+
+    /**
+     * column bitsets, column v at cols[v * words].
+     */
+    private long[] cols;
+
+    /**
+     * set bits of row u in the words before word w, at before[u * words + w].
+     */
+    private int[] before;
+
+    /**
+     * the counts in before are right for words below counted[u] of row u.
+     */
+    private int[] counted;
+
+    /**
+     * the edges of each row, in destination order (so by rank), then
+     * spare room.
+     */
+    private GraphEdge[][] rowEdges;
+
+    /**
+     * out-degree of each vertex (the used part of its row), indexed by id.
+     */
+    private int[] outCount;
+
+    /**
+     * cell (source * capacity + destination) of each edge id, or -1 for
+     * ids not in the graph.
+     */
+    private int[] edgeCell;
+
+    /**
+     * the vertices, indexed by id.
+     */
+    private GraphNode[] vertexList;
+
+    /**
+     * in-degree of each vertex, indexed by id.
+     */
+    private int[] inCount;
+
+    /**
+     * number of vertices in the graph.
+     */
+    private int vertexCount;
+
+    /**
+     * number of edges in the graph.
+     */
+    private int edgeCount;
+
+    /**
+     * constructor.
+     */
+    public DenseThreeTenGraph() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * constructor with an expected size, to avoid regrowing while loading.
+     * @param vertexCapacity expected largest vertex id + 1
+     * @param edgeCapacity expected largest edge id + 1
+     */
+    public DenseThreeTenGraph(int vertexCapacity, int edgeCapacity) {
+        capacity = Math.min(Math.max(vertexCapacity, 1), MAX_CAPACITY);
+        words = (capacity + 63) >>> 6;
+        rows = new long[capacity * words];
+        cols = new long[capacity * words];
+        before = new int[capacity * words];
+        counted = new int[capacity];
+        Arrays.fill(counted, words);
+        rowEdges = new GraphEdge[capacity][];
+        Arrays.fill(rowEdges, NO_EDGES);
+        outCount = new int[capacity];
+        vertexList = new GraphNode[capacity];
+        inCount = new int[capacity];
+        edgeCell = new int[Math.max(edgeCapacity, 1)];
+        Arrays.fill(edgeCell, -1);
+    }
+
+    /**
+     * Grows the bit matrices and vertex arrays so that id is a valid index.
+     * @param id vertex id
+     */
+    private void ensureVertexCapacity(int id) {
+        // O(V^2 / 64 + E) when it grows
+        if (id < capacity) {
+            return;
+        }
+        int newCapacity = Math.min(Math.max(id + 1, capacity * 2), MAX_CAPACITY);
+        int newWords = (newCapacity + 63) >>> 6;
+        long[] newRows = new long[newCapacity * newWords];
+        long[] newCols = new long[newCapacity * newWords];
+        int[] newBefore = new int[newCapacity * newWords];
+        for (int i = 0; i < capacity; i++) {
+            System.arraycopy(rows, i * words, newRows, i * newWords, words);
+            System.arraycopy(cols, i * words, newCols, i * newWords, words);
+            System.arraycopy(before, i * words, newBefore, i * newWords, words);
+        }
+        for (int e = 0; e < edgeCell.length; e++) {
+            if (edgeCell[e] != -1) {
+                edgeCell[e] = edgeCell[e] / capacity * newCapacity + edgeCell[e] % capacity;
+            }
+        }
+        rows = newRows;
+        cols = newCols;
+        before = newBefore;
+        // the counts before the new words of the old rows are not there yet
+        counted = Arrays.copyOf(counted, newCapacity);
+        for (int i = 0; i < capacity; i++) {
+            counted[i] = Math.min(counted[i], words);
+        }
+        Arrays.fill(counted, capacity, newCapacity, newWords);
+        rowEdges = Arrays.copyOf(rowEdges, newCapacity);
+        Arrays.fill(rowEdges, capacity, newCapacity, NO_EDGES);
+        outCount = Arrays.copyOf(outCount, newCapacity);
+        vertexList = Arrays.copyOf(vertexList, newCapacity);
+        inCount = Arrays.copyOf(inCount, newCapacity);
+        capacity = newCapacity;
+        words = newWords;
+    }
+
+    /**
+     * Grows the edge table so that id is a valid index.
+     * @param id edge id
+     */
+    private void ensureEdgeCapacity(int id) {
+        if (id < edgeCell.length) {
+            return;
+        }
+        int old = edgeCell.length;
+        edgeCell = Arrays.copyOf(edgeCell, Math.max(id + 1, old * 2));
+        Arrays.fill(edgeCell, old, edgeCell.length, -1);
+    }
+
+    /**
+     * Returns the id of vertex if it is in the graph.
+     * @param vertex vertex
+     * @return the id of vertex, or -1 if it is not in the graph
+     */
+    private int indexOf(GraphNode vertex) {
+        if (vertex == null) {
+            return -1;
+        }
+        int id = vertex.getId();
+        if (id < 0 || id >= capacity || vertexList[id] == null) {
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of edge if it is in the graph.
+     * @param edge edge
+     * @return the id of edge, or -1 if it is not in the graph
+     */
+    private int indexOf(GraphEdge edge) {
+        if (edge == null) {
+            return -1;
+        }
+        int id = edge.getId();
+        if (id < 0 || id >= edgeCell.length || edgeCell[id] == -1) {
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Tests one bit of a row or column.
+     * @param bits rows or cols
+     * @param line row or column index
+     * @param i bit index
+     * @return true if the bit is set
+     */
+    private boolean test(long[] bits, int line, int i) {
+        return (bits[line * words + (i >>> 6)] & (1L << i)) != 0;
+    }
+
+    /**
+     * Finds the next set bit of a row or column.
+     * @param bits rows or cols
+     * @param line row or column index
+     * @param from first bit index to look at
+     * @return the index of the next set bit at or after from, or -1
+     */
+    private int nextBit(long[] bits, int line, int from) {
+        if (from >= capacity) {
+            return -1;
+        }
+        int base = line * words;
+        int w = from >>> 6;
+        long word = bits[base + w] & (-1L << from);
+        while (word == 0) {
+            if (++w == words) {
+                return -1;
+            }
+            word = bits[base + w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Returns the number of edges of row u that go to a vertex below v,
+     * which is the slot of the edge u to v in rowEdges[u].
+     * @param u source id
+     * @param v destination id
+     * @return the rank of v in row u
+     */
+    private int rank(int u, int v) {
+        // O(1), the count before v's word plus one popcount, after bringing
+        // the counts up to v's word if a change has moved them
+        int base = u * words;
+        int w = v >>> 6;
+        if (w >= counted[u]) {
+            for (int k = counted[u]; k <= w; k++) {
+                before[base + k] = before[base + k - 1] + Long.bitCount(rows[base + k - 1]);
+            }
+            counted[u] = w + 1;
+        }
+        return before[base + w] + Long.bitCount(rows[base + w] & ((1L << v) - 1));
+    }
+
+    /**
+     * Returns the edge in a cell that is known to hold one.
+     * @param u source id
+     * @param v destination id
+     * @return the edge u to v
+     */
+    private GraphEdge edgeAt(int u, int v) {
+        // O(1)
+        return rowEdges[u][rank(u, v)];
+    }
+
+    /**
+     * Marks the counts of row u after v's word as out of date, after the
+     * bit of v has changed.
+     * @param u source id
+     * @param v destination id
+     */
+    private void moved(int u, int v) {
+        counted[u] = Math.min(counted[u], (v >>> 6) + 1);
+    }
+
+    /**
+     * Returns a view of all edges in this graph, in id order.
+     * @return a Collection view of all edges in this graph
+     */
+    public Collection<GraphEdge> getEdges() {
+        // O(1), the view walks the edge table
+        return new AbstractCollection<GraphEdge>() {
+            public Iterator<GraphEdge> iterator() {
+                return new Iterator<GraphEdge>() {
+                    private int next = advance(0);
+
+                    private int advance(int from) {
+                        while (from < edgeCell.length && edgeCell[from] == -1) {
+                            from++;
+                        }
+                        return from;
+                    }
+
+                    public boolean hasNext() {
+                        return next < edgeCell.length;
+                    }
+
+                    public GraphEdge next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int cell = edgeCell[next];
+                        next = advance(next + 1);
+                        return edgeAt(cell / capacity, cell % capacity);
+                    }
+                };
+            }
+
+            public int size() {
+                return edgeCount;
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof GraphEdge) && containsEdge((GraphEdge) o);
+            }
+        };
+    }
+
+    /**
+     * Returns a view of all vertices in this graph, in id order.
+     * @return a Collection view of all vertices in this graph
+     */
+    public Collection<GraphNode> getVertices() {
+        // O(1), the view walks the vertex table
+        return new AbstractCollection<GraphNode>() {
+            public Iterator<GraphNode> iterator() {
+                return new TableIterator<>(vertexList);
+            }
+
+            public int size() {
+                return vertexCount;
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof GraphNode) && containsVertex((GraphNode) o);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     * @return the number of edges in this graph
+     */
+    public int getEdgeCount() {
+        // O(1)
+        return edgeCount;
+    }
+
+    /**
+     * Returns the number of vertices in this graph.
+     * @return the number of vertices in this graph
+     */
+    public int getVertexCount() {
+        // O(1)
+        return vertexCount;
+    }
+
+    /**
+     * Returns true if this graph's vertex collection contains vertex.
+     * @param vertex the vertex whose presence is being queried
+     * @return true iff this graph contains a vertex vertex
+     */
+    public boolean containsVertex(GraphNode vertex) {
+        // O(1)
+        return indexOf(vertex) != -1;
+    }
+
+    /**
+     * Returns true if this graph's edge collection contains edge.
+     * @param edge the edge whose presence is being queried
+     * @return true iff this graph contains an edge edge
+     */
+    public boolean containsEdge(GraphEdge edge) {
+        // O(1)
+        return indexOf(edge) != -1;
+    }
+
+    /**
+     * Returns a Collection view of the incoming edges incident to vertex.
+     * @param vertex the vertex whose incoming edges are to be returned
+     * @return a Collection view of the incoming edges incident
+     *         to vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphEdge> getInEdges(GraphNode vertex) {
+        // O(1), iterating is O(d + V / 64)
+        final int id = indexOf(vertex);
+        if (id == -1) {
+            return null;
+        }
+        return new BitView<GraphEdge>(id, false) {
+            GraphEdge map(int source) {
+                return edgeAt(source, id);
+            }
+        };
+    }
+
+    /**
+     * Returns a Collection view of the outgoing edges incident to vertex.
+     * @param vertex the vertex whose outgoing edges are to be returned
+     * @return a Collection view of the outgoing edges incident
+     *         to vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphEdge> getOutEdges(GraphNode vertex) {
+        // O(1), iterating is O(d + V / 64)
+        final int id = indexOf(vertex);
+        if (id == -1) {
+            return null;
+        }
+        return new BitView<GraphEdge>(id, true) {
+            GraphEdge map(int dest) {
+                return edgeAt(id, dest);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of incoming edges incident to vertex.
+     * @param vertex the vertex whose indegree is to be calculated
+     * @return the number of incoming edges incident to vertex
+     */
+    public int inDegree(GraphNode vertex) {
+        // O(1)
+        int id = indexOf(vertex);
+        return (id == -1) ? 0 : inCount[id];
+    }
+
+    /**
+     * Returns the number of outgoing edges incident to vertex.
+     * @param vertex the vertex whose outdegree is to be calculated
+     * @return the number of outgoing edges incident to vertex
+     */
+    public int outDegree(GraphNode vertex) {
+        // O(1)
+        int id = indexOf(vertex);
+        return (id == -1) ? 0 : outCount[id];
+    }
+
+    /**
+     * Returns a Collection view of the predecessors of vertex, in id order.
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return a Collection view of the predecessors of
+     *         vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphNode> getPredecessors(GraphNode vertex) {
+        // O(1), iterating is O(d + V / 64)
+        int id = indexOf(vertex);
+        if (id == -1) {
+            return null;
+        }
+        return new BitView<GraphNode>(id, false) {
+            GraphNode map(int source) {
+                return vertexList[source];
+            }
+        };
+    }
+
+    /**
+     * Returns a Collection view of the successors of vertex, in id order.
+     * @param vertex the vertex whose successors are to be returned
+     * @return a Collection view of the successors of
+     *         vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphNode> getSuccessors(GraphNode vertex) {
+        // O(1), iterating is O(d + V / 64)
+        int id = indexOf(vertex);
+        if (id == -1) {
+            return null;
+        }
+        return new BitView<GraphNode>(id, true) {
+            GraphNode map(int dest) {
+                return vertexList[dest];
+            }
+        };
+    }
+
+    /**
+     * Returns true if v1 is a predecessor of v2 in this graph.
+     * @param v1 the first vertex to be queried
+     * @param v2 the second vertex to be queried
+     * @return true if v1 is a predecessor of v2, and false otherwise
+     */
+    public boolean isPredecessor(GraphNode v1, GraphNode v2) {
+        // O(1), a single bit test
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        return from != -1 && to != -1 && test(rows, from, to);
+    }
+
+    /**
+     * Returns true if v1 is a successor of v2 in this graph.
+     * @param v1 the first vertex to be queried
+     * @param v2 the second vertex to be queried
+     * @return true if v1 is a successor of v2, and false otherwise
+     */
+    public boolean isSuccessor(GraphNode v1, GraphNode v2) {
+        // O(1), a single bit test
+        return isPredecessor(v2, v1);
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the source.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the source of directedEdge, or null if it is not in this graph
+     */
+    public GraphNode getSource(GraphEdge directedEdge) {
+        // O(1)
+        int id = indexOf(directedEdge);
+        return (id == -1) ? null : vertexList[edgeCell[id] / capacity];
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the destination.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the destination of directedEdge, or null if it is not in this graph
+     */
+    public GraphNode getDest(GraphEdge directedEdge) {
+        // O(1)
+        int id = indexOf(directedEdge);
+        return (id == -1) ? null : vertexList[edgeCell[id] % capacity];
+    }
+
+    /**
+     * Returns the edge that connects v1 to v2.
+     * @param v1 first vertex
+     * @param v2 second vertex
+     * @return an edge that connects v1 to v2
+     *         or null if no such edge exists (or either vertex is not present).
+     */
+    public GraphEdge findEdge(GraphNode v1, GraphNode v2) {
+        // O(1)
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        if (from == -1 || to == -1 || !test(rows, from, to)) {
+            return null;
+        }
+        return edgeAt(from, to);
+    }
+
+    /**
+     * Adds vertex to this graph.
+     * Fails if vertex is already in the graph.
+     * @param vertex the vertex to add
+     * @return true if the add is successful, and false otherwise
+     * @throws IllegalArgumentException if vertex is null or its id is
+     *                                  negative or not below MAX_CAPACITY
+     */
+    public boolean addVertex(GraphNode vertex) {
+        // amortized O(V / 64 + E / V)
+        if (vertex == null || vertex.getId() < 0 || vertex.getId() >= MAX_CAPACITY) {
+            throw new IllegalArgumentException();
+        }
+        int id = vertex.getId();
+        ensureVertexCapacity(id);
+        if (vertexList[id] != null) {
+            return false;
+        }
+        vertexList[id] = vertex;
+        vertexCount++;
+        return true;
+    }
+
+    /**
+     * Adds edge e to this graph such that it connects vertex v1 to v2.
+     * Fails if either vertex is null, v1 equals v2, e is null or already
+     * in the graph, or v1 is already connected to v2.
+     * @param e  the edge to be added
+     * @param v1 the first vertex to be connected
+     * @param v2 the second vertex to be connected
+     * @return true if the add is successful, false otherwise
+     * @throws IllegalArgumentException if v1 or v2 is not in this graph,
+     *                                  or e has a negative id
+     */
+    public boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2) {
+        // O(d + V / 64) where d is the out-degree of v1; amortized O(1)
+        // when a row is filled in destination order
+        if ((v1 == null) || (v2 == null)) {
+            return false;
+        }
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        if (from == -1 || to == -1) {
+            throw new IllegalArgumentException();
+        }
+        if (from == to || e == null || containsEdge(e)) {
+            return false;
+        }
+        if (e.getId() < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (test(rows, from, to)) {
+            // vertices are already connected by another edge
+            return false;
+        }
+
+        int id = e.getId();
+        ensureEdgeCapacity(id);
+        edgeCell[id] = from * capacity + to;
+        edgeCount++;
+
+        int slot = rank(from, to);
+        int size = outCount[from];
+        if (size == rowEdges[from].length) {
+            rowEdges[from] = Arrays.copyOf(rowEdges[from], Math.max(4, 2 * size));
+        }
+        GraphEdge[] row = rowEdges[from];
+        System.arraycopy(row, slot, row, slot + 1, size - slot);
+        row[slot] = e;
+        outCount[from]++;
+        rows[from * words + (to >>> 6)] |= 1L << to;
+        cols[to * words + (from >>> 6)] |= 1L << from;
+        moved(from, to);
+        inCount[to]++;
+        return true;
+    }
+
+    /**
+     * Adds many edges at once: edges[i] connects sources[i] to dests[i].
+     * Every vertex is checked before anything is added, so if one of them is
+     * not in the graph the graph is left unchanged. Edges are then accepted
+     * or skipped exactly like addEdge() would, but instead of one insert per
+     * edge the bits are set in one pass and every touched row is rebuilt
+     * once, walking its bits in destination order.
+     * @param edges the edges to be added
+     * @param sources the first vertex of each edge
+     * @param dests the second vertex of each edge
+     * @return the number of edges added
+     * @throws IllegalArgumentException if the arrays are null or have different
+     *                                  lengths, a vertex is not in the graph,
+     *                                  or an edge has a negative id
+     */
+    public int addEdges(GraphEdge[] edges, GraphNode[] sources, GraphNode[] dests) {
+        // O(V + k + t V / 64) where k is the number of edges in the batch
+        // and t the number of rows it touches
+        if (edges == null || sources == null || dests == null
+                || edges.length != sources.length || edges.length != dests.length) {
+            throw new IllegalArgumentException();
+        }
+        int maxId = -1;
+        for (int i = 0; i < edges.length; i++) {
+            if ((sources[i] != null && indexOf(sources[i]) == -1)
+                    || (dests[i] != null && indexOf(dests[i]) == -1)
+                    || (edges[i] != null && edges[i].getId() < 0)) {
+                throw new IllegalArgumentException();
+            }
+            if (edges[i] != null) {
+                maxId = Math.max(maxId, edges[i].getId());
+            }
+        }
+        ensureEdgeCapacity(maxId);
+
+        // pass 1: claim the edge ids and set the bits, counting what each row gains
+        boolean[] accepted = new boolean[edges.length];
+        int[] start = new int[capacity + 1];
+        int added = 0;
+        for (int i = 0; i < edges.length; i++) {
+            GraphEdge e = edges[i];
+            if (e == null || sources[i] == null || dests[i] == null) {
+                continue;
+            }
+            int id = e.getId();
+            int from = sources[i].getId();
+            int to = dests[i].getId();
+            if (from == to || edgeCell[id] != -1 || test(rows, from, to)) {
+                continue;
+            }
+            edgeCell[id] = from * capacity + to;
+            rows[from * words + (to >>> 6)] |= 1L << to;
+            cols[to * words + (from >>> 6)] |= 1L << from;
+            inCount[to]++;
+            accepted[i] = true;
+            start[from + 1]++;
+            added++;
+        }
+        edgeCount += added;
+
+        // pass 2: group the new edges by source
+        for (int u = 0; u < capacity; u++) {
+            start[u + 1] += start[u];
+        }
+        GraphEdge[] bySource = new GraphEdge[added];
+        int[] next = Arrays.copyOf(start, capacity);
+        for (int i = 0; i < edges.length; i++) {
+            if (accepted[i]) {
+                bySource[next[sources[i].getId()]++] = edges[i];
+            }
+        }
+
+        // pass 3: rebuild each touched row from its bits, old and new edges
+        // merged in destination order, and recount it on the way
+        GraphEdge[] byDest = new GraphEdge[capacity];
+        for (int u = 0; u < capacity; u++) {
+            if (start[u] == start[u + 1]) {
+                continue;
+            }
+            for (int k = start[u]; k < start[u + 1]; k++) {
+                byDest[edgeCell[bySource[k].getId()] % capacity] = bySource[k];
+            }
+            GraphEdge[] old = rowEdges[u];
+            int size = outCount[u] + start[u + 1] - start[u];
+            GraphEdge[] row = new GraphEdge[size];
+            int kept = 0;
+            int slot = 0;
+            int base = u * words;
+            for (int w = 0; w < words; w++) {
+                before[base + w] = slot;
+                for (long word = rows[base + w]; word != 0; word &= word - 1) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (byDest[v] != null) {
+                        row[slot++] = byDest[v];
+                        byDest[v] = null;
+                    } else {
+                        row[slot++] = old[kept++];
+                    }
+                }
+            }
+            rowEdges[u] = row;
+            outCount[u] = size;
+            counted[u] = words;
+        }
+        return added;
+    }
+
+    /**
+     * Removes edge from this graph.
+     * Fails if edge is null, or is otherwise not an element of this graph.
+     * @param edge the edge to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public boolean removeEdge(GraphEdge edge) {
+        // O(d + V / 64) where d is the out-degree of its source; O(1) for
+        // the last edge of a row whose counts are up to date
+        int id = indexOf(edge);
+        if (id == -1) {
+            return false;
+        }
+        int from = edgeCell[id] / capacity;
+        int to = edgeCell[id] % capacity;
+        GraphEdge[] row = rowEdges[from];
+        int slot = rank(from, to);
+        int size = --outCount[from];
+        System.arraycopy(row, slot + 1, row, slot, size - slot);
+        row[size] = null;
+        if (size == 0) {
+            rowEdges[from] = NO_EDGES;
+        }
+        rows[from * words + (to >>> 6)] &= ~(1L << to);
+        cols[to * words + (from >>> 6)] &= ~(1L << from);
+        moved(from, to);
+        inCount[to]--;
+        edgeCell[id] = -1;
+        edgeCount--;
+        return true;
+    }
+
+    /**
+     * Removes vertex from this graph, together with all its incident edges.
+     * Fails if vertex is null or not an element of this graph.
+     * @param vertex the vertex to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public boolean removeVertex(GraphNode vertex) {
+        // O(d (d + V / 64)) where d is the degree of vertex
+        int id = indexOf(vertex);
+        if (id == -1) {
+            return false;
+        }
+        while (outCount[id] > 0) {
+            removeEdge(rowEdges[id][outCount[id] - 1]);
+        }
+        for (int source = nextBit(cols, id, 0); source != -1; source = nextBit(cols, id, source + 1)) {
+            removeEdge(edgeAt(source, id));
+        }
+        vertexList[id] = null;
+        vertexCount--;
+        return true;
+    }
+
+    /**
+     * Iterator over the non-null entries of an id-indexed table.
+     * Removing the element just returned from the graph is safe.
+     * @param <T> GraphNode or GraphEdge
+     */
+    private static class TableIterator<T> implements Iterator<T> {
+        /**
+         * the table (captured, so a regrow does not disturb the iteration).
+         */
+        private final T[] table;
+
+        /**
+         * index of the next non-null entry, or table.length.
+         */
+        private int next = -1;
+
+        /**
+         * constructor.
+         * @param table the table to walk
+         */
+        TableIterator(T[] table) {
+            this.table = table;
+            advance();
+        }
+
+        /**
+         * Moves next to the following non-null entry.
+         */
+        private void advance() {
+            do {
+                next++;
+            } while (next < table.length && table[next] == null);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean hasNext() {
+            return next < table.length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T item = table[next];
+            advance();
+            return item;
+        }
+    }
+
+    /**
+     * Read-only view over the set bits of one row or column.
+     * The next bit is looked up from the last one returned, so removing
+     * the element just returned from the graph is safe.
+     * @param <T> what each bit is reported as
+     */
+    private abstract class BitView<T> extends AbstractCollection<T> {
+        /**
+         * the vertex id.
+         */
+        private final int id;
+
+        /**
+         * true for the row (outgoing edges), false for the column (incoming).
+         */
+        private final boolean out;
+
+        /**
+         * constructor.
+         * @param id the vertex id
+         * @param out true for the row, false for the column
+         */
+        BitView(int id, boolean out) {
+            this.id = id;
+            this.out = out;
+        }
+
+        /**
+         * Converts the id at the other end into the reported element.
+         * @param other id of the other endpoint
+         * @return the element
+         */
+        abstract T map(int other);
+
+        /**
+         * {@inheritDoc}
+         */
+        public int size() {
+            return out ? outCount[id] : inCount[id];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int last = -1;
+
+                public boolean hasNext() {
+                    return nextBit(out ? rows : cols, id, last + 1) != -1;
+                }
+
+                public T next() {
+                    int other = nextBit(out ? rows : cols, id, last + 1);
+                    if (other == -1) {
+                        throw new NoSuchElementException();
+                    }
+                    last = other;
+                    return map(other);
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns a {@code Factory} that creates an instance of this graph type.
+     * @return a new Factory object
+     */
+    public static Factory<Graph<GraphNode, GraphEdge>> getFactory() {
+        return new Factory<Graph<GraphNode, GraphEdge>>() {
+            public Graph<GraphNode, GraphEdge> create() {
+                return new DenseThreeTenGraph();
+            }
+        };
+    }
+
+    /**
+     * Builds a complete DAG on n vertices (every pair, high id to low id,
+     * so that simplify() keeps all of it) in the given graph.
+     * @param graph the graph
+     * @param nodes the nodes
+     * @param edges n (n - 1) / 2 edges
+     */
+    private static void complete(Graph<GraphNode, GraphEdge> graph, GraphNode[] nodes, GraphEdge[] edges) {
+        for (GraphNode v : nodes) {
+            graph.addVertex(v);
+        }
+        int id = 0;
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            for (int j = 0; j < i; j++) {
+                graph.addEdge(edges[id++], nodes[i], nodes[j]);
+            }
+        }
+    }
+
+    /**
+     * Returns the heap in use after collecting garbage (for testing).
+     * @return bytes in use
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Runs simplify() and a full sort, and returns how long it took.
+     * @param graph the graph
+     * @return the time in milliseconds
+     */
+    private static long sortTime(Graph<GraphNode, GraphEdge> graph) {
+        long begin = System.nanoTime();
+        TopologicalSort topSort = new TopologicalSort();
+        topSort.reset(graph);
+        topSort.simplify();
+        topSort.start();
+        while (topSort.setupNextStep()) {
+            topSort.doNextStep();
+        }
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        GraphNode[] nodes = new GraphNode[10];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(i);
+        }
+        GraphEdge[] edges = new GraphEdge[8];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new GraphEdge(i);
+        }
+
+        // same graph as ThreeTenGraph.main()
+        DenseThreeTenGraph graph = new DenseThreeTenGraph();
+        for (GraphNode n : nodes) {
+            graph.addVertex(n);
+        }
+        graph.addEdge(edges[0], nodes[0], nodes[1]);
+        graph.addEdge(edges[1], nodes[1], nodes[2]);
+        graph.addEdge(edges[2], nodes[3], nodes[6]);
+        graph.addEdge(edges[3], nodes[6], nodes[7]);
+        graph.addEdge(edges[4], nodes[8], nodes[9]);
+        graph.addEdge(edges[5], nodes[9], nodes[0]);
+        graph.addEdge(edges[6], nodes[2], nodes[7]);
+        graph.addEdge(edges[7], nodes[1], nodes[8]);
+
+        if (graph.getVertexCount() == 10 && graph.getEdgeCount() == 8) {
+            System.out.println("Yay 1");
+        }
+        if (graph.inDegree(nodes[0]) == 1 && graph.outDegree(nodes[1]) == 2
+                && graph.isPredecessor(nodes[2], nodes[7]) && graph.isSuccessor(nodes[7], nodes[2])
+                && !graph.isPredecessor(nodes[7], nodes[2])) {
+            System.out.println("Yay 2");
+        }
+        if (graph.toString().equals("0 1 2 7 8 9 3 6 4 5")) {
+            System.out.println("Yay 3");
+        }
+        if (graph.getSource(edges[5]) == nodes[9] && graph.getDest(edges[5]) == nodes[0]
+                && graph.findEdge(nodes[1], nodes[8]) == edges[7] && graph.findEdge(nodes[1], nodes[2]) == edges[1]
+                && graph.findEdge(nodes[8], nodes[1]) == null) {
+            System.out.println("Yay 4");
+        }
+        graph.removeVertex(nodes[1]);
+        if (graph.getEdgeCount() == 5 && graph.inDegree(nodes[2]) == 0 && graph.outDegree(nodes[0]) == 0
+                && !graph.containsEdge(edges[7]) && graph.getInEdges(nodes[7]).size() == 2) {
+            System.out.println("Yay 5");
+        }
+
+        // ids past 64 make the matrices grow and rows span several words
+        GraphNode far = new GraphNode(130);
+        graph.addVertex(far);
+        graph.addEdge(new GraphEdge(8), nodes[0], far);
+        graph.addEdge(new GraphEdge(9), far, nodes[9]);
+        StringBuilder edgeIds = new StringBuilder();
+        for (GraphEdge e : graph.getEdges()) {
+            edgeIds.append(e.getId());
+        }
+        if (graph.findEdge(nodes[9], nodes[0]) == edges[5] && graph.getSuccessors(nodes[0]).contains(far)
+                && graph.getPredecessors(nodes[9]).size() == 2 && graph.inDegree(nodes[9]) == 2
+                && graph.getSource(edges[5]) == nodes[9] && graph.getDest(edges[5]) == nodes[0]
+                && graph.getDest(graph.findEdge(nodes[0], far)) == far
+                && edgeIds.toString().equals("2345689")) {
+            System.out.println("Yay 6");
+        }
+
+        // a complete DAG on 200 vertices (ThreeTenGraph's limit): same ranks
+        // as the reference matrix
+        int n = 200;
+        GraphNode[] denseNodes = new GraphNode[n];
+        GraphNode[] matrixNodes = new GraphNode[n];
+        for (int i = 0; i < n; i++) {
+            denseNodes[i] = new GraphNode(i);
+            matrixNodes[i] = new GraphNode(i);
+        }
+        GraphEdge[] completeEdges = new GraphEdge[n * (n - 1) / 2];
+        for (int i = 0; i < completeEdges.length; i++) {
+            completeEdges[i] = new GraphEdge(i);
+        }
+        // the memory of the structure alone: the nodes and edges exist already
+        long begin = usedMemory();
+        DenseThreeTenGraph dense = new DenseThreeTenGraph(n, completeEdges.length);
+        complete(dense, denseNodes, completeEdges);
+        long denseBytes = usedMemory() - begin;
+        begin = usedMemory();
+        ThreeTenGraph matrix = new ThreeTenGraph();
+        complete(matrix, matrixNodes, completeEdges);
+        long matrixBytes = usedMemory() - begin;
+        // the first round only warms up the JIT
+        sortTime(matrix);
+        sortTime(dense);
+        long matrixMillis = sortTime(matrix);
+        long denseMillis = sortTime(dense);
+        boolean same = dense.getEdgeCount() == n * (n - 1) / 2;
+        for (int i = 0; i < n; i++) {
+            same &= denseNodes[i].getRank() == n - 1 - i && matrixNodes[i].getRank() == denseNodes[i].getRank();
+        }
+        if (same && denseBytes < matrixBytes) {
+            System.out.println("Yay 7 (dense " + denseBytes / 1024 + " KB, " + denseMillis + " ms; matrix "
+                    + matrixBytes / 1024 + " KB, " + matrixMillis + " ms)");
+        }
+
+        // past ThreeTenGraph's limit the dense graph has to beat the sparse one
+        // at loading a complete DAG and sorting it
+        n = 2000;
+        GraphEdge[] bigEdges = new GraphEdge[n * (n - 1) / 2];
+        for (int i = 0; i < bigEdges.length; i++) {
+            bigEdges[i] = new GraphEdge(i);
+        }
+        long denseTotal = Long.MAX_VALUE;
+        long sparseTotal = Long.MAX_VALUE;
+        boolean ranked = true;
+        for (int round = 0; round < 2; round++) {
+            GraphNode[] bigNodes = new GraphNode[n];
+            for (int i = 0; i < n; i++) {
+                bigNodes[i] = new GraphNode(i);
+            }
+            usedMemory();
+            long start = System.nanoTime();
+            DenseThreeTenGraph bigDense = new DenseThreeTenGraph(n, bigEdges.length);
+            complete(bigDense, bigNodes, bigEdges);
+            denseTotal = Math.min(denseTotal, (System.nanoTime() - start) / 1000000 + sortTime(bigDense));
+            ranked &= bigNodes[0].getRank() == n - 1 && bigNodes[n - 1].getRank() == 0;
+            bigDense = null;
+            usedMemory();
+            start = System.nanoTime();
+            SparseThreeTenGraph bigSparse = new SparseThreeTenGraph(n, bigEdges.length);
+            complete(bigSparse, bigNodes, bigEdges);
+            sparseTotal = Math.min(sparseTotal, (System.nanoTime() - start) / 1000000 + sortTime(bigSparse));
+        }
+        if (ranked && denseTotal < sparseTotal) {
+            System.out.println("Yay 8 (dense " + denseTotal + " ms, sparse " + sparseTotal + " ms)");
+        }
+
+        // addEdges() in one go, duplicates, loops and known edges included,
+        // gives the same graph as addEdge() one by one
+        java.util.Random rand = new java.util.Random(7);
+        int size = 150;
+        DenseThreeTenGraph oneByOne = new DenseThreeTenGraph();
+        DenseThreeTenGraph batched = new DenseThreeTenGraph();
+        GraphNode[] pool = new GraphNode[size];
+        for (int i = 0; i < size; i++) {
+            pool[i] = new GraphNode(i);
+            oneByOne.addVertex(pool[i]);
+            batched.addVertex(pool[i]);
+        }
+        for (int i = 0; i < 300; i++) {
+            GraphEdge e = new GraphEdge(100000 + i);
+            GraphNode u = pool[rand.nextInt(size)];
+            GraphNode v = pool[rand.nextInt(size)];
+            oneByOne.addEdge(e, u, v);
+            batched.addEdge(e, u, v);
+        }
+        int k = 4000;
+        GraphEdge[] batch = new GraphEdge[k];
+        GraphNode[] tails = new GraphNode[k];
+        GraphNode[] heads = new GraphNode[k];
+        int expectedAdded = 0;
+        for (int i = 0; i < k; i++) {
+            batch[i] = new GraphEdge(rand.nextInt(k));
+            tails[i] = pool[rand.nextInt(size)];
+            heads[i] = pool[rand.nextInt(size)];
+            if (oneByOne.addEdge(batch[i], tails[i], heads[i])) {
+                expectedAdded++;
+            }
+        }
+        boolean batchSame = batched.addEdges(batch, tails, heads) == expectedAdded
+                && batched.getEdgeCount() == oneByOne.getEdgeCount()
+                && batched.toString().equals(oneByOne.toString());
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                batchSame &= batched.findEdge(pool[i], pool[j]) == oneByOne.findEdge(pool[i], pool[j]);
+            }
+            batchSame &= batched.outDegree(pool[i]) == oneByOne.outDegree(pool[i])
+                    && batched.inDegree(pool[i]) == oneByOne.inDegree(pool[i]);
+        }
+        for (GraphEdge e : oneByOne.getEdges()) {
+            batchSame &= batched.getSource(e) == oneByOne.getSource(e) && batched.getDest(e) == oneByOne.getDest(e);
+        }
+        if (batchSame && expectedAdded > 0) {
+            System.out.println("Yay 9");
+        }
+    }
+}
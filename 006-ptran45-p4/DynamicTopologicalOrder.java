@@ -0,0 +1,782 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps a topological order of a graph up to date while edges are added,
+ * without sorting again (the algorithm of Pearce and Kelly).
+ * <p>
+ * Every node has a position in the order, also written to its rank. When
+ * an edge u--&gt;v is added and u already comes before v, nothing moves.
+ * Otherwise only the nodes positioned between v and u can be out of
+ * order: the ones reachable from v (searching forward, never past u's
+ * position) and the ones reaching u (searching backward, never before
+ * v's position). If the forward search reaches u, the edge would close a
+ * cycle and is refused. Else the two sets swap places among the
+ * positions they already hold, the nodes reaching u first. The cost is
+ * proportional to the size of those sets and their edges, not to V + E.
+ * <p>
+ * Removing an edge never breaks the order, so nothing moves. Removing a
+ * vertex leaves its position empty; the other ranks stay as they are
+ * (still in order, but with gaps) until the gaps are closed in one O(V)
+ * pass, either when they make up a quarter of the positions or when the
+ * order is read through getOrder().
+ * <p>
+ * The order kept is a valid one, not necessarily the lowest-id-first one
+ * that TopologicalSort's simulation produces. canonicalize() re-sorts
+ * into that order when it is needed; isCanonical() tells whether changes
+ * since then may have made it stale. After the first call, each change
+ * records the earliest position it can have disturbed (a removal, the
+ * predecessors of a node it frees, the region an edge reorders, or where
+ * an added vertex would have been taken), and the next call keeps the
+ * order before that position and re-sorts only the rest.
+ * <p>
+ * Edges and vertices must be added and removed through this object; it
+ * delegates to the graph. Node ids must be non-negative.
+ * @author Phat Tran
+ */
+class DynamicTopologicalOrder {
+
+    /**
+     * the graph being kept in order.
+     */
+    private final Graph<GraphNode, GraphEdge> graph;
+
+    /**
+     * position of each node id, or -1.
+     */
+    private int[] ord;
+
+    /**
+     * the node at each position.
+     */
+    private GraphNode[] at;
+
+    /**
+     * number of positions in use, empty ones included.
+     */
+    private int size;
+
+    /**
+     * number of empty positions (left by removed vertices).
+     */
+    private int gaps;
+
+    /**
+     * whether the order is known to be the lowest-id-first one.
+     */
+    private boolean canonical;
+
+    /**
+     * the number of leading positions known to match the lowest-id-first
+     * order (everything from there on is re-sorted by canonicalize()).
+     */
+    private int settled;
+
+    /**
+     * the lowest id added since canonicalize(), or Integer.MAX_VALUE.
+     */
+    private int lowestAdded = Integer.MAX_VALUE;
+
+    /**
+     * in-degree left of each node id while canonicalize() runs.
+     */
+    private int[] waiting;
+
+    /**
+     * search stamp of each node id (see epoch).
+     */
+    private int[] mark;
+
+    /**
+     * the stamp of the current search; bumped instead of clearing mark.
+     */
+    private int epoch;
+
+    /**
+     * Orders nodes by position.
+     */
+    private final Comparator<GraphNode> byPosition = new Comparator<GraphNode>() {
+        public int compare(GraphNode x, GraphNode y) {
+            return Integer.compare(ord[x.getId()], ord[y.getId()]);
+        }
+    };
+
+    /**
+     * Attaches to a graph and sorts it once.
+     * @param graph the graph (acyclic, with non-negative vertex ids)
+     * @throws IllegalArgumentException if graph has a cycle
+     */
+    public DynamicTopologicalOrder(Graph<GraphNode, GraphEdge> graph) {
+        // O(V + E)
+        SortResult sorted = TopologicalSort.sort(graph);
+        if (sorted.hasCycle()) {
+            throw new IllegalArgumentException();
+        }
+        this.graph = graph;
+        int idRange = sorted.getRanks().length;
+        ord = new int[Math.max(idRange, 16)];
+        mark = new int[ord.length];
+        waiting = new int[ord.length];
+        Arrays.fill(ord, -1);
+        at = new GraphNode[Math.max(graph.getVertexCount(), 16)];
+        for (GraphNode v : graph.getVertices()) {
+            int position = sorted.getRank(v.getId());
+            ord[v.getId()] = position;
+            at[position] = v;
+            v.setRank(position);
+        }
+        size = graph.getVertexCount();
+        canonical = false;
+    }
+
+    /**
+     * Returns the graph this order belongs to.
+     * @return the graph
+     */
+    public Graph<GraphNode, GraphEdge> getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the nodes in order, as a read-only live view. Reading it
+     * closes any gaps first, so the ranks are then 0 to V-1 again.
+     * @return the order
+     */
+    public List<GraphNode> getOrder() {
+        return new AbstractList<GraphNode>() {
+            public GraphNode get(int index) {
+                compact();
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return at[index];
+            }
+
+            public int size() {
+                compact();
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the position of a node in the order.
+     * @param vertex the node
+     * @return its position, or -1 if it is not ordered here
+     */
+    public int getRank(GraphNode vertex) {
+        int id = vertex.getId();
+        return (id >= 0 && id < ord.length) ? ord[id] : -1;
+    }
+
+    /**
+     * Adds a vertex to the graph and puts it last.
+     * @param vertex the vertex
+     * @return true if it was added
+     */
+    public boolean addVertex(GraphNode vertex) {
+        // amortized O(1)
+        if (vertex == null || vertex.getId() < 0 || !graph.addVertex(vertex)) {
+            return false;
+        }
+        int id = vertex.getId();
+        if (id >= ord.length) {
+            int capacity = Math.max(id + 1, ord.length * 2);
+            int old = ord.length;
+            ord = Arrays.copyOf(ord, capacity);
+            mark = Arrays.copyOf(mark, capacity);
+            waiting = Arrays.copyOf(waiting, capacity);
+            Arrays.fill(ord, old, capacity, -1);
+        }
+        if (size == at.length) {
+            at = Arrays.copyOf(at, at.length * 2);
+        }
+        ord[id] = size;
+        at[size] = vertex;
+        vertex.setRank(size);
+        size++;
+        lowestAdded = Math.min(lowestAdded, id);
+        canonical = false;
+        return true;
+    }
+
+    /**
+     * Removes an edge from the graph. The order stays valid as it is.
+     * @param e the edge
+     * @return true if it was removed
+     */
+    public boolean removeEdge(GraphEdge e) {
+        // O(in-degree of its destination), plus what the graph takes
+        GraphNode dest = graph.getDest(e);
+        if (dest == null || !graph.removeEdge(e)) {
+            return false;
+        }
+        unsettle(readyFrom(dest));
+        return true;
+    }
+
+    /**
+     * Removes a vertex (and its edges) from the graph, leaving its
+     * position empty. The gaps are closed once they make up a quarter of
+     * the positions.
+     * @param vertex the vertex
+     * @return true if it was removed
+     */
+    public boolean removeVertex(GraphNode vertex) {
+        if (!drop(vertex)) {
+            return false;
+        }
+        if (4 * gaps > size) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Removes several vertices, closing the gaps at most once.
+     * @param vertices the vertices
+     * @return how many were removed
+     */
+    public int removeVertices(Collection<? extends GraphNode> vertices) {
+        int removed = 0;
+        for (GraphNode v : vertices) {
+            if (drop(v)) {
+                removed++;
+            }
+        }
+        if (4 * gaps > size) {
+            compact();
+        }
+        return removed;
+    }
+
+    /**
+     * Removes a vertex from the graph and empties its position.
+     * @param vertex the vertex
+     * @return true if it was removed
+     */
+    private boolean drop(GraphNode vertex) {
+        // O(in-degrees of its successors), plus what the graph takes
+        int position = (vertex == null) ? -1 : getRank(vertex);
+        if (position == -1) {
+            return false;
+        }
+        ArrayList<GraphNode> freed = new ArrayList<>(graph.getSuccessors(vertex));
+        if (!graph.removeVertex(vertex)) {
+            return false;
+        }
+        at[position] = null;
+        ord[vertex.getId()] = -1;
+        vertex.setRank(-1);
+        gaps++;
+        unsettle(position);
+        for (GraphNode w : freed) {
+            unsettle(readyFrom(w));
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first position at which a node can be ready, i.e. the one
+     * after its last predecessor.
+     * @param vertex the node
+     * @return the position
+     */
+    private int readyFrom(GraphNode vertex) {
+        // O(in-degree)
+        int from = 0;
+        for (GraphNode p : graph.getPredecessors(vertex)) {
+            from = Math.max(from, ord[p.getId()] + 1);
+        }
+        return from;
+    }
+
+    /**
+     * Records that the order may differ from the lowest-id-first one from
+     * a position on.
+     * @param position the position
+     */
+    private void unsettle(int position) {
+        settled = Math.min(settled, position);
+        canonical = false;
+    }
+
+    /**
+     * Closes the gaps left by removed vertices, so the ranks are 0 to V-1.
+     * Relative order does not change.
+     */
+    public void compact() {
+        // O(V), and O(1) if there are no gaps
+        if (gaps == 0) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (at[i] != null) {
+                place(at[i], kept++);
+            }
+        }
+        Arrays.fill(at, kept, size, null);
+        size = kept;
+        gaps = 0;
+    }
+
+    /**
+     * Re-sorts into the lowest-id-first order, the one TopologicalSort's
+     * simulation produces (and closes the gaps). Only the positions from
+     * the first one disturbed since the last call are re-sorted.
+     */
+    public void canonicalize() {
+        // O(p + (k + e) lg k) for a kept prefix of p positions and k nodes with e in-edges after it;
+        // the first call is O((V + E) lg V)
+        if (canonical) {
+            return;
+        }
+        // an added vertex is ready from the start: it goes before the first kept node with a higher id
+        for (int i = 0; i < settled; i++) {
+            if (at[i].getId() > lowestAdded) {
+                settled = i;
+                break;
+            }
+        }
+        PriorityQueue<GraphNode> ready = new PriorityQueue<>(16, new Comparator<GraphNode>() {
+            public int compare(GraphNode x, GraphNode y) {
+                return Integer.compare(x.getId(), y.getId());
+            }
+        });
+        for (int i = settled; i < size; i++) {
+            GraphNode v = at[i];
+            if (v == null) {
+                continue;
+            }
+            int left = 0;
+            for (GraphNode p : graph.getPredecessors(v)) {
+                if (ord[p.getId()] >= settled) {
+                    left++;
+                }
+            }
+            waiting[v.getId()] = left;
+            if (left == 0) {
+                ready.add(v);
+            }
+        }
+        int next = settled;
+        while (!ready.isEmpty()) {
+            GraphNode u = ready.remove();
+            place(u, next++);
+            for (GraphNode w : graph.getSuccessors(u)) {
+                if (--waiting[w.getId()] == 0) {
+                    ready.add(w);
+                }
+            }
+        }
+        Arrays.fill(at, next, size, null);
+        size = next;
+        gaps = 0;
+        settled = size;
+        lowestAdded = Integer.MAX_VALUE;
+        canonical = true;
+    }
+
+    /**
+     * Tells whether the order is the lowest-id-first one: true right after
+     * canonicalize() and until the next change that may alter it.
+     * @return true if the order is known to be canonical
+     */
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Tells whether adding v1--&gt;v2 would close a cycle, i.e. whether v1
+     * is reachable from v2.
+     * @param v1 the source
+     * @param v2 the destination
+     * @return true if the edge would close a cycle
+     */
+    public boolean createsCycle(GraphNode v1, GraphNode v2) {
+        // O(affected region)
+        if (getRank(v1) == -1 || getRank(v2) == -1) {
+            return false;
+        }
+        if (v1.equals(v2)) {
+            return true;
+        }
+        return ord[v2.getId()] < ord[v1.getId()] && search(v2, ord[v1.getId()], true, null);
+    }
+
+    /**
+     * Adds an edge to the graph and repairs the order.
+     * @param e the edge
+     * @param v1 the source
+     * @param v2 the destination
+     * @return true if the edge was added; false if the graph refused it
+     *         (see Graph.addEdge()) or it would close a cycle (see createsCycle())
+     */
+    public boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2) {
+        // O(affected region lg affected region)
+        if (getRank(v1) == -1 || getRank(v2) == -1 || v1.equals(v2)) {
+            return false;
+        }
+        int lower = ord[v2.getId()];
+        int upper = ord[v1.getId()];
+        if (lower > upper) {
+            // already in order
+            if (!graph.addEdge(e, v1, v2)) {
+                return false;
+            }
+            // every node was ready where it is before, and still is: the order stays lowest-id-first
+            return true;
+        }
+
+        ArrayList<GraphNode> forward = new ArrayList<>();
+        if (search(v2, upper, true, forward)) {
+            return false;
+        }
+        if (!graph.addEdge(e, v1, v2)) {
+            return false;
+        }
+        ArrayList<GraphNode> backward = new ArrayList<>();
+        search(v1, lower, false, backward);
+        reorder(backward, forward);
+        unsettle(lower);
+        return true;
+    }
+
+    /**
+     * Searches from start, forward along successors that are not after
+     * bound or backward along predecessors that are not before it.
+     * @param start where to start
+     * @param bound the position the search must not cross
+     * @param forward true to follow successors, false for predecessors
+     * @param found collects the nodes reached (start included), or null
+     * @return true if a forward search reached the node at bound
+     */
+    private boolean search(GraphNode start, int bound, boolean forward, List<GraphNode> found) {
+        // O(nodes reached + their edges)
+        epoch++;
+        mark[start.getId()] = epoch;
+        if (found != null) {
+            found.add(start);
+        }
+        ArrayDeque<Iterator<GraphNode>> stack = new ArrayDeque<>();
+        stack.push(neighbors(start, forward));
+        while (!stack.isEmpty()) {
+            Iterator<GraphNode> it = stack.peek();
+            if (!it.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            GraphNode w = it.next();
+            int position = ord[w.getId()];
+            if (forward && position == bound) {
+                return true;
+            }
+            if ((forward ? position > bound : position < bound) || mark[w.getId()] == epoch) {
+                continue;
+            }
+            mark[w.getId()] = epoch;
+            if (found != null) {
+                found.add(w);
+            }
+            stack.push(neighbors(w, forward));
+        }
+        return false;
+    }
+
+    /**
+     * Returns an iterator over the successors or predecessors of a node.
+     * @param vertex the node
+     * @param forward true for successors
+     * @return the iterator
+     */
+    private Iterator<GraphNode> neighbors(GraphNode vertex, boolean forward) {
+        return (forward ? graph.getSuccessors(vertex) : graph.getPredecessors(vertex)).iterator();
+    }
+
+    /**
+     * Gives the positions held by both sets to the nodes reaching the new
+     * edge's source first and the nodes reachable from its destination
+     * after, each set keeping its relative order.
+     * @param backward the nodes reaching the source
+     * @param forward the nodes reachable from the destination
+     */
+    private void reorder(ArrayList<GraphNode> backward, ArrayList<GraphNode> forward) {
+        // O(k lg k) for k affected nodes
+        backward.sort(byPosition);
+        forward.sort(byPosition);
+        int[] positions = new int[backward.size() + forward.size()];
+        int count = 0;
+        for (GraphNode v : backward) {
+            positions[count++] = ord[v.getId()];
+        }
+        for (GraphNode v : forward) {
+            positions[count++] = ord[v.getId()];
+        }
+        Arrays.sort(positions);
+        count = 0;
+        for (GraphNode v : backward) {
+            place(v, positions[count++]);
+        }
+        for (GraphNode v : forward) {
+            place(v, positions[count++]);
+        }
+    }
+
+    /**
+     * Moves a node to a position.
+     * @param vertex the node
+     * @param position the position
+     */
+    private void place(GraphNode vertex, int position) {
+        ord[vertex.getId()] = position;
+        at[position] = vertex;
+        vertex.setRank(position);
+    }
+
+    /**
+     * Checks that every vertex has its own position (gaps allowed), that
+     * the ranks match, and that every edge goes forward (for testing).
+     * @return true if the order is valid
+     */
+    boolean isValid() {
+        // O(V + E)
+        if (size - gaps != graph.getVertexCount()) {
+            return false;
+        }
+        int empty = 0;
+        for (int i = 0; i < size; i++) {
+            if (at[i] == null) {
+                empty++;
+            } else if (ord[at[i].getId()] != i || at[i].getRank() != i) {
+                return false;
+            }
+        }
+        if (empty != gaps) {
+            return false;
+        }
+        for (GraphEdge e : graph.getEdges()) {
+            if (getRank(graph.getSource(e)) >= getRank(graph.getDest(e))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        // 5-->2 5-->0 4-->0 4-->1 2-->3 3-->1 sorts to 4 5 0 2 3 1
+        SparseThreeTenGraph graph = new SparseThreeTenGraph();
+        GraphNode[] nodes = new GraphNode[6];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(i);
+            graph.addVertex(nodes[i]);
+        }
+        int[][] pairs = {{5, 2}, {5, 0}, {4, 0}, {4, 1}, {2, 3}, {3, 1}};
+        for (int i = 0; i < pairs.length; i++) {
+            graph.addEdge(new GraphEdge(i), nodes[pairs[i][0]], nodes[pairs[i][1]]);
+        }
+        DynamicTopologicalOrder order = new DynamicTopologicalOrder(graph);
+        if (order.getOrder().toString().equals("[4, 5, 0, 2, 3, 1]") && order.isValid()) {
+            System.out.println("Yay 1");
+        }
+
+        // 3-->0 moves 2 and 3 in front of 0; a new vertex 6 goes last, then 6-->4 takes 4's place
+        boolean added = order.addEdge(new GraphEdge(6), nodes[3], nodes[0]);
+        String first = order.getOrder().toString();
+        GraphNode six = new GraphNode(6);
+        added &= order.addVertex(six) && six.getRank() == 6;
+        added &= order.addEdge(new GraphEdge(7), six, nodes[4]);
+        if (added && first.equals("[4, 5, 2, 3, 0, 1]") && order.isValid()
+                && order.getOrder().toString().equals("[6, 5, 2, 3, 4, 0, 1]") && nodes[0].getRank() == 5) {
+            System.out.println("Yay 2");
+        }
+
+        // 1-->6 would close 6-->4-->1-->6
+        int edges = graph.getEdgeCount();
+        if (order.createsCycle(nodes[1], six) && !order.addEdge(new GraphEdge(8), nodes[1], six)
+                && graph.getEdgeCount() == edges && order.isValid() && !order.createsCycle(six, nodes[1])) {
+            System.out.println("Yay 3");
+        }
+
+        // removals: ranks keep their gaps until compaction, and canonicalize() matches the simulation
+        order.removeEdge(graph.findEdge(nodes[3], nodes[0]));
+        order.removeVertex(nodes[2]);
+        boolean gapped = order.isValid() && nodes[3].getRank() == 3 && nodes[0].getRank() == 5
+                && nodes[2].getRank() == -1;
+        order.removeVertex(nodes[5]);// 2 gaps in 7 positions: compacted
+        boolean compacted = order.isValid() && order.getRank(nodes[3]) == 1
+                && order.getOrder().toString().equals("[6, 3, 4, 0, 1]");
+        order.canonicalize();
+        boolean canonicalized = order.isCanonical() && order.isValid() && nodes[3].getRank() == 0
+                && six.getRank() == 1 && nodes[1].getRank() == 4;
+        TopologicalSort simulation = new TopologicalSort();// overwrites the ranks
+        simulation.reset(graph);
+        while (simulation.step()) {
+        }
+        if (gapped && compacted && canonicalized
+                && order.getOrder().toString().equals(simulation.queue.toString())) {
+            System.out.println("Yay 4");
+        }
+
+        // random growth: 50000 vertices, 100000 insert attempts, against sorting again now and then
+        int n = 50000;
+        int tries = 100000;
+        SparseThreeTenGraph big = new SparseThreeTenGraph(n, tries);
+        GraphNode[] bigNodes = new GraphNode[n];
+        for (int i = 0; i < n; i++) {
+            bigNodes[i] = new GraphNode(i);
+            big.addVertex(bigNodes[i]);
+        }
+        DynamicTopologicalOrder dynamic = new DynamicTopologicalOrder(big);
+        java.util.Random rand = new java.util.Random(0);
+        int accepted = 0;
+        int refused = 0;
+        boolean refusalsRight = true;
+        long begin = System.nanoTime();
+        for (int i = 0; i < tries; i++) {
+            // mostly short edges, like dependencies between nearby modules
+            int a = rand.nextInt(n);
+            int b = Math.floorMod(a + rand.nextInt(200) - 100, n);
+            if (a == b) {
+                continue;
+            }
+            if (dynamic.addEdge(new GraphEdge(i), bigNodes[a], bigNodes[b])) {
+                accepted++;
+            } else if (big.findEdge(bigNodes[a], bigNodes[b]) == null) {
+                refused++;
+                if (refused % 1000 == 0) {
+                    // spot check: the refused edge really closes a cycle
+                    GraphEdge probe = new GraphEdge(tries + i);
+                    big.addEdge(probe, bigNodes[a], bigNodes[b]);
+                    refusalsRight &= TopologicalSort.sort(big).hasCycle();
+                    big.removeEdge(probe);
+                }
+            }
+        }
+        long millis = (System.nanoTime() - begin) / 1000000;
+        begin = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            TopologicalSort.sort(big);
+        }
+        long resortMicros = (System.nanoTime() - begin) / 10000;
+        if (dynamic.isValid() && refusalsRight && accepted > 0 && refused > 0) {
+            System.out.println("Yay 5 (" + accepted + " edges in " + millis + " ms, " + refused
+                    + " refused; one full sort takes " + resortMicros / 1000 + " ms)");
+        }
+
+        // removing 10% of the vertices one by one, then a batch of edges
+        begin = System.nanoTime();
+        for (int i = 0; i < n; i += 10) {
+            dynamic.removeVertex(bigNodes[i]);
+        }
+        ArrayList<GraphEdge> doomed = new ArrayList<>();
+        for (GraphEdge e : big.getEdges()) {
+            if (e.getId() % 7 == 0) {
+                doomed.add(e);
+            }
+        }
+        for (GraphEdge e : doomed) {
+            dynamic.removeEdge(e);
+        }
+        millis = (System.nanoTime() - begin) / 1000000;
+        boolean beforeCompaction = dynamic.isValid();
+        if (beforeCompaction && dynamic.getOrder().size() == n - n / 10 && dynamic.isValid()
+                && dynamic.getOrder().get(n - n / 10 - 1).getRank() == n - n / 10 - 1) {
+            System.out.println("Yay 6 (" + (n / 10) + " vertices and " + doomed.size() + " edges in " + millis
+                    + " ms)");
+        }
+
+        // 0 1 5 with 5-->0 is canonically 1 5 0; without 5 it is 0 1, not 1 0
+        SparseThreeTenGraph three = new SparseThreeTenGraph();
+        GraphNode[] abc = {new GraphNode(0), new GraphNode(1), new GraphNode(5)};
+        for (GraphNode v : abc) {
+            three.addVertex(v);
+        }
+        three.addEdge(new GraphEdge(0), abc[2], abc[0]);
+        DynamicTopologicalOrder small = new DynamicTopologicalOrder(three);
+        small.canonicalize();
+        String before = small.getOrder().toString();
+        small.removeVertex(abc[2]);
+        boolean stale = !small.isCanonical();
+        small.canonicalize();
+        if (before.equals("[1, 5, 0]") && stale && small.isCanonical()
+                && small.getOrder().toString().equals("[0, 1]") && small.isValid()) {
+            System.out.println("Yay 7");
+        }
+
+        // random changes to a small graph, canonicalized now and then, against starting over
+        SparseThreeTenGraph fuzz = new SparseThreeTenGraph();
+        ArrayList<GraphNode> alive = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            GraphNode v = new GraphNode(2 * i);
+            fuzz.addVertex(v);
+            alive.add(v);
+        }
+        DynamicTopologicalOrder fuzzed = new DynamicTopologicalOrder(fuzz);
+        boolean matches = true;
+        int nextId = 1;
+        for (int round = 0; round < 2000; round++) {
+            int op = rand.nextInt(10);
+            GraphNode a = alive.get(rand.nextInt(alive.size()));
+            GraphNode b = alive.get(rand.nextInt(alive.size()));
+            if (op < 5) {
+                fuzzed.addEdge(new GraphEdge(1000 + round), a, b);
+            } else if (op < 7 && fuzz.getOutEdges(a).size() > 0) {
+                fuzzed.removeEdge(fuzz.getOutEdges(a).iterator().next());
+            } else if (op < 8 && alive.size() > 5) {
+                fuzzed.removeVertex(a);
+                alive.remove(a);
+            } else if (op < 9 && nextId < 1000) {
+                GraphNode v = new GraphNode(nextId);
+                nextId += 2;
+                fuzzed.addVertex(v);
+                alive.add(v);
+            }
+            if (round % 3 == 0) {
+                fuzzed.canonicalize();
+                String got = fuzzed.getOrder().toString();
+                DynamicTopologicalOrder fresh = new DynamicTopologicalOrder(fuzz);// overwrites the ranks
+                fresh.canonicalize();
+                matches &= got.equals(fresh.getOrder().toString());
+                fuzzed.compact();
+                for (GraphNode v : fuzzed.getOrder()) {
+                    v.setRank(fuzzed.getRank(v));
+                }
+                matches &= fuzzed.isValid();
+            }
+        }
+        if (matches) {
+            System.out.println("Yay 8");
+        }
+
+        // a change near the end of a big order only re-sorts the end
+        dynamic.canonicalize();
+        GraphNode last = dynamic.getOrder().get(dynamic.getOrder().size() - 1);
+        dynamic.removeVertex(last);
+        dynamic.addVertex(new GraphNode(n));
+        begin = System.nanoTime();
+        dynamic.canonicalize();
+        long partialMicros = (System.nanoTime() - begin) / 1000;
+        DynamicTopologicalOrder resorted = new DynamicTopologicalOrder(big);
+        begin = System.nanoTime();
+        resorted.canonicalize();
+        long fullMicros = (System.nanoTime() - begin) / 1000;
+        if (dynamic.getOrder().toString().equals(resorted.getOrder().toString()) && partialMicros * 10 < fullMicros) {
+            System.out.println("Yay 9 (" + partialMicros + " us after a change at the end, " + fullMicros
+                    + " us from scratch)");
+        }
+    }
+}
@@ -0,0 +1,288 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads a directed graph from an edge-list file: one edge per line, the
+ * source id and then the destination id, separated by spaces, tabs or
+ * commas. Anything after the second number on a line (a weight, say) is
+ * ignored, and lines starting with '#' or '%' are comments.
+ * Vertex ids are the non-negative ints in the file, so the graph has
+ * (largest id + 1) vertices.
+ * <p>
+ * The file is memory-mapped in windows and parsed byte by byte, with no
+ * String per line or per number. It is read twice: the first pass counts
+ * the out-degree of every vertex, and the second drops each target into
+ * its slot of the CSR arrays, so the result is built in place without an
+ * intermediate edge list. Self-loops and repeated edges are dropped, like
+ * ThreeTenGraph does.
+ * @author Phat Tran
+ */
+final class EdgeListImporter {
+
+    /**
+     * bytes mapped at a time (a single mapping cannot exceed 2 GB).
+     */
+    private static final long WINDOW = 1L << 28;
+
+    /**
+     * bytes copied out of the mapping at a time.
+     */
+    private static final int BLOCK = 1 << 16;
+
+    /**
+     * Receives the edges of one pass.
+     */
+    private abstract static class Pass {
+        /**
+         * Called for every edge in the file, in order.
+         * @param source source id
+         * @param dest destination id
+         */
+        abstract void edge(int source, int dest);
+    }
+
+    /**
+     * not instantiable.
+     */
+    private EdgeListImporter() {
+    }
+
+    /**
+     * Reads an edge-list file into an immutable CSR graph.
+     * @param file the file
+     * @return the graph
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static IntDigraph read(Path file) throws IOException {
+        // O(V + E lg d), two sequential passes over the file
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // pass 1: out-degree of every vertex (offsets[v + 1]) and the largest id
+            final int[][] degree = {new int[1024]};
+            final int[] maxId = {-1};
+            final long[] edges = {0};
+            parse(channel, new Pass() {
+                void edge(int source, int dest) {
+                    int top = Math.max(source, dest);
+                    if (top > maxId[0]) {
+                        maxId[0] = top;
+                        if (top + 1 >= degree[0].length) {
+                            degree[0] = Arrays.copyOf(degree[0],
+                                    (int) Math.min(Math.max(top + 2L, 2L * degree[0].length), Integer.MAX_VALUE));
+                        }
+                    }
+                    degree[0][source + 1]++;
+                    edges[0]++;
+                }
+            });
+            if (edges[0] > Integer.MAX_VALUE - 8) {
+                throw new IOException("too many edges: " + edges[0]);
+            }
+
+            int vertexCount = maxId[0] + 1;
+            final int[] offsets = Arrays.copyOf(degree[0], vertexCount + 1);
+            degree[0] = null;
+            for (int v = 0; v < vertexCount; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+
+            // pass 2: drop every target into the next free slot of its source's row
+            final int[] fill = Arrays.copyOf(offsets, vertexCount);
+            final int[] targets = new int[(int) edges[0]];
+            parse(channel, new Pass() {
+                void edge(int source, int dest) {
+                    targets[fill[source]++] = dest;
+                }
+            });
+            for (int v = 0; v < vertexCount; v++) {
+                if (fill[v] != offsets[v + 1]) {
+                    throw new IOException("file changed while it was being read");
+                }
+            }
+
+            int kept = IntDigraph.squeeze(offsets, targets);
+            return new IntDigraph(offsets, (kept == targets.length) ? targets : Arrays.copyOf(targets, kept));
+        }
+    }
+
+    /**
+     * Reads an edge-list file into a SparseThreeTenGraph, with a GraphNode
+     * per vertex id and a GraphEdge per edge (numbered as in IntDigraph).
+     * Ids that never appear in the file still get a vertex.
+     * @param file the file
+     * @return the graph
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static SparseThreeTenGraph readSparse(Path file) throws IOException {
+        // O(V + E lg d)
+        IntDigraph core = read(file);
+        int n = core.vertexCount();
+        int m = core.edgeCount();
+        SparseThreeTenGraph graph = new SparseThreeTenGraph(n, m);
+        GraphNode[] nodes = new GraphNode[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new GraphNode(v);
+            graph.addVertex(nodes[v]);
+        }
+        GraphEdge[] edges = new GraphEdge[m];
+        GraphNode[] sources = new GraphNode[m];
+        GraphNode[] dests = new GraphNode[m];
+        for (int u = 0; u < n; u++) {
+            for (int e = core.outBegin(u); e < core.outEnd(u); e++) {
+                edges[e] = new GraphEdge(e);
+                sources[e] = nodes[u];
+                dests[e] = nodes[core.target(e)];
+            }
+        }
+        graph.addEdges(edges, sources, dests);
+        return graph;
+    }
+
+    /**
+     * Parses the whole file once, handing every edge to pass.
+     * The parser is a small state machine that survives window and block
+     * boundaries, so numbers may straddle them.
+     * @param channel the open file
+     * @param pass what to do with each edge
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    private static void parse(FileChannel channel, Pass pass) throws IOException {
+        byte[] block = new byte[BLOCK];
+        long size = channel.size();
+        long line = 1;
+        int column = 0;// numbers seen on this line (2 once its edge is out)
+        int source = 0;
+        long value = 0;
+        boolean inNumber = false;
+        boolean skipLine = false;// comment, or the rest of a line after its edge
+
+        for (long position = 0; position < size; position += WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW, size - position));
+            while (window.hasRemaining()) {
+                int length = Math.min(BLOCK, window.remaining());
+                window.get(block, 0, length);
+                for (int i = 0; i < length; i++) {
+                    byte b = block[i];
+                    if (b == '\n') {
+                        if (inNumber && column == 1) {
+                            pass.edge(source, (int) value);
+                        } else if (inNumber || column == 1) {
+                            throw new IOException("line " + line + ": missing destination");
+                        }
+                        line++;
+                        column = 0;
+                        value = 0;
+                        inNumber = false;
+                        skipLine = false;
+                    } else if (skipLine) {
+                        continue;
+                    } else if (b >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        if (value > Integer.MAX_VALUE) {
+                            throw new IOException("line " + line + ": id too large");
+                        }
+                        inNumber = true;
+                    } else if (b == ' ' || b == '\t' || b == ',' || b == '\r') {
+                        if (inNumber) {
+                            if (column == 0) {
+                                source = (int) value;
+                                column = 1;
+                            } else {
+                                pass.edge(source, (int) value);
+                                column = 2;
+                                skipLine = true;
+                            }
+                            value = 0;
+                            inNumber = false;
+                        }
+                    } else if ((b == '#' || b == '%') && column == 0 && !inNumber) {
+                        skipLine = true;
+                    } else {
+                        throw new IOException("line " + line + ": unexpected character '" + (char) b + "'");
+                    }
+                }
+            }
+        }
+        // a last line without a newline
+        if (inNumber && column == 1) {
+            pass.edge(source, (int) value);
+        } else if (inNumber || column == 1) {
+            throw new IOException("line " + line + ": missing destination");
+        }
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        // 5-->2 5-->0 4-->0 4-->1 2-->3 3-->1 in assorted formats
+        Path small = Files.createTempFile("edges", ".txt");
+        Files.write(small, ("# a comment\n5 2\n5,0\r\n% another\n4\t0 0.5\n  4   1\n2,3,weight\n"
+                + "5 2\n3 3\n3 1").getBytes(StandardCharsets.US_ASCII));
+        IntDigraph g = read(small);
+        if (g.vertexCount() == 6 && g.edgeCount() == 6 && g.edge(4, 0) >= 0 && g.edge(3, 1) >= 0
+                && Arrays.toString(g.topologicalOrder()).equals("[4, 5, 0, 2, 3, 1]")) {
+            System.out.println("Yay 1");
+        }
+        SparseThreeTenGraph sparse = readSparse(small);
+        if (sparse.getVertexCount() == 6 && sparse.getEdgeCount() == 6 && sparse.outDegree(new GraphNode(5)) == 2) {
+            System.out.println("Yay 2");
+        }
+        Files.write(small, "1 2\n3\n".getBytes(StandardCharsets.US_ASCII));
+        try {
+            read(small);
+        } catch (IOException e) {
+            if (e.getMessage().startsWith("line 2")) {
+                System.out.println("Yay 3");
+            }
+        }
+        Files.delete(small);
+
+        // five million random forward edges
+        int n = 1000000;
+        int m = 5000000;
+        Path big = Files.createTempFile("edges", ".txt");
+        java.util.Random rand = new java.util.Random(0);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(big), 1 << 16)) {
+            byte[] digits = new byte[24];
+            for (int i = 0; i < m; i++) {
+                int a = rand.nextInt(n);
+                int b = rand.nextInt(n);
+                int end = digits.length;
+                digits[--end] = '\n';
+                for (int x = Math.max(a, b); ; x /= 10) {
+                    digits[--end] = (byte) ('0' + x % 10);
+                    if (x < 10) {
+                        break;
+                    }
+                }
+                digits[--end] = ' ';
+                for (int x = Math.min(a, b); ; x /= 10) {
+                    digits[--end] = (byte) ('0' + x % 10);
+                    if (x < 10) {
+                        break;
+                    }
+                }
+                out.write(digits, end, digits.length - end);
+            }
+        }
+        long begin = System.nanoTime();
+        IntDigraph loaded = read(big);
+        long millis = (System.nanoTime() - begin) / 1000000;
+        long bytes = Files.size(big);
+        Files.delete(big);
+        if (loaded.edgeCount() > m - 1000 && loaded.topologicalOrder().length == loaded.vertexCount()) {
+            System.out.println("Yay 4 (" + (bytes >> 20) + " MB in " + millis + " ms)");
+        }
+    }
+}
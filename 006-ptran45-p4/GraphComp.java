@@ -39,6 +39,32 @@ class GraphComp implements Comparable<GraphComp> {
 	 */
 	public void setColor(Color color) { this.color = color; }
 	
+	/**
+	 *  The weight of the component: how long a node takes, or how long
+	 *  an edge makes its destination wait after its source is done.
+	 */
+	protected int weight;
+	
+	/**
+	 *  Fetches the weight of the component.
+	 *  
+	 *  @return the weight of the component
+	 */
+	public int getWeight() { return weight; }
+	
+	/**
+	 *  Sets the weight of the component.
+	 *  
+	 *  @param weight the weight of the component
+	 *  @throws IllegalArgumentException if weight is negative
+	 */
+	public void setWeight(int weight) {
+		if(weight < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.weight = weight;
+	}
+	
 	/**
 	 *  {@inheritDoc}
 	 */
@@ -17,7 +17,7 @@ class GraphEdge extends GraphComp {
 	public static int edgeCount = 0;
 	
 	/**
-	 *  Constructs an edge with a given id.
+	 *  Constructs an edge with a given id and a weight of 0.
 	 *  
 	 *  @param id the unique id of the edge
 	 */
@@ -0,0 +1,502 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A compact binary file format for graphs, loaded by mapping the file
+ * read-only instead of parsing it.
+ * <p>
+ * Layout, all little-endian 32-bit ints:
+ * <pre>
+ * header      magic "TTGF", format version, flags, vertexCount V,
+ *             edgeCount E, three reserved zeros (32 bytes)
+ * outOffsets  V + 1 ints, the rows of the outgoing CSR
+ * outTargets  E ints, destination of each edge
+ * inOffsets   V + 1 ints, the rows of the incoming CSR
+ * inSources   E ints, source of each incoming slot
+ * vertexIds   V ints, the GraphNode id of each vertex (if flag 1 is set)
+ * edgeIds     E ints, the GraphEdge id of each edge (if flag 2 is set)
+ * </pre>
+ * This is exactly the layout of IntDigraph, so load() hands out an
+ * IntDigraph whose accessors read the mapped file directly: nothing is
+ * copied onto the heap and the pages are shared with the OS cache (and
+ * with every other process that maps the same file). The incoming CSR is
+ * stored too, because deriving it at load time would mean building heap
+ * arrays after all. The id sections are written only when the ids are
+ * not simply 0 to V-1 and 0 to E-1.
+ * @author Phat Tran
+ */
+final class GraphFile {
+
+    /**
+     * "TTGF".
+     */
+    static final int MAGIC = 0x46475454;
+
+    /**
+     * format version written by this class.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * flag: the file has a vertexIds section.
+     */
+    static final int HAS_VERTEX_IDS = 1;
+
+    /**
+     * flag: the file has an edgeIds section.
+     */
+    static final int HAS_EDGE_IDS = 2;
+
+    /**
+     * size of the header in bytes.
+     */
+    private static final int HEADER_BYTES = 32;
+
+    /**
+     * bytes written at a time.
+     */
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    /**
+     * One int section of the file, read from wherever it lives.
+     */
+    private abstract static class Section {
+        /**
+         * Returns the i-th int of the section.
+         * @param i index
+         * @return the value
+         */
+        abstract int get(int i);
+    }
+
+    /**
+     * An IntDigraph that reads its CSR arrays straight out of a mapped file.
+     */
+    private static final class MappedIntDigraph extends IntDigraph {
+        /**
+         * number of edges.
+         */
+        private final int edgeCount;
+
+        /**
+         * the mapped sections.
+         */
+        private final IntBuffer outOffsets;
+
+        /**
+         * destination of each edge.
+         */
+        private final IntBuffer outTargets;
+
+        /**
+         * the rows of the incoming CSR.
+         */
+        private final IntBuffer inOffsets;
+
+        /**
+         * source of each incoming slot.
+         */
+        private final IntBuffer inSources;
+
+        /**
+         * constructor.
+         * @param vertexCount number of vertices
+         * @param edgeCount number of edges
+         * @param outOffsets mapped outOffsets section
+         * @param outTargets mapped outTargets section
+         * @param inOffsets mapped inOffsets section
+         * @param inSources mapped inSources section
+         */
+        MappedIntDigraph(int vertexCount, int edgeCount, IntBuffer outOffsets, IntBuffer outTargets,
+                         IntBuffer inOffsets, IntBuffer inSources) {
+            super(vertexCount);
+            this.edgeCount = edgeCount;
+            this.outOffsets = outOffsets;
+            this.outTargets = outTargets;
+            this.inOffsets = inOffsets;
+            this.inSources = inSources;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int edgeCount() {
+            return edgeCount;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int outBegin(int v) {
+            return outOffsets.get(v);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int outEnd(int v) {
+            return outOffsets.get(v + 1);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int target(int edge) {
+            return outTargets.get(edge);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int inBegin(int v) {
+            return inOffsets.get(v);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int inEnd(int v) {
+            return inOffsets.get(v + 1);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int source(int slot) {
+            return inSources.get(slot);
+        }
+    }
+
+    /**
+     * not instantiable.
+     */
+    private GraphFile() {
+    }
+
+    /**
+     * Saves a primitive graph (vertex i is id i, edge e is id e).
+     * @param core the graph
+     * @param file the file to write (replaced if it exists)
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(IntDigraph core, Path file) throws IOException {
+        write(core, null, null, file);
+    }
+
+    /**
+     * Saves any graph, keeping the ids of its nodes and edges. The graph is
+     * frozen first (see IntDigraphAdapter.freeze()), so vertices are stored
+     * in ascending id order; a graph that is already an IntDigraphAdapter
+     * is saved as it is.
+     * @param graph the graph (without parallel edges)
+     * @param file the file to write (replaced if it exists)
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Graph<GraphNode, GraphEdge> graph, Path file) throws IOException {
+        // O(V + E + largest id)
+        final IntDigraphAdapter frozen = (graph instanceof IntDigraphAdapter)
+                ? (IntDigraphAdapter) graph : IntDigraphAdapter.freeze(graph);
+        IntDigraph core = frozen.getCore();
+        boolean identityVertices = true;
+        for (int v = 0; v < core.vertexCount() && identityVertices; v++) {
+            identityVertices = frozen.node(v).getId() == v;
+        }
+        boolean identityEdges = true;
+        for (int e = 0; e < core.edgeCount() && identityEdges; e++) {
+            identityEdges = frozen.edge(e).getId() == e;
+        }
+        write(core, identityVertices ? null : new Section() {
+            int get(int v) {
+                return frozen.node(v).getId();
+            }
+        }, identityEdges ? null : new Section() {
+            int get(int e) {
+                return frozen.edge(e).getId();
+            }
+        }, file);
+    }
+
+    /**
+     * Writes the header and every section.
+     * @param core the graph
+     * @param vertexIds the vertexIds section, or null to leave it out
+     * @param edgeIds the edgeIds section, or null to leave it out
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    private static void write(final IntDigraph core, Section vertexIds, Section edgeIds, Path file)
+            throws IOException {
+        // O(V + E)
+        final int n = core.vertexCount();
+        final int m = core.edgeCount();
+        int flags = ((vertexIds == null) ? 0 : HAS_VERTEX_IDS) | ((edgeIds == null) ? 0 : HAS_EDGE_IDS);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(n).putInt(m);
+            buffer.putInt(0).putInt(0).putInt(0);
+            put(channel, buffer, n + 1, new Section() {
+                int get(int v) {
+                    return (v == n) ? m : core.outBegin(v);
+                }
+            });
+            put(channel, buffer, m, new Section() {
+                int get(int e) {
+                    return core.target(e);
+                }
+            });
+            put(channel, buffer, n + 1, new Section() {
+                int get(int v) {
+                    return (v == n) ? m : core.inBegin(v);
+                }
+            });
+            put(channel, buffer, m, new Section() {
+                int get(int slot) {
+                    return core.source(slot);
+                }
+            });
+            if (vertexIds != null) {
+                put(channel, buffer, n, vertexIds);
+            }
+            if (edgeIds != null) {
+                put(channel, buffer, m, edgeIds);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Appends one section, writing the buffer out whenever it fills up.
+     * @param channel the file
+     * @param buffer the write buffer
+     * @param count number of ints in the section
+     * @param section the section
+     * @throws IOException if the file cannot be written
+     */
+    private static void put(FileChannel channel, ByteBuffer buffer, int count, Section section)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            buffer.putInt(section.get(i));
+        }
+    }
+
+    /**
+     * Maps a graph file read-only as a primitive graph. The mapping stays
+     * valid after this returns and is released when the graph is garbage.
+     * The file must not be changed while the graph is in use.
+     * @param file the file
+     * @return the graph, backed by the file
+     * @throws IOException if the file cannot be read or is not a graph file
+     */
+    public static IntDigraph load(Path file) throws IOException {
+        // O(1), pages are read on first use
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int[] header = readHeader(channel);
+            int n = header[3];
+            int m = header[4];
+            long at = HEADER_BYTES;
+            IntBuffer outOffsets = map(channel, at, n + 1);
+            at += 4L * (n + 1);
+            IntBuffer outTargets = map(channel, at, m);
+            at += 4L * m;
+            IntBuffer inOffsets = map(channel, at, n + 1);
+            at += 4L * (n + 1);
+            IntBuffer inSources = map(channel, at, m);
+            return new MappedIntDigraph(n, m, outOffsets, outTargets, inOffsets, inSources);
+        }
+    }
+
+    /**
+     * Maps a graph file read-only and shows it as a Graph. If the file has
+     * id sections, the nodes and edges get their saved ids (those objects,
+     * one per vertex and per edge, are on the heap; the structure is not).
+     * @param file the file
+     * @return the graph, backed by the file
+     * @throws IOException if the file cannot be read or is not a graph file
+     */
+    public static IntDigraphAdapter loadGraph(Path file) throws IOException {
+        // O(1), or O(V + E) when the file has id sections
+        IntDigraph core = load(file);
+        int n = core.vertexCount();
+        int m = core.edgeCount();
+        int flags;
+        IntBuffer vertexIds = null;
+        IntBuffer edgeIds = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            flags = readHeader(channel)[2];
+            long at = HEADER_BYTES + 8L * (n + 1) + 8L * m;
+            if ((flags & HAS_VERTEX_IDS) != 0) {
+                vertexIds = map(channel, at, n);
+                at += 4L * n;
+            }
+            if ((flags & HAS_EDGE_IDS) != 0) {
+                edgeIds = map(channel, at, m);
+            }
+        }
+        if (vertexIds == null && edgeIds == null) {
+            return new IntDigraphAdapter(core);
+        }
+        GraphNode[] nodes = new GraphNode[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = new GraphNode((vertexIds == null) ? v : vertexIds.get(v));
+        }
+        GraphEdge[] edges = new GraphEdge[m];
+        for (int e = 0; e < m; e++) {
+            edges[e] = new GraphEdge((edgeIds == null) ? e : edgeIds.get(e));
+        }
+        return IntDigraphAdapter.wrap(core, nodes, edges);
+    }
+
+    /**
+     * Reads and checks the header.
+     * @param channel the open file
+     * @return the eight header ints
+     * @throws IOException if the file is not a graph file this class can read
+     */
+    private static int[] readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new IOException("not a graph file: too short");
+            }
+        }
+        buffer.flip();
+        int[] header = new int[HEADER_BYTES / 4];
+        buffer.asIntBuffer().get(header);
+        if (header[0] != MAGIC) {
+            throw new IOException("not a graph file");
+        }
+        if (header[1] != VERSION) {
+            throw new IOException("unsupported graph file version " + header[1]);
+        }
+        int n = header[3];
+        int m = header[4];
+        int flags = header[2];
+        long expected = HEADER_BYTES + 8L * (n + 1) + 8L * m
+                + (((flags & HAS_VERTEX_IDS) != 0) ? 4L * n : 0)
+                + (((flags & HAS_EDGE_IDS) != 0) ? 4L * m : 0);
+        if (n < 0 || m < 0 || channel.size() != expected) {
+            throw new IOException("corrupt graph file: expected " + expected + " bytes");
+        }
+        return header;
+    }
+
+    /**
+     * Maps one section read-only.
+     * @param channel the open file
+     * @param at byte offset of the section
+     * @param count number of ints
+     * @return the section
+     * @throws IOException if the section cannot be mapped
+     */
+    private static IntBuffer map(FileChannel channel, long at, int count) throws IOException {
+        if (4L * count > Integer.MAX_VALUE) {
+            throw new IOException("section too large to map: " + count + " ints");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, at, 4L * count)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        // 5-->2 5-->0 4-->0 4-->1 2-->3 3-->1
+        Path file = Files.createTempFile("graph", ".ttg");
+        IntDigraph g = new IntDigraph(6, new int[] {5, 5, 4, 4, 2, 3}, new int[] {2, 0, 0, 1, 3, 1});
+        save(g, file);
+        IntDigraph mapped = load(file);
+        if (mapped.vertexCount() == 6 && mapped.edgeCount() == 6 && mapped.inDegree(1) == 2
+                && mapped.edge(2, 3) == g.edge(2, 3) && mapped.edgeSource(mapped.edge(3, 1)) == 3
+                && Arrays.toString(mapped.topologicalOrder()).equals("[4, 5, 0, 2, 3, 1]")
+                && Files.size(file) == HEADER_BYTES + 4 * (2 * 7 + 2 * 6)) {
+            System.out.println("Yay 1");
+        }
+
+        // a ThreeTenGraph with gaps in its ids keeps them
+        ThreeTenGraph graph = new ThreeTenGraph();
+        GraphNode[] nodes = new GraphNode[6];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(10 + 3 * i);
+            graph.addVertex(nodes[i]);
+        }
+        int[][] pairs = {{5, 2}, {5, 0}, {4, 0}, {4, 1}, {2, 3}, {3, 1}};
+        for (int i = 0; i < pairs.length; i++) {
+            graph.addEdge(new GraphEdge(100 - i), nodes[pairs[i][0]], nodes[pairs[i][1]]);
+        }
+        save(graph, file);
+        IntDigraphAdapter loaded = loadGraph(file);
+        GraphNode a = new GraphNode(22);
+        GraphNode b = new GraphNode(10);
+        if (loaded.getVertexCount() == 6 && loaded.getEdgeCount() == 6 && loaded.containsVertex(a)
+                && !loaded.containsVertex(new GraphNode(11)) && loaded.findEdge(a, b).getId() == 98
+                && loaded.getSource(new GraphEdge(100)).getId() == 25) {
+            System.out.println("Yay 2");
+        }
+        TopologicalSort topSort = new TopologicalSort();
+        topSort.reset(loaded);
+        while (topSort.step()) {
+        }
+        if (loaded.node(4).getRank() == 0 && loaded.node(1).getRank() == 5) {
+            System.out.println("Yay 3");
+        }
+
+        ByteBuffer junk = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        junk.putInt(MAGIC).putInt(VERSION + 1);
+        Files.write(file, junk.array());
+        try {
+            load(file);
+        } catch (IOException e) {
+            if (e.getMessage().contains("version")) {
+                System.out.println("Yay 4");
+            }
+        }
+
+        // a million-edge graph: save once, then every load is just a mapping
+        int n = 250000;
+        int m = 1000000;
+        java.util.Random rand = new java.util.Random(0);
+        int[] from = new int[m];
+        int[] to = new int[m];
+        for (int i = 0; i < m; i++) {
+            int x = rand.nextInt(n);
+            int y = rand.nextInt(n);
+            from[i] = Math.min(x, y);
+            to[i] = Math.max(x, y);
+        }
+        IntDigraph big = new IntDigraph(n, from, to);
+        long begin = System.nanoTime();
+        save(big, file);
+        long saveMillis = (System.nanoTime() - begin) / 1000000;
+        begin = System.nanoTime();
+        IntDigraph bigMapped = load(file);
+        long loadMicros = (System.nanoTime() - begin) / 1000;
+        int[] order = bigMapped.topologicalOrder();
+        if (bigMapped.edgeCount() == big.edgeCount() && order.length == n
+                && Arrays.equals(order, big.topologicalOrder())) {
+            System.out.println("Yay 5 (save " + saveMillis + " ms, load " + loadMicros + " us)");
+        }
+        Files.delete(file);
+    }
+}
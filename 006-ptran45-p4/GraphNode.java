@@ -34,7 +34,7 @@ class GraphNode extends GraphComp {
 	private int rank;	
 	
 	/**
-	 *  Constructs a node with a given id.
+	 *  Constructs a node with a given id and a weight of 1.
 	 *  
 	 *  @param id the unique id of the node
 	 */
@@ -43,6 +43,7 @@ class GraphNode extends GraphComp {
 		this.active = false;
 		this.cost = 0;
 		this.rank = -1;
+		this.weight = 1;
 	}
 	
 	/**
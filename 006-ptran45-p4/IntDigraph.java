@@ -0,0 +1,438 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * A primitive directed graph: vertices are the ints 0 to n-1, and the
+ * adjacency is stored in compressed sparse row (CSR) form, once by source
+ * (offsets + targets) and once by destination (offsets + sources).
+ * That is 8 bytes per edge and 8 bytes per vertex, with no object per
+ * node or edge. Use IntDigraphAdapter to see it as a Graph of
+ * GraphNode/GraphEdge.
+ * Edge ids are the positions in the targets array, i.e. edges are
+ * numbered by source and then by target. Each vertex's targets and
+ * sources are sorted, so neighbors come out in id order.
+ * An IntDigraph is immutable. Subclasses may keep the arrays somewhere
+ * else (see GraphFile) by overriding the accessors; every query goes
+ * through them.
+ * @author Phat Tran
+ */
+class IntDigraph {
+    /**
+     * number of vertices.
+     */
+    private final int vertexCount;
+
+    /**
+     * outOffsets[v] to outOffsets[v+1] is the range of v's outgoing edges.
+     */
+    private final int[] outOffsets;
+
+    /**
+     * destination of each edge, grouped by source.
+     */
+    private final int[] outTargets;
+
+    /**
+     * inOffsets[v] to inOffsets[v+1] is the range of v's incoming edges.
+     */
+    private final int[] inOffsets;
+
+    /**
+     * source of each incoming edge, grouped by destination.
+     */
+    private final int[] inSources;
+
+    /**
+     * Builds the graph from an edge list. Self-loops and repeated
+     * (source, destination) pairs are dropped, like ThreeTenGraph does.
+     * @param vertexCount number of vertices
+     * @param sources source of each edge
+     * @param targets destination of each edge
+     * @throws IllegalArgumentException if the arrays have different lengths
+     *                                  or hold a vertex outside 0 to vertexCount-1
+     */
+    public IntDigraph(int vertexCount, int[] sources, int[] targets) {
+        // O(V + E lg d)
+        if (vertexCount < 0 || sources.length != targets.length) {
+            throw new IllegalArgumentException();
+        }
+        int[] offsets = new int[vertexCount + 1];
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] < 0 || sources[i] >= vertexCount || targets[i] < 0 || targets[i] >= vertexCount) {
+                throw new IllegalArgumentException();
+            }
+            offsets[sources[i] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, vertexCount);
+        int[] adj = new int[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            adj[fill[sources[i]]++] = targets[i];
+        }
+
+        int kept = squeeze(offsets, adj);
+
+        this.vertexCount = vertexCount;
+        this.outOffsets = offsets;
+        this.outTargets = (kept == adj.length) ? adj : Arrays.copyOf(adj, kept);
+        this.inOffsets = new int[vertexCount + 1];
+        this.inSources = new int[kept];
+        buildIncoming();
+    }
+
+    /**
+     * Wraps an outgoing CSR that is already built (rows sorted, with no
+     * self-loops or duplicates) and derives the incoming one.
+     * The arrays are taken over, not copied.
+     * @param outOffsets vertexCount + 1 row offsets
+     * @param outTargets destination of each edge, grouped by source
+     */
+    IntDigraph(int[] outOffsets, int[] outTargets) {
+        // O(V + E)
+        this.vertexCount = outOffsets.length - 1;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = new int[this.vertexCount + 1];
+        this.inSources = new int[outTargets.length];
+        buildIncoming();
+    }
+
+    /**
+     * For subclasses that keep the CSR arrays themselves and override
+     * edgeCount(), outBegin(), outEnd(), target(), inBegin(), inEnd() and
+     * source().
+     * @param vertexCount number of vertices
+     */
+    IntDigraph(int vertexCount) {
+        this.vertexCount = vertexCount;
+        this.outOffsets = null;
+        this.outTargets = null;
+        this.inOffsets = null;
+        this.inSources = null;
+    }
+
+    /**
+     * Sorts every row of an outgoing CSR that is filled but not yet sorted,
+     * and squeezes out self-loops and repeated targets, fixing the offsets.
+     * @param offsets vertexCount + 1 row offsets, updated in place
+     * @param adj the targets, grouped by source; compacted in place
+     * @return the number of edges kept (the used prefix of adj)
+     */
+    static int squeeze(int[] offsets, int[] adj) {
+        // O(E lg d)
+        int vertexCount = offsets.length - 1;
+        int kept = 0;
+        int start = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            int end = offsets[v + 1];
+            Arrays.sort(adj, start, end);
+            offsets[v] = kept;
+            for (int i = start; i < end; i++) {
+                if (adj[i] != v && (kept == offsets[v] || adj[kept - 1] != adj[i])) {
+                    adj[kept++] = adj[i];
+                }
+            }
+            start = end;
+        }
+        offsets[vertexCount] = kept;
+        return kept;
+    }
+
+    /**
+     * Fills inOffsets and inSources from the outgoing CSR with a counting
+     * sort, so every vertex's sources come out in ascending order.
+     */
+    private void buildIncoming() {
+        for (int e = 0; e < outTargets.length; e++) {
+            inOffsets[outTargets[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] fill = Arrays.copyOf(inOffsets, vertexCount);
+        for (int u = 0; u < vertexCount; u++) {
+            for (int e = outOffsets[u]; e < outOffsets[u + 1]; e++) {
+                inSources[fill[outTargets[e]]++] = u;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of vertices.
+     * @return the number of vertices
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Returns the number of edges.
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    /**
+     * Returns the first edge id (outgoing slot) of v.
+     * @param v vertex
+     * @return the first slot of v's outgoing edges
+     */
+    public int outBegin(int v) {
+        return outOffsets[v];
+    }
+
+    /**
+     * Returns one past the last edge id (outgoing slot) of v.
+     * @param v vertex
+     * @return one past the last slot of v's outgoing edges
+     */
+    public int outEnd(int v) {
+        return outOffsets[v + 1];
+    }
+
+    /**
+     * Returns the destination of an edge.
+     * @param edge edge id (outgoing slot)
+     * @return the destination vertex
+     */
+    public int target(int edge) {
+        return outTargets[edge];
+    }
+
+    /**
+     * Returns the first incoming slot of v.
+     * @param v vertex
+     * @return the first slot of v's incoming edges
+     */
+    public int inBegin(int v) {
+        return inOffsets[v];
+    }
+
+    /**
+     * Returns one past the last incoming slot of v.
+     * @param v vertex
+     * @return one past the last slot of v's incoming edges
+     */
+    public int inEnd(int v) {
+        return inOffsets[v + 1];
+    }
+
+    /**
+     * Returns the source of an incoming slot.
+     * @param slot incoming slot
+     * @return the source vertex
+     */
+    public int source(int slot) {
+        return inSources[slot];
+    }
+
+    /**
+     * Returns the number of outgoing edges of v.
+     * @param v vertex
+     * @return the out-degree of v
+     */
+    public int outDegree(int v) {
+        return outEnd(v) - outBegin(v);
+    }
+
+    /**
+     * Returns the number of incoming edges of v.
+     * @param v vertex
+     * @return the in-degree of v
+     */
+    public int inDegree(int v) {
+        return inEnd(v) - inBegin(v);
+    }
+
+    /**
+     * Finds the edge from u to v.
+     * @param u source vertex
+     * @param v destination vertex
+     * @return the edge id, or -1 if u is not connected to v
+     */
+    public int edge(int u, int v) {
+        // O(lg d) where d is the out-degree of u
+        int low = outBegin(u);
+        int high = outEnd(u) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int t = target(mid);
+            if (t < v) {
+                low = mid + 1;
+            } else if (t > v) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the source of an edge.
+     * @param edge edge id
+     * @return the source vertex
+     */
+    public int edgeSource(int edge) {
+        // O(lg V), the last vertex whose range starts at or before edge
+        int low = 0;
+        int high = vertexCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (outBegin(mid) <= edge) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Computes a topological order with Kahn's algorithm over plain int
+     * arrays (a FIFO queue, so the order is not necessarily the lowest-id
+     * one the stepwise TopologicalSort produces).
+     * @return the vertices in topological order; shorter than vertexCount()
+     *         if the graph has a cycle
+     */
+    public int[] topologicalOrder() {
+        // O(V + E)
+        int[] remaining = new int[vertexCount];
+        int[] order = new int[vertexCount];
+        int tail = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            remaining[v] = inDegree(v);
+            if (remaining[v] == 0) {
+                order[tail++] = v;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int u = order[head];
+            for (int e = outBegin(u), end = outEnd(u); e < end; e++) {
+                if (--remaining[target(e)] == 0) {
+                    order[tail++] = target(e);
+                }
+            }
+        }
+        return (tail == vertexCount) ? order : Arrays.copyOf(order, tail);
+    }
+
+    /**
+     * Hands the vertices to visit in depth first order: rounds start from
+     * the lowest unvisited vertex and successors are taken in id order,
+     * the same traversal as ThreeTenGraph.depthFirstTraversal(). Iterative,
+     * so long chains do not overflow the stack.
+     * @param visit receives each vertex once
+     */
+    public void depthFirstTraversal(IntConsumer visit) {
+        // O(V + E)
+        BitSet visited = new BitSet(vertexCount);
+        int[] path = new int[vertexCount];// vertices on the current path
+        int[] next = new int[vertexCount];// next outgoing edge of each one
+
+        for (int root = 0; root < vertexCount; root++) {
+            if (visited.get(root)) {
+                continue;
+            }
+            visited.set(root);
+            visit.accept(root);
+            int depth = 0;
+            path[0] = root;
+            next[0] = outBegin(root);
+            while (depth >= 0) {
+                int u = path[depth];
+                int e = next[depth];
+                int end = outEnd(u);
+                while (e < end && visited.get(target(e))) {
+                    e++;
+                }
+                if (e == end) {
+                    depth--;
+                    continue;
+                }
+                next[depth] = e + 1;
+                int v = target(e);
+                visited.set(v);
+                visit.accept(v);
+                depth++;
+                path[depth] = v;
+                next[depth] = outBegin(v);
+            }
+        }
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        // 5-->2 5-->0 4-->0 4-->1 2-->3 3-->1, plus a duplicate and a self-loop
+        int[] from = {5, 5, 4, 4, 2, 3, 5, 1};
+        int[] to = {2, 0, 0, 1, 3, 1, 2, 1};
+        IntDigraph g = new IntDigraph(6, from, to);
+        if (g.edgeCount() == 6 && g.outDegree(5) == 2 && g.inDegree(1) == 2 && g.inDegree(4) == 0) {
+            System.out.println("Yay 1");
+        }
+        int e = g.edge(2, 3);
+        if (e >= 0 && g.edgeSource(e) == 2 && g.target(e) == 3 && g.edge(3, 2) == -1) {
+            System.out.println("Yay 2");
+        }
+        if (Arrays.toString(g.topologicalOrder()).equals("[4, 5, 0, 2, 3, 1]")) {
+            System.out.println("Yay 3");
+        }
+        IntDigraph cycle = new IntDigraph(3, new int[] {0, 1, 2}, new int[] {1, 2, 0});
+        if (cycle.topologicalOrder().length == 0) {
+            System.out.println("Yay 4");
+        }
+
+        // a million-edge random graph
+        int n = 250000;
+        int m = 1000000;
+        java.util.Random rand = new java.util.Random(0);
+        int[] bigFrom = new int[m];
+        int[] bigTo = new int[m];
+        for (int i = 0; i < m; i++) {
+            int a = rand.nextInt(n);
+            int b = rand.nextInt(n);
+            bigFrom[i] = Math.min(a, b);
+            bigTo[i] = Math.max(a, b);
+        }
+        long begin = System.nanoTime();
+        IntDigraph big = new IntDigraph(n, bigFrom, bigTo);
+        int[] order = big.topologicalOrder();
+        long millis = (System.nanoTime() - begin) / 1000000;
+        if (order.length == n) {
+            System.out.println("Yay 5 (" + millis + " ms)");
+        }
+
+        // depth first traversal, matching the adapter's, and a million-vertex chain
+        final StringBuilder visited = new StringBuilder();
+        big.depthFirstTraversal(new IntConsumer() {
+            public void accept(int v) {
+                visited.append(v).append(' ');
+            }
+        });
+        int deep = 1000000;
+        int[] chainFrom = new int[deep - 1];
+        int[] chainTo = new int[deep - 1];
+        for (int i = 0; i < deep - 1; i++) {
+            chainFrom[i] = i;
+            chainTo[i] = i + 1;
+        }
+        final int[] expected = {0};
+        final boolean[] inOrder = {true};
+        new IntDigraph(deep, chainFrom, chainTo).depthFirstTraversal(new IntConsumer() {
+            public void accept(int v) {
+                inOrder[0] &= (v == expected[0]++);
+            }
+        });
+        if (visited.toString().trim().equals(new IntDigraphAdapter(big).toString()) && inOrder[0]
+                && expected[0] == deep) {
+            System.out.println("Yay 6");
+        }
+    }
+}
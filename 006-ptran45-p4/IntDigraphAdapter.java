@@ -0,0 +1,708 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Shows an IntDigraph as a read-only Graph of GraphNode/GraphEdge, so the
+ * simulator and TopologicalSort can run on it.
+ * An adapter made with the public constructor uses the GraphNode with id i
+ * for vertex i and the GraphEdge with id e for edge e. Those objects are only
+ * created when they are first asked for, and then kept so that their state
+ * (color, cost, rank) sticks. Creating them is not synchronized, so share
+ * such an adapter between threads only after every node and edge has been
+ * created.
+ * An adapter made by freeze() wraps the nodes and edges of an existing
+ * graph instead (see there); it never writes to its own fields after
+ * construction, so it can be read from any number of threads without locking.
+ * The mutators throw UnsupportedOperationException.
+ * @author Phat Tran
+ */
+class IntDigraphAdapter extends ThreeTenAbstractGraph {
+    /**
+     * the primitive graph.
+     */
+    private final IntDigraph core;
+
+    /**
+     * node objects, indexed by vertex (filled on first use unless frozen).
+     */
+    private final GraphNode[] nodes;
+
+    /**
+     * edge objects, indexed by edge id (filled on first use unless frozen).
+     */
+    private final GraphEdge[] edges;
+
+    /**
+     * vertex of each node id, -1 for ids not in the graph, or null when
+     * the node ids are the vertices themselves.
+     */
+    private final int[] vertexById;
+
+    /**
+     * edge id (slot) of each GraphEdge id, -1 for ids not in the graph, or
+     * null when the GraphEdge ids are the slots themselves.
+     */
+    private final int[] edgeById;
+
+    /**
+     * constructor.
+     * @param core the primitive graph to show
+     */
+    public IntDigraphAdapter(IntDigraph core) {
+        this(core, new GraphNode[core.vertexCount()], new GraphEdge[core.edgeCount()], null, null);
+    }
+
+    /**
+     * constructor for a snapshot of existing nodes and edges.
+     * @param core the primitive graph to show
+     * @param nodes node object of each vertex
+     * @param edges edge object of each edge id
+     * @param vertexById vertex of each node id (null if identity)
+     * @param edgeById edge id of each GraphEdge id (null if identity)
+     */
+    private IntDigraphAdapter(IntDigraph core, GraphNode[] nodes, GraphEdge[] edges,
+            int[] vertexById, int[] edgeById) {
+        this.core = core;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.vertexById = vertexById;
+        this.edgeById = edgeById;
+    }
+
+    /**
+     * Compacts a graph into an immutable CSR snapshot.
+     * The vertices are renumbered densely in ascending id order (so the
+     * lowest-id tie-break of the sorting algorithms is kept) and the edges
+     * by source and then destination. The snapshot shares the GraphNode and
+     * GraphEdge objects of the original graph, so running TopologicalSort on
+     * it sets the ranks and colors seen on the original; only the structure
+     * is frozen, later changes to the original graph do not show up here.
+     * @param graph the graph to freeze (without parallel edges)
+     * @return the snapshot
+     * @throws IllegalArgumentException if graph has two edges between the same pair of vertices
+     */
+    public static IntDigraphAdapter freeze(Graph<GraphNode, GraphEdge> graph) {
+        // O(V + E + largest id): both orders come from counting passes, no comparison sort
+        int maxId = -1;
+        for (GraphNode v : graph.getVertices()) {
+            maxId = Math.max(maxId, v.getId());
+        }
+        GraphNode[] byId = new GraphNode[maxId + 1];
+        for (GraphNode v : graph.getVertices()) {
+            byId[v.getId()] = v;
+        }
+        int n = graph.getVertexCount();
+        GraphNode[] nodes = new GraphNode[n];
+        int count = 0;
+        for (GraphNode v : byId) {
+            if (v != null) {
+                nodes[count++] = v;
+            }
+        }
+
+        // list the edges by source
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + graph.outDegree(nodes[v]);
+        }
+        int m = offsets[n];
+        GraphEdge[] listed = new GraphEdge[m];
+        GraphNode[] heads = new GraphNode[m];
+        int k = 0;
+        for (int v = 0; v < n; v++) {
+            for (GraphEdge e : graph.getOutEdges(nodes[v])) {
+                listed[k] = e;
+                heads[k] = graph.getDest(e);
+                k++;
+            }
+        }
+        return freeze(nodes, offsets, listed, heads);
+    }
+
+    /**
+     * Builds a snapshot from edges that are already listed by source, in
+     * any order within a source.
+     * @param nodes the vertices in ascending id order
+     * @param offsets where the edges of each vertex start in listed (and
+     *                the edge count at the end)
+     * @param listed the edges
+     * @param heads the destination of each edge
+     * @return the snapshot
+     * @throws IllegalArgumentException if two edges join the same pair of vertices
+     */
+    static IntDigraphAdapter freeze(GraphNode[] nodes, int[] offsets, GraphEdge[] listed, GraphNode[] heads) {
+        // O(V + E + largest id)
+        int n = nodes.length;
+        int m = offsets[n];
+        int[] vertexById = idMap(nodes);
+
+        // count how many edges go into each vertex
+        int[] source = new int[m];
+        int[] dest = new int[m];
+        int[] inStart = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int d = heads[k].getId();
+                source[k] = v;
+                dest[k] = (vertexById == null) ? d : vertexById[d];
+                inStart[dest[k] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            inStart[v + 1] += inStart[v];
+        }
+        int[] byDest = new int[m];
+        for (int k = 0; k < m; k++) {
+            byDest[inStart[dest[k]]++] = k;
+        }
+
+        // deal them out by destination, so each source row fills up in destination order
+        int[] targets = new int[m];
+        GraphEdge[] edges = new GraphEdge[m];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < m; i++) {
+            int k = byDest[i];
+            int slot = next[source[k]]++;
+            targets[slot] = dest[k];
+            edges[slot] = listed[k];
+            if (slot > offsets[source[k]] && targets[slot - 1] == dest[k]) {
+                throw new IllegalArgumentException();
+            }
+        }
+        return new IntDigraphAdapter(new IntDigraph(offsets, targets), nodes, edges, vertexById, idMap(edges));
+    }
+
+    /**
+     * Wraps a primitive graph with given node and edge objects, for example
+     * ones that carry the original ids of a graph saved by GraphFile.
+     * @param core the primitive graph to show
+     * @param nodes node object of each vertex (distinct ids)
+     * @param edges edge object of each edge id (distinct ids)
+     * @return the adapter
+     * @throws IllegalArgumentException if the array lengths do not match core
+     */
+    static IntDigraphAdapter wrap(IntDigraph core, GraphNode[] nodes, GraphEdge[] edges) {
+        // O(V + E)
+        if (nodes.length != core.vertexCount() || edges.length != core.edgeCount()) {
+            throw new IllegalArgumentException();
+        }
+        return new IntDigraphAdapter(core, nodes, edges, idMap(nodes), idMap(edges));
+    }
+
+    /**
+     * Builds the lookup from object id to index.
+     * @param items node or edge objects, by index
+     * @return index of each id (-1 for ids not used), or null if every
+     *         item's id is its index
+     */
+    private static int[] idMap(GraphComp[] items) {
+        // O(n + largest id)
+        boolean identity = true;
+        int maxId = -1;
+        for (int i = 0; i < items.length; i++) {
+            identity &= items[i].getId() == i;
+            maxId = Math.max(maxId, items[i].getId());
+        }
+        if (identity) {
+            return null;
+        }
+        int[] byId = new int[maxId + 1];
+        Arrays.fill(byId, -1);
+        for (int i = 0; i < items.length; i++) {
+            byId[items[i].getId()] = i;
+        }
+        return byId;
+    }
+
+    /**
+     * Returns the primitive graph behind this adapter, for the headless algorithms.
+     * @return the primitive graph
+     */
+    public IntDigraph getCore() {
+        return core;
+    }
+
+    /**
+     * Returns the node object for a vertex, creating it if needed.
+     * @param v vertex
+     * @return the node
+     */
+    public GraphNode node(int v) {
+        if (nodes[v] == null) {
+            nodes[v] = new GraphNode(v);
+        }
+        return nodes[v];
+    }
+
+    /**
+     * Returns the edge object for an edge id, creating it if needed.
+     * @param e edge id
+     * @return the edge
+     */
+    public GraphEdge edge(int e) {
+        if (edges[e] == null) {
+            edges[e] = new GraphEdge(e);
+        }
+        return edges[e];
+    }
+
+    /**
+     * Returns the vertex of a node.
+     * @param vertex the node
+     * @return the vertex, or -1 if vertex is not in this graph
+     */
+    public int indexOf(GraphNode vertex) {
+        if (vertex == null) {
+            return -1;
+        }
+        int id = vertex.getId();
+        if (vertexById == null) {
+            return (id < 0 || id >= core.vertexCount()) ? -1 : id;
+        }
+        return (id < 0 || id >= vertexById.length) ? -1 : vertexById[id];
+    }
+
+    /**
+     * Returns the edge id of an edge.
+     * @param edge the edge
+     * @return the edge id, or -1 if edge is not in this graph
+     */
+    public int indexOf(GraphEdge edge) {
+        if (edge == null) {
+            return -1;
+        }
+        int id = edge.getId();
+        if (edgeById == null) {
+            return (id < 0 || id >= core.edgeCount()) ? -1 : id;
+        }
+        return (id < 0 || id >= edgeById.length) ? -1 : edgeById[id];
+    }
+
+    /**
+     * Returns a view of all edges in this graph, in edge id order.
+     * @return a Collection view of all edges in this graph
+     */
+    public Collection<GraphEdge> getEdges() {
+        return new RangeView<GraphEdge>(0, core.edgeCount()) {
+            GraphEdge map(int slot) {
+                return edge(slot);
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof GraphEdge) && containsEdge((GraphEdge) o);
+            }
+        };
+    }
+
+    /**
+     * Returns a view of all vertices in this graph, in vertex order.
+     * @return a Collection view of all vertices in this graph
+     */
+    public Collection<GraphNode> getVertices() {
+        return new RangeView<GraphNode>(0, core.vertexCount()) {
+            GraphNode map(int slot) {
+                return node(slot);
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof GraphNode) && containsVertex((GraphNode) o);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     * @return the number of edges in this graph
+     */
+    public int getEdgeCount() {
+        return core.edgeCount();
+    }
+
+    /**
+     * Returns the number of vertices in this graph.
+     * @return the number of vertices in this graph
+     */
+    public int getVertexCount() {
+        return core.vertexCount();
+    }
+
+    /**
+     * Returns true if this graph's vertex collection contains vertex.
+     * @param vertex the vertex whose presence is being queried
+     * @return true iff this graph contains a vertex vertex
+     */
+    public boolean containsVertex(GraphNode vertex) {
+        return indexOf(vertex) != -1;
+    }
+
+    /**
+     * Returns true if this graph's edge collection contains edge.
+     * @param edge the edge whose presence is being queried
+     * @return true iff this graph contains an edge edge
+     */
+    public boolean containsEdge(GraphEdge edge) {
+        return indexOf(edge) != -1;
+    }
+
+    /**
+     * Returns a Collection view of the incoming edges incident to vertex.
+     * @param vertex the vertex whose incoming edges are to be returned
+     * @return a Collection view of the incoming edges incident
+     *         to vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphEdge> getInEdges(GraphNode vertex) {
+        final int v = indexOf(vertex);
+        if (v == -1) {
+            return null;
+        }
+        return new RangeView<GraphEdge>(core.inBegin(v), core.inEnd(v)) {
+            GraphEdge map(int slot) {
+                return edge(core.edge(core.source(slot), v));
+            }
+        };
+    }
+
+    /**
+     * Returns a Collection view of the outgoing edges incident to vertex.
+     * @param vertex the vertex whose outgoing edges are to be returned
+     * @return a Collection view of the outgoing edges incident
+     *         to vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphEdge> getOutEdges(GraphNode vertex) {
+        int v = indexOf(vertex);
+        if (v == -1) {
+            return null;
+        }
+        return new RangeView<GraphEdge>(core.outBegin(v), core.outEnd(v)) {
+            GraphEdge map(int slot) {
+                return edge(slot);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of incoming edges incident to vertex.
+     * @param vertex the vertex whose indegree is to be calculated
+     * @return the number of incoming edges incident to vertex
+     */
+    public int inDegree(GraphNode vertex) {
+        int v = indexOf(vertex);
+        return (v == -1) ? 0 : core.inDegree(v);
+    }
+
+    /**
+     * Returns the number of outgoing edges incident to vertex.
+     * @param vertex the vertex whose outdegree is to be calculated
+     * @return the number of outgoing edges incident to vertex
+     */
+    public int outDegree(GraphNode vertex) {
+        int v = indexOf(vertex);
+        return (v == -1) ? 0 : core.outDegree(v);
+    }
+
+    /**
+     * Returns a Collection view of the predecessors of vertex, in id order.
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return a Collection view of the predecessors of
+     *         vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphNode> getPredecessors(GraphNode vertex) {
+        int v = indexOf(vertex);
+        if (v == -1) {
+            return null;
+        }
+        return new RangeView<GraphNode>(core.inBegin(v), core.inEnd(v)) {
+            GraphNode map(int slot) {
+                return node(core.source(slot));
+            }
+        };
+    }
+
+    /**
+     * Returns a Collection view of the successors of vertex, in id order.
+     * @param vertex the vertex whose successors are to be returned
+     * @return a Collection view of the successors of
+     *         vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphNode> getSuccessors(GraphNode vertex) {
+        int v = indexOf(vertex);
+        if (v == -1) {
+            return null;
+        }
+        return new RangeView<GraphNode>(core.outBegin(v), core.outEnd(v)) {
+            GraphNode map(int slot) {
+                return node(core.target(slot));
+            }
+        };
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the source.
+     * @param directedEdge edge
+     * @return the source of directedEdge, or null if it is not in this graph
+     */
+    public GraphNode getSource(GraphEdge directedEdge) {
+        // O(lg V)
+        int e = indexOf(directedEdge);
+        return (e == -1) ? null : node(core.edgeSource(e));
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the destination.
+     * @param directedEdge edge
+     * @return the destination of directedEdge, or null if it is not in this graph
+     */
+    public GraphNode getDest(GraphEdge directedEdge) {
+        // O(1)
+        int e = indexOf(directedEdge);
+        return (e == -1) ? null : node(core.target(e));
+    }
+
+    /**
+     * Returns the edge that connects v1 to v2.
+     * @param v1 first vertex
+     * @param v2 second vertex
+     * @return an edge that connects v1 to v2
+     *         or null if no such edge exists (or either vertex is not present).
+     */
+    public GraphEdge findEdge(GraphNode v1, GraphNode v2) {
+        // O(lg d) where d is the out-degree of v1
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        if (from == -1 || to == -1) {
+            return null;
+        }
+        int e = core.edge(from, to);
+        return (e == -1) ? null : edge(e);
+    }
+
+    /**
+     * Not supported, the graph is read-only.
+     * @param vertex the vertex to add
+     * @return never returns
+     * @throws UnsupportedOperationException always
+     */
+    public boolean addVertex(GraphNode vertex) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported, the graph is read-only.
+     * @param e  the edge to be added
+     * @param v1 the first vertex to be connected
+     * @param v2 the second vertex to be connected
+     * @return never returns
+     * @throws UnsupportedOperationException always
+     */
+    public boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported, the graph is read-only.
+     * @param vertex the vertex to remove
+     * @return never returns
+     * @throws UnsupportedOperationException always
+     */
+    public boolean removeVertex(GraphNode vertex) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Not supported, the graph is read-only.
+     * @param edge the edge to remove
+     * @return never returns
+     * @throws UnsupportedOperationException always
+     */
+    public boolean removeEdge(GraphEdge edge) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Read-only view over a range of slots of the primitive graph.
+     * @param <T> what each slot is reported as
+     */
+    private abstract static class RangeView<T> extends AbstractCollection<T> {
+        /**
+         * first slot.
+         */
+        private final int begin;
+
+        /**
+         * one past the last slot.
+         */
+        private final int end;
+
+        /**
+         * constructor.
+         * @param begin first slot
+         * @param end one past the last slot
+         */
+        RangeView(int begin, int end) {
+            this.begin = begin;
+            this.end = end;
+        }
+
+        /**
+         * Converts a slot into the reported element.
+         * @param slot the slot
+         * @return the element
+         */
+        abstract T map(int slot);
+
+        /**
+         * {@inheritDoc}
+         */
+        public int size() {
+            return end - begin;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int slot = begin;
+
+                public boolean hasNext() {
+                    return slot < end;
+                }
+
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return map(slot++);
+                }
+            };
+        }
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        // same graph as ThreeTenGraph.main()
+        int[] from = {0, 1, 3, 6, 8, 9, 2, 1};
+        int[] to = {1, 2, 6, 7, 9, 0, 7, 8};
+        IntDigraphAdapter graph = new IntDigraphAdapter(new IntDigraph(10, from, to));
+        if (graph.getVertexCount() == 10 && graph.getEdgeCount() == 8) {
+            System.out.println("Yay 1");
+        }
+        if (graph.inDegree(new GraphNode(0)) == 1 && graph.outDegree(new GraphNode(1)) == 2) {
+            System.out.println("Yay 2");
+        }
+        if (graph.toString().equals("0 1 2 7 8 9 3 6 4 5")) {
+            System.out.println("Yay 3");
+        }
+        GraphEdge e = graph.findEdge(graph.node(9), graph.node(0));
+        if (graph.getSource(e) == graph.node(9) && graph.getDest(e) == graph.node(0)
+                && graph.getInEdges(graph.node(0)).contains(e)) {
+            System.out.println("Yay 4");
+        }
+
+        // TopologicalSort runs on the adapter: the six edge example
+        IntDigraphAdapter six = new IntDigraphAdapter(
+            new IntDigraph(6, new int[] {5, 5, 4, 4, 2, 3}, new int[] {2, 0, 0, 1, 3, 1}));
+        TopologicalSort topSort = new TopologicalSort();
+        topSort.reset(six);
+        while (topSort.step()) {
+        }
+        if (six.node(4).getRank() == 0 && six.node(5).getRank() == 1 && six.node(0).getRank() == 2
+                && six.node(2).getRank() == 3 && six.node(3).getRank() == 4 && six.node(1).getRank() == 5) {
+            System.out.println("Yay 5");
+        }
+
+        // freezing a ThreeTenGraph with gaps in the ids
+        ThreeTenGraph original = new ThreeTenGraph();
+        GraphNode[] nodes = new GraphNode[6];
+        for (int i = 0; i < 6; i++) {
+            nodes[i] = new GraphNode(10 + 3 * i);
+            original.addVertex(nodes[i]);
+        }
+        int[] edgeFrom = {5, 5, 4, 4, 2, 3};
+        int[] edgeTo = {2, 0, 0, 1, 3, 1};
+        GraphEdge[] edges = new GraphEdge[6];
+        for (int i = 0; i < 6; i++) {
+            edges[i] = new GraphEdge(100 - i);
+            original.addEdge(edges[i], nodes[edgeFrom[i]], nodes[edgeTo[i]]);
+        }
+        final IntDigraphAdapter frozen = original.freeze();
+        original.removeEdge(edges[0]);
+        if (frozen.getEdgeCount() == 6 && frozen.getSource(edges[0]) == nodes[5] && frozen.getDest(edges[0]) == nodes[2]
+                && frozen.findEdge(nodes[4], nodes[1]) == edges[3] && frozen.indexOf(new GraphNode(11)) == -1
+                && frozen.inDegree(nodes[1]) == 2 && frozen.node(3) == nodes[3]) {
+            System.out.println("Yay 6");
+        }
+
+        // the snapshot can be read from many threads at once
+        final int[] expected = frozen.getCore().topologicalOrder();
+        final boolean[] same = new boolean[4];
+        Thread[] readers = new Thread[same.length];
+        for (int t = 0; t < readers.length; t++) {
+            final int slot = t;
+            readers[t] = new Thread() {
+                public void run() {
+                    same[slot] = Arrays.equals(expected, frozen.getCore().topologicalOrder())
+                        && frozen.getSuccessors(nodes[5]).contains(nodes[2]);
+                }
+            };
+            readers[t].start();
+        }
+        boolean allSame = true;
+        for (int t = 0; t < readers.length; t++) {
+            try {
+                readers[t].join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            allSame &= same[t];
+        }
+
+        // ... and TopologicalSort ranks the original nodes through it
+        topSort.reset(frozen);
+        while (topSort.step()) {
+        }
+        if (allSame && nodes[4].getRank() == 0 && nodes[5].getRank() == 1 && nodes[0].getRank() == 2
+                && nodes[2].getRank() == 3 && nodes[3].getRank() == 4 && nodes[1].getRank() == 5) {
+            System.out.println("Yay 7");
+        }
+
+        // 200000 nodes added in random order with gaps in the ids, 1000000 random edges:
+        // vertices come out by id and every row by destination, without sorting
+        int n = 200000;
+        java.util.Random rand = new java.util.Random(0);
+        SparseThreeTenGraph scattered = new SparseThreeTenGraph(n, 5 * n);
+        GraphNode[] byIndex = new GraphNode[n];
+        for (int i = 0; i < n; i++) {
+            byIndex[i] = new GraphNode(3 * (int) ((i * 7919L) % n));
+            scattered.addVertex(byIndex[i]);
+        }
+        for (int k = 0; k < 5 * n; k++) {
+            scattered.addEdge(new GraphEdge(k), byIndex[rand.nextInt(n)], byIndex[rand.nextInt(n)]);
+        }
+        IntDigraphAdapter.freeze(scattered);// warm up
+        long begin = System.nanoTime();
+        IntDigraphAdapter snapshot = IntDigraphAdapter.freeze(scattered);
+        long millis = (System.nanoTime() - begin) / 1000000;
+        IntDigraph flat = snapshot.getCore();
+        boolean ordered = flat.vertexCount() == n && flat.edgeCount() == scattered.getEdgeCount();
+        for (int v = 0; v < n && ordered; v++) {
+            ordered = snapshot.node(v).getId() == 3 * v;
+            for (int slot = flat.outBegin(v); slot < flat.outEnd(v) && ordered; slot++) {
+                ordered = (slot == flat.outBegin(v) || flat.target(slot - 1) < flat.target(slot))
+                        && scattered.getSource(snapshot.edge(slot)) == snapshot.node(v)
+                        && scattered.getDest(snapshot.edge(slot)) == snapshot.node(flat.target(slot));
+            }
+        }
+        if (ordered) {
+            System.out.println("Yay 8 (" + flat.edgeCount() + " edges in " + millis + " ms)");
+        }
+    }
+}
@@ -0,0 +1,359 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A headless topological sort that uses every core: Kahn's algorithm run
+ * level by level, where a level (frontier) is the set of vertices whose
+ * in-degree reached zero while the previous level was processed. The
+ * vertices of a level are split between ForkJoin tasks; each task
+ * decrements the in-degree of its vertices' successors in an
+ * AtomicIntegerArray, and the task whose decrement reaches zero claims
+ * that successor for the next level, so every vertex is appended once.
+ * The levels are written one after the other into the order array, which
+ * is therefore a valid topological order. Inside a level the order
+ * depends on thread timing, unless the canonical order is asked for: then
+ * each level is sorted by id, which makes the result deterministic (by
+ * level, then lowest id first).
+ * Levels smaller than GRAIN are done on the calling thread, so long thin
+ * graphs cost about what the sequential sort does.
+ * @author Phat Tran
+ */
+final class ParallelTopologicalSort {
+
+    /**
+     * vertices per task; smaller levels are not split.
+     */
+    private static final int GRAIN = 1024;
+
+    /**
+     * not instantiable.
+     */
+    private ParallelTopologicalSort() {
+    }
+
+    /**
+     * Sorts a primitive graph on the common pool.
+     * @param graph the graph
+     * @param canonical true to order each level by id
+     * @return the order, ranks, levels and level widths, and the leftovers if there is a cycle
+     */
+    public static SortResult sort(IntDigraph graph, boolean canonical) {
+        return sort(graph, ForkJoinPool.commonPool(), canonical);
+    }
+
+    /**
+     * Sorts a primitive graph.
+     * @param graph the graph
+     * @param pool where to run the tasks
+     * @param canonical true to order each level by id
+     * @return the order, ranks, levels and level widths, and the leftovers if there is a cycle
+     */
+    public static SortResult sort(final IntDigraph graph, ForkJoinPool pool, boolean canonical) {
+        // O(V + E) work, O(depth) rounds
+        final int n = graph.vertexCount();
+        final AtomicIntegerArray remaining = new AtomicIntegerArray(n);
+        final int[] order = new int[n];
+        final AtomicInteger tail = new AtomicInteger();
+        pool.invoke(new RecursiveAction() {
+            protected void compute() {
+                seed(graph, remaining, order, tail, 0, n);
+            }
+        });
+        if (canonical) {
+            Arrays.parallelSort(order, 0, tail.get());
+        }
+
+        // each round is one level: a vertex is freed in the round after its
+        // last predecessor, so the round is its longest distance from a source
+        int[] levels = new int[n];
+        Arrays.fill(levels, -1);
+        int[] widths = new int[16];
+        int depth = 0;
+        int head = 0;
+        while (head < tail.get()) {
+            int end = tail.get();
+            Level level = new Level(graph, remaining, order, tail, head, end);
+            if (end - head <= GRAIN) {
+                level.compute();
+            } else {
+                pool.invoke(level);
+            }
+            if (canonical) {
+                Arrays.parallelSort(order, end, tail.get());
+            }
+            if (depth == widths.length) {
+                widths = Arrays.copyOf(widths, 2 * depth);
+            }
+            widths[depth] = end - head;
+            for (int i = head; i < end; i++) {
+                levels[order[i]] = depth;
+            }
+            depth++;
+            head = end;
+        }
+
+        int sorted = tail.get();
+        int[] ranks = new int[n];
+        Arrays.fill(ranks, -1);
+        for (int i = 0; i < sorted; i++) {
+            ranks[order[i]] = i;
+        }
+        int[] leftovers = new int[n - sorted];
+        int count = 0;
+        for (int v = 0; v < n && count < leftovers.length; v++) {
+            if (ranks[v] == -1) {
+                leftovers[count++] = v;
+            }
+        }
+        return new SortResult((sorted == n) ? order : Arrays.copyOf(order, sorted), ranks, leftovers, levels,
+                Arrays.copyOf(widths, depth));
+    }
+
+    /**
+     * Sorts a graph of GraphNode/GraphEdge on the common pool, through a
+     * frozen copy of its structure (see IntDigraphAdapter.freeze()). Nodes
+     * are reported by id, like TopologicalSort.sort(Graph); nothing is
+     * written to the nodes.
+     * @param graph the graph (vertex ids must be non-negative)
+     * @param canonical true to order each level by id
+     * @return the order, ranks, levels and level widths, and the leftovers if there is a cycle
+     */
+    public static SortResult sort(Graph<GraphNode, GraphEdge> graph, boolean canonical) {
+        // O(V + E + largest id) to freeze, then as sort(IntDigraph)
+        IntDigraphAdapter frozen = (graph instanceof IntDigraphAdapter)
+                ? (IntDigraphAdapter) graph : IntDigraphAdapter.freeze(graph);
+        SortResult result = sort(frozen.getCore(), canonical);
+        // the frozen vertices are in ascending id order, so mapping keeps each level sorted
+        int maxId = -1;
+        for (GraphNode v : graph.getVertices()) {
+            maxId = Math.max(maxId, v.getId());
+        }
+        int[] order = result.getOrder();
+        int[] ranks = new int[maxId + 1];
+        int[] levels = new int[maxId + 1];
+        Arrays.fill(ranks, -1);
+        Arrays.fill(levels, -1);
+        for (int i = 0; i < order.length; i++) {
+            int level = result.getLevel(order[i]);
+            order[i] = frozen.node(order[i]).getId();
+            ranks[order[i]] = i;
+            levels[order[i]] = level;
+        }
+        int[] leftovers = result.getLeftovers();
+        for (int i = 0; i < leftovers.length; i++) {
+            leftovers[i] = frozen.node(leftovers[i]).getId();
+        }
+        return new SortResult(order, ranks, leftovers, levels, result.getWidths());
+    }
+
+    /**
+     * Fills in the in-degrees of vertices lo to hi-1 and appends the
+     * sources among them, splitting the range between tasks.
+     * @param graph the graph
+     * @param remaining in-degree of each vertex
+     * @param order where the sources go
+     * @param tail next free slot of order
+     * @param lo first vertex
+     * @param hi last vertex + 1
+     */
+    private static void seed(final IntDigraph graph, final AtomicIntegerArray remaining, final int[] order,
+            final AtomicInteger tail, final int lo, final int hi) {
+        if (hi - lo > 16 * GRAIN) {
+            final int mid = (lo + hi) >>> 1;
+            RecursiveAction.invokeAll(new RecursiveAction() {
+                protected void compute() {
+                    seed(graph, remaining, order, tail, lo, mid);
+                }
+            }, new RecursiveAction() {
+                protected void compute() {
+                    seed(graph, remaining, order, tail, mid, hi);
+                }
+            });
+            return;
+        }
+        int[] found = new int[hi - lo];
+        int count = 0;
+        for (int v = lo; v < hi; v++) {
+            int degree = graph.inDegree(v);
+            remaining.lazySet(v, degree);
+            if (degree == 0) {
+                found[count++] = v;
+            }
+        }
+        System.arraycopy(found, 0, order, tail.getAndAdd(count), count);
+    }
+
+    /**
+     * Processes order[lo] to order[hi-1], one level or part of one.
+     */
+    private static final class Level extends RecursiveAction {
+        /**
+         * serialization version (RecursiveAction is Serializable).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * the graph.
+         */
+        private final IntDigraph graph;
+
+        /**
+         * in-degree left for each vertex.
+         */
+        private final AtomicIntegerArray remaining;
+
+        /**
+         * the order being built.
+         */
+        private final int[] order;
+
+        /**
+         * next free slot of order.
+         */
+        private final AtomicInteger tail;
+
+        /**
+         * first slot of this part.
+         */
+        private final int lo;
+
+        /**
+         * last slot of this part + 1.
+         */
+        private final int hi;
+
+        /**
+         * constructor.
+         * @param graph the graph
+         * @param remaining in-degree left for each vertex
+         * @param order the order being built
+         * @param tail next free slot of order
+         * @param lo first slot
+         * @param hi last slot + 1
+         */
+        Level(IntDigraph graph, AtomicIntegerArray remaining, int[] order, AtomicInteger tail, int lo, int hi) {
+            this.graph = graph;
+            this.remaining = remaining;
+            this.order = order;
+            this.tail = tail;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        protected void compute() {
+            if (hi - lo > GRAIN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Level(graph, remaining, order, tail, lo, mid),
+                        new Level(graph, remaining, order, tail, mid, hi));
+                return;
+            }
+            int edges = 0;
+            for (int i = lo; i < hi; i++) {
+                edges += graph.outDegree(order[i]);
+            }
+            // the successors this part frees, handed over in one block
+            int[] found = new int[edges];
+            int count = 0;
+            for (int i = lo; i < hi; i++) {
+                int u = order[i];
+                for (int e = graph.outBegin(u), end = graph.outEnd(u); e < end; e++) {
+                    int v = graph.target(e);
+                    if (remaining.decrementAndGet(v) == 0) {
+                        found[count++] = v;
+                    }
+                }
+            }
+            if (count > 0) {
+                System.arraycopy(found, 0, order, tail.getAndAdd(count), count);
+            }
+        }
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        // 5-->2 5-->0 4-->0 4-->1 2-->3 3-->1
+        IntDigraph small = new IntDigraph(6, new int[] {5, 5, 4, 4, 2, 3}, new int[] {2, 0, 0, 1, 3, 1});
+        SortResult levels = sort(small, true);
+        if (Arrays.toString(levels.getOrder()).equals("[4, 5, 0, 2, 3, 1]") && !levels.hasCycle()) {
+            System.out.println("Yay 1");
+        }
+
+        // 0-->1 1-->2 2-->1 2-->3, with 4 on its own
+        SortResult stuck = sort(new IntDigraph(5, new int[] {0, 1, 2, 2}, new int[] {1, 2, 1, 3}), false);
+        if (stuck.hasCycle() && Arrays.toString(stuck.getLeftovers()).equals("[1, 2, 3]")
+                && stuck.getOrder().length == 2 && stuck.getRank(4) >= 0) {
+            System.out.println("Yay 2");
+        }
+
+        // the same through GraphNodes with gaps in the ids
+        SparseThreeTenGraph sparse = new SparseThreeTenGraph();
+        GraphNode[] nodes = new GraphNode[6];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(10 * i);
+            sparse.addVertex(nodes[i]);
+        }
+        int[][] pairs = {{5, 2}, {5, 0}, {4, 0}, {4, 1}, {2, 3}, {3, 1}};
+        for (int i = 0; i < pairs.length; i++) {
+            sparse.addEdge(new GraphEdge(i), nodes[pairs[i][0]], nodes[pairs[i][1]]);
+        }
+        SortResult byId = sort(sparse, true);
+        if (Arrays.toString(byId.getOrder()).equals("[40, 50, 0, 20, 30, 10]") && byId.getRank(20) == 3
+                && nodes[2].getRank() == -1) {
+            System.out.println("Yay 3");
+        }
+
+        // a wide layered DAG: 2 million vertices in 20 levels, 8 million edges
+        int width = 100000;
+        int depth = 20;
+        int n = width * depth;
+        int m = 4 * n - 4 * width;
+        int[] from = new int[m];
+        int[] to = new int[m];
+        java.util.Random rand = new java.util.Random(0);
+        for (int i = 0; i < m; i++) {
+            int layer = i / (4 * width);
+            from[i] = layer * width + rand.nextInt(width);
+            to[i] = (layer + 1) * width + rand.nextInt(width);
+        }
+        IntDigraph wide = new IntDigraph(n, from, to);
+        TopologicalSort.sort(wide);
+        sort(wide, true);// warm up
+        long begin = System.nanoTime();
+        SortResult sequential = TopologicalSort.sort(wide);
+        long sequentialMillis = (System.nanoTime() - begin) / 1000000;
+        begin = System.nanoTime();
+        SortResult parallel = sort(wide, false);
+        long parallelMillis = (System.nanoTime() - begin) / 1000000;
+        SortResult canonical = sort(wide, true);
+        boolean valid = parallel.getOrder().length == n && canonical.getOrder().length == n
+                && sequential.getOrder().length == n;
+        for (int u = 0; u < n; u++) {
+            for (int e = wide.outBegin(u); e < wide.outEnd(u); e++) {
+                valid &= parallel.getRank(u) < parallel.getRank(wide.target(e))
+                        && canonical.getRank(u) < canonical.getRank(wide.target(e));
+            }
+        }
+        if (valid && Arrays.equals(canonical.getOrder(), sort(wide, true).getOrder())) {
+            System.out.println("Yay 4 (" + ForkJoinPool.commonPool().getParallelism() + " workers: "
+                    + parallelMillis + " ms, sequential " + sequentialMillis + " ms)");
+        }
+
+        // the rounds are the levels the sequential sort finds
+        if (Arrays.equals(parallel.getLevels(), sequential.getLevels())
+                && Arrays.equals(canonical.getWidths(), sequential.getWidths()) && sequential.getDepth() == depth
+                && byId.getLevel(20) == 1 && byId.getLevel(10) == 3 && byId.getMaxWidth() == 2) {
+            System.out.println("Yay 5");
+        }
+    }
+}
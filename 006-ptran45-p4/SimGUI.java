@@ -4,6 +4,7 @@ import edu.uci.ics.jung.graph.Graph;
 import edu.uci.ics.jung.graph.util.EdgeType;
 
 import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.LayoutDecorator;
 import edu.uci.ics.jung.algorithms.layout.KKLayout; //undirected graphs
 import edu.uci.ics.jung.algorithms.layout.CircleLayout; //undirected and directed graphs
 import edu.uci.ics.jung.algorithms.layout.ISOMLayout; //directed graphs
@@ -15,6 +16,7 @@ import edu.uci.ics.jung.visualization.RenderContext;
 import edu.uci.ics.jung.visualization.VisualizationViewer;
 import edu.uci.ics.jung.visualization.control.ModalGraphMouse;
 import edu.uci.ics.jung.visualization.control.EditingModalGraphMouse;
+import edu.uci.ics.jung.visualization.renderers.BasicRenderer;
 import edu.uci.ics.jung.visualization.renderers.Renderer.VertexLabel.Position;
 
 import org.apache.commons.collections15.Factory;
@@ -66,7 +68,7 @@ class SimGUI {
 	/**
 	 *  The panel containing the graph display.
 	 */
-	private Graph<GraphNode, GraphEdge> graph = null;
+	private VersionedThreeTenGraph graph = null;
 	
 	/**
 	 *  The panel containing the graph display.
@@ -186,6 +188,23 @@ class SimGUI {
 		visServer = new VisualizationViewer<GraphNode, GraphEdge>(layout);
 		visServer.setPreferredSize(new Dimension(frame.getWidth()-150,frame.getHeight()-30));
 		
+		//draw one pinned version per paint, so edits never show up half done
+		//(paints between edits share the same snapshot)
+		visServer.setRenderer(new BasicRenderer<GraphNode, GraphEdge>() {
+			@Override
+			public void render(RenderContext<GraphNode, GraphEdge> rc, Layout<GraphNode, GraphEdge> layout) {
+				try (VersionedThreeTenGraph.Pin pin = graph.pin()) {
+					final Graph<GraphNode, GraphEdge> snapshot = pin.getGraph();
+					super.render(rc, new LayoutDecorator<GraphNode, GraphEdge>(layout) {
+						@Override
+						public Graph<GraphNode, GraphEdge> getGraph() {
+							return snapshot;
+						}
+					});
+				}
+			}
+		});
+		
 		visServer.getRenderer().getVertexLabelRenderer().setPosition(Position.CNTR);
 		RenderContext<GraphNode, GraphEdge> context = visServer.getRenderContext();
 		
@@ -362,7 +381,25 @@ class SimGUI {
 			}
 		});
 		buttonPanel.add(play);
-		
+
+		//cycles button
+		JButton cycles = new JButton("Cycles");
+		cycles.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent event) {
+				highlightCycles();
+			}
+		});
+		buttonPanel.add(cycles);
+
+		//critical path button
+		JButton critical = new JButton("Critical");
+		critical.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent event) {
+				highlightCriticalPath();
+			}
+		});
+		buttonPanel.add(critical);
+
 		//frame.add(buttonPanel, 1);
 		
 		frame.add(buttonPanel, BorderLayout.PAGE_END);
@@ -383,6 +420,36 @@ class SimGUI {
 		return ret;
 	}
 
+	/**
+	 *  Highlights every cycle of the graph at once and updates
+	 *  the GUI to display the result.
+	 *
+	 *  @return the number of cycles, or -1 if the algorithm cannot find them
+	 */
+	public int highlightCycles() {
+		if(!(alg instanceof TopologicalSort)) return -1;
+		int ret = ((TopologicalSort) alg).highlightCycles();
+		visServer.repaint();
+		sidePanel.repaint();
+		topPanel.repaint();
+		return ret;
+	}
+
+	/**
+	 *  Highlights the critical path of the graph and updates
+	 *  the GUI to display the result.
+	 *
+	 *  @return the length of the path, or -1 if there is none
+	 */
+	public long highlightCriticalPath() {
+		if(!(alg instanceof TopologicalSort)) return -1;
+		long ret = ((TopologicalSort) alg).highlightCriticalPath();
+		visServer.repaint();
+		sidePanel.repaint();
+		topPanel.repaint();
+		return ret;
+	}
+
 
 	/**
 	 *  Calls the step button on the simulation and updates
@@ -417,7 +484,7 @@ class SimGUI {
 					this.numNodes,this.prob
 				);
 			gen.setSeed(this.rand.nextInt());	
-			graph = gen.create();
+			graph = new VersionedThreeTenGraph(gen.create());
 			
 		}
 		else {
@@ -0,0 +1,157 @@
+/**
+ * The result of a headless sort (see TopologicalSort.sort()): the vertices
+ * in topological order, the rank of every vertex, and the vertices that
+ * could not be ranked because they are on or behind a cycle.
+ * It also has the level of every ranked vertex (the number of edges on
+ * the longest path to it from a vertex with no predecessors) and the
+ * width of every level. Vertices on the same level do not depend on each
+ * other, so the widths tell how much of the graph could be worked on at
+ * once: at most getMaxWidth() vertices at a time, getAverageWidth() on
+ * average, in getDepth() rounds.
+ * Vertices are reported by id (GraphNode id, or the vertex number of an
+ * IntDigraph). The arrays are shared, not copied; do not modify them.
+ * @author Phat Tran
+ */
+final class SortResult {
+
+    /**
+     * the ranked vertices, in order.
+     */
+    private final int[] order;
+
+    /**
+     * rank of each id, or -1 for ids that are not ranked.
+     */
+    private final int[] ranks;
+
+    /**
+     * the vertices that were not ranked.
+     */
+    private final int[] leftovers;
+
+    /**
+     * level of each id, or -1 for ids that are not ranked.
+     */
+    private final int[] levels;
+
+    /**
+     * number of ranked vertices on each level.
+     */
+    private final int[] widths;
+
+    /**
+     * constructor.
+     * @param order the ranked vertices, in order
+     * @param ranks rank of each id, or -1 for ids that are not ranked
+     * @param leftovers the vertices that were not ranked
+     * @param levels level of each id, or -1 for ids that are not ranked
+     * @param widths number of ranked vertices on each level
+     */
+    SortResult(int[] order, int[] ranks, int[] leftovers, int[] levels, int[] widths) {
+        this.order = order;
+        this.ranks = ranks;
+        this.leftovers = leftovers;
+        this.levels = levels;
+        this.widths = widths;
+    }
+
+    /**
+     * Returns the ranked vertices in topological order.
+     * @return the order
+     */
+    public int[] getOrder() {
+        return order;
+    }
+
+    /**
+     * Returns the rank of every id: entry i is the rank of vertex i, or -1
+     * if there is no vertex i or it was not ranked.
+     * @return the ranks, indexed by id
+     */
+    public int[] getRanks() {
+        return ranks;
+    }
+
+    /**
+     * Returns the rank of a vertex.
+     * @param id vertex id
+     * @return its rank, or -1 if it was not ranked (or is not in the graph)
+     */
+    public int getRank(int id) {
+        return (id >= 0 && id < ranks.length) ? ranks[id] : -1;
+    }
+
+    /**
+     * Returns the vertices that could not be ranked: the members of cycles
+     * and everything reachable from them.
+     * @return the leftover vertices, in graph order
+     */
+    public int[] getLeftovers() {
+        return leftovers;
+    }
+
+    /**
+     * Tells whether the graph has a cycle.
+     * @return true if some vertices could not be ranked
+     */
+    public boolean hasCycle() {
+        return leftovers.length > 0;
+    }
+
+    /**
+     * Returns the level of every id: entry i is the length of the longest
+     * path to vertex i from a vertex with no predecessors, or -1 if there
+     * is no vertex i or it was not ranked.
+     * @return the levels, indexed by id
+     */
+    public int[] getLevels() {
+        return levels;
+    }
+
+    /**
+     * Returns the level of a vertex.
+     * @param id vertex id
+     * @return its level, or -1 if it was not ranked (or is not in the graph)
+     */
+    public int getLevel(int id) {
+        return (id >= 0 && id < levels.length) ? levels[id] : -1;
+    }
+
+    /**
+     * Returns the width histogram: entry k is the number of ranked vertices
+     * on level k.
+     * @return the widths, indexed by level
+     */
+    public int[] getWidths() {
+        return widths;
+    }
+
+    /**
+     * Returns the number of levels, the length of the longest path + 1.
+     * @return the depth (0 if nothing was ranked)
+     */
+    public int getDepth() {
+        return widths.length;
+    }
+
+    /**
+     * Returns the width of the widest level.
+     * @return the largest number of vertices on one level (0 if nothing was ranked)
+     */
+    public int getMaxWidth() {
+        // O(depth)
+        int max = 0;
+        for (int w : widths) {
+            max = Math.max(max, w);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the average width of the levels.
+     * @return ranked vertices per level (0 if nothing was ranked)
+     */
+    public double getAverageWidth() {
+        return (widths.length == 0) ? 0 : (double) order.length / widths.length;
+    }
+}
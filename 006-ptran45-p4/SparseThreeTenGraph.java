@@ -0,0 +1,1185 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import org.apache.commons.collections15.Factory;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A directed graph backed by growable per-vertex adjacency arrays
+ * instead of ThreeTenGraph's fixed 200 x 200 matrix.
+ * Memory is O(V + E) (plus one slot per id up to the largest vertex
+ * and edge id), so ids should be reasonably dense.
+ * The outgoing edges of a vertex are kept sorted by destination id and
+ * the incoming edges by source id, so iteration order (and therefore the
+ * depth first traversal) matches ThreeTenGraph.
+ * All the collections returned are read-only live views; do not modify
+ * the graph while iterating over the edges of one vertex.
+ * @author Phat Tran
+ */
+class SparseThreeTenGraph extends ThreeTenAbstractGraph {
+
+    /**
+     * initial capacity of the id-indexed arrays.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * initial capacity of a vertex's adjacency array.
+     */
+    private static final int DEFAULT_DEGREE_CAPACITY = 4;
+
+    /**
+     * the vertices, indexed by id.
+     */
+    private GraphNode[] vertexList;
+
+    /**
+     * outgoing edges of each vertex, sorted by destination id.
+     */
+    private GraphEdge[][] outEdges;
+
+    /**
+     * incoming edges of each vertex, sorted by source id.
+     */
+    private GraphEdge[][] inEdges;
+
+    /**
+     * number of used slots in outEdges for each vertex.
+     */
+    private int[] outCount;
+
+    /**
+     * number of used slots in inEdges for each vertex.
+     */
+    private int[] inCount;
+
+    /**
+     * the edges, indexed by id.
+     */
+    private GraphEdge[] edgeList;
+
+    /**
+     * source vertex id of each edge, indexed by edge id.
+     */
+    private int[] edgeSource;
+
+    /**
+     * destination vertex id of each edge, indexed by edge id.
+     */
+    private int[] edgeDest;
+
+    /**
+     * number of vertices in the graph.
+     */
+    private int vertexCount;
+
+    /**
+     * number of edges in the graph.
+     */
+    private int edgeCount;
+
+    /**
+     * constructor.
+     */
+    public SparseThreeTenGraph() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * constructor with an expected size, to avoid regrowing while loading.
+     * @param vertexCapacity expected largest vertex id + 1
+     * @param edgeCapacity expected largest edge id + 1
+     */
+    public SparseThreeTenGraph(int vertexCapacity, int edgeCapacity) {
+        vertexCapacity = Math.max(vertexCapacity, 1);
+        edgeCapacity = Math.max(edgeCapacity, 1);
+        vertexList = new GraphNode[vertexCapacity];
+        outEdges = new GraphEdge[vertexCapacity][];
+        inEdges = new GraphEdge[vertexCapacity][];
+        outCount = new int[vertexCapacity];
+        inCount = new int[vertexCapacity];
+        edgeList = new GraphEdge[edgeCapacity];
+        edgeSource = new int[edgeCapacity];
+        edgeDest = new int[edgeCapacity];
+    }
+
+    /**
+     * Grows the vertex arrays so that id is a valid index.
+     * @param id vertex id
+     */
+    private void ensureVertexCapacity(int id) {
+        if (id < vertexList.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, vertexList.length * 2);
+        vertexList = Arrays.copyOf(vertexList, capacity);
+        outEdges = Arrays.copyOf(outEdges, capacity);
+        inEdges = Arrays.copyOf(inEdges, capacity);
+        outCount = Arrays.copyOf(outCount, capacity);
+        inCount = Arrays.copyOf(inCount, capacity);
+    }
+
+    /**
+     * Grows the edge arrays so that id is a valid index.
+     * @param id edge id
+     */
+    private void ensureEdgeCapacity(int id) {
+        if (id < edgeList.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, edgeList.length * 2);
+        edgeList = Arrays.copyOf(edgeList, capacity);
+        edgeSource = Arrays.copyOf(edgeSource, capacity);
+        edgeDest = Arrays.copyOf(edgeDest, capacity);
+    }
+
+    /**
+     * Returns the id of vertex if it is in the graph.
+     * @param vertex vertex
+     * @return the id of vertex, or -1 if it is not in the graph
+     */
+    private int indexOf(GraphNode vertex) {
+        if (vertex == null) {
+            return -1;
+        }
+        int id = vertex.getId();
+        if (id < 0 || id >= vertexList.length || vertexList[id] == null) {
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of edge if it is in the graph.
+     * @param edge edge
+     * @return the id of edge, or -1 if it is not in the graph
+     */
+    private int indexOf(GraphEdge edge) {
+        if (edge == null) {
+            return -1;
+        }
+        int id = edge.getId();
+        if (id < 0 || id >= edgeList.length || edgeList[id] == null) {
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Binary searches the adjacency array of a vertex for an endpoint id.
+     * @param adj adjacency array
+     * @param count number of used slots
+     * @param ends endpoint table to key on (edgeDest or edgeSource)
+     * @param key endpoint id to find
+     * @return the slot of key, or -(insertion point) - 1
+     */
+    private static int search(GraphEdge[] adj, int count, int[] ends, int key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = ends[adj[mid].getId()];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Inserts e into an adjacency array at a given slot.
+     * @param adj adjacency array (may be null)
+     * @param count number of used slots
+     * @param slot where to insert
+     * @param e the edge
+     * @return the (possibly new) adjacency array
+     */
+    private static GraphEdge[] insert(GraphEdge[] adj, int count, int slot, GraphEdge e) {
+        if (adj == null) {
+            adj = new GraphEdge[DEFAULT_DEGREE_CAPACITY];
+        } else if (count == adj.length) {
+            adj = Arrays.copyOf(adj, count * 2);
+        }
+        System.arraycopy(adj, slot, adj, slot + 1, count - slot);
+        adj[slot] = e;
+        return adj;
+    }
+
+    /**
+     * Removes the edge at a given slot of an adjacency array.
+     * @param adj adjacency array
+     * @param count number of used slots
+     * @param slot which slot to remove
+     */
+    private static void delete(GraphEdge[] adj, int count, int slot) {
+        System.arraycopy(adj, slot + 1, adj, slot, count - slot - 1);
+        adj[count - 1] = null;
+    }
+
+    /**
+     * Returns a view of all edges in this graph, in id order.
+     * @return a Collection view of all edges in this graph
+     */
+    public Collection<GraphEdge> getEdges() {
+        // O(1), the view walks the edge table
+        return new AbstractCollection<GraphEdge>() {
+            public Iterator<GraphEdge> iterator() {
+                return new TableIterator<>(edgeList);
+            }
+
+            public int size() {
+                return edgeCount;
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof GraphEdge) && containsEdge((GraphEdge) o);
+            }
+        };
+    }
+
+    /**
+     * Returns a view of all vertices in this graph, in id order.
+     * @return a Collection view of all vertices in this graph
+     */
+    public Collection<GraphNode> getVertices() {
+        // O(1), the view walks the vertex table
+        return new AbstractCollection<GraphNode>() {
+            public Iterator<GraphNode> iterator() {
+                return new TableIterator<>(vertexList);
+            }
+
+            public int size() {
+                return vertexCount;
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof GraphNode) && containsVertex((GraphNode) o);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     * @return the number of edges in this graph
+     */
+    public int getEdgeCount() {
+        // O(1)
+        return edgeCount;
+    }
+
+    /**
+     * Returns the number of vertices in this graph.
+     * @return the number of vertices in this graph
+     */
+    public int getVertexCount() {
+        // O(1)
+        return vertexCount;
+    }
+
+    /**
+     * Returns true if this graph's vertex collection contains vertex.
+     * @param vertex the vertex whose presence is being queried
+     * @return true iff this graph contains a vertex vertex
+     */
+    public boolean containsVertex(GraphNode vertex) {
+        // O(1)
+        return indexOf(vertex) != -1;
+    }
+
+    /**
+     * Returns true if this graph's edge collection contains edge.
+     * @param edge the edge whose presence is being queried
+     * @return true iff this graph contains an edge edge
+     */
+    public boolean containsEdge(GraphEdge edge) {
+        // O(1)
+        return indexOf(edge) != -1;
+    }
+
+    /**
+     * Returns a Collection view of the incoming edges incident to vertex.
+     * @param vertex the vertex whose incoming edges are to be returned
+     * @return a Collection view of the incoming edges incident
+     *         to vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphEdge> getInEdges(GraphNode vertex) {
+        // O(1), the view walks the adjacency array
+        int id = indexOf(vertex);
+        if (id == -1) {
+            return null;
+        }
+        return new AdjacencyView<GraphEdge>(id, false) {
+            GraphEdge map(GraphEdge e) {
+                return e;
+            }
+        };
+    }
+
+    /**
+     * Returns a Collection view of the outgoing edges incident to vertex.
+     * @param vertex the vertex whose outgoing edges are to be returned
+     * @return a Collection view of the outgoing edges incident
+     *         to vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphEdge> getOutEdges(GraphNode vertex) {
+        // O(1), the view walks the adjacency array
+        int id = indexOf(vertex);
+        if (id == -1) {
+            return null;
+        }
+        return new AdjacencyView<GraphEdge>(id, true) {
+            GraphEdge map(GraphEdge e) {
+                return e;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of incoming edges incident to vertex.
+     * @param vertex the vertex whose indegree is to be calculated
+     * @return the number of incoming edges incident to vertex
+     */
+    public int inDegree(GraphNode vertex) {
+        // O(1)
+        int id = indexOf(vertex);
+        return (id == -1) ? 0 : inCount[id];
+    }
+
+    /**
+     * Returns the number of outgoing edges incident to vertex.
+     * @param vertex the vertex whose outdegree is to be calculated
+     * @return the number of outgoing edges incident to vertex
+     */
+    public int outDegree(GraphNode vertex) {
+        // O(1)
+        int id = indexOf(vertex);
+        return (id == -1) ? 0 : outCount[id];
+    }
+
+    /**
+     * Returns a Collection view of the predecessors of vertex, in id order.
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return a Collection view of the predecessors of
+     *         vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphNode> getPredecessors(GraphNode vertex) {
+        // O(1), iterating is O(degree)
+        int id = indexOf(vertex);
+        if (id == -1) {
+            return null;
+        }
+        return new AdjacencyView<GraphNode>(id, false) {
+            GraphNode map(GraphEdge e) {
+                return vertexList[edgeSource[e.getId()]];
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * Walks the adjacency arrays with the current path kept in int arrays,
+     * so nothing is allocated per vertex.
+     */
+    public void depthFirstTraversal(IntConsumer visit) {
+        // O(V + E)
+        BitSet visited = new BitSet(vertexList.length);
+        int[] path = new int[vertexCount];// vertices on the current path
+        int[] slot = new int[vertexCount];// next outgoing edge of each one
+
+        for (int root = 0; root < vertexList.length; root++) {
+            if (vertexList[root] == null || visited.get(root)) {
+                continue;
+            }
+            visited.set(root);
+            visit.accept(root);
+            int depth = 0;
+            path[0] = root;
+            slot[0] = 0;
+            while (depth >= 0) {
+                // next unvisited successor, lowest id first
+                int u = path[depth];
+                GraphEdge[] adj = outEdges[u];
+                int i = slot[depth];
+                int v = -1;
+                while (i < outCount[u] && v == -1) {
+                    int dest = edgeDest[adj[i++].getId()];
+                    if (!visited.get(dest)) {
+                        v = dest;
+                    }
+                }
+                if (v == -1) {
+                    depth--;
+                    continue;
+                }
+                slot[depth] = i;
+                visited.set(v);
+                visit.accept(v);
+                depth++;
+                path[depth] = v;
+                slot[depth] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns a Collection view of the successors of vertex, in id order.
+     * @param vertex the vertex whose successors are to be returned
+     * @return a Collection view of the successors of
+     *         vertex in this graph, or null if vertex is not present.
+     */
+    public Collection<GraphNode> getSuccessors(GraphNode vertex) {
+        // O(1), iterating is O(degree)
+        int id = indexOf(vertex);
+        if (id == -1) {
+            return null;
+        }
+        return new AdjacencyView<GraphNode>(id, true) {
+            GraphNode map(GraphEdge e) {
+                return vertexList[edgeDest[e.getId()]];
+            }
+        };
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the source.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the source of directedEdge, or null if it is not in this graph
+     */
+    public GraphNode getSource(GraphEdge directedEdge) {
+        // O(1)
+        int id = indexOf(directedEdge);
+        return (id == -1) ? null : vertexList[edgeSource[id]];
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the destination.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the destination of directedEdge, or null if it is not in this graph
+     */
+    public GraphNode getDest(GraphEdge directedEdge) {
+        // O(1)
+        int id = indexOf(directedEdge);
+        return (id == -1) ? null : vertexList[edgeDest[id]];
+    }
+
+    /**
+     * Returns the edge that connects v1 to v2.
+     * @param v1 first vertex
+     * @param v2 second vertex
+     * @return an edge that connects v1 to v2
+     *         or null if no such edge exists (or either vertex is not present).
+     */
+    public GraphEdge findEdge(GraphNode v1, GraphNode v2) {
+        // O(lg d) where d is the out-degree of v1
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        if (from == -1 || to == -1) {
+            return null;
+        }
+        int slot = search(outEdges[from], outCount[from], edgeDest, to);
+        return (slot < 0) ? null : outEdges[from][slot];
+    }
+
+    /**
+     * Adds vertex to this graph.
+     * Fails if vertex is already in the graph.
+     * @param vertex the vertex to add
+     * @return true if the add is successful, and false otherwise
+     * @throws IllegalArgumentException if vertex is null or has a negative id
+     */
+    public boolean addVertex(GraphNode vertex) {
+        // amortized O(1)
+        if (vertex == null || vertex.getId() < 0) {
+            throw new IllegalArgumentException();
+        }
+        int id = vertex.getId();
+        ensureVertexCapacity(id);
+        if (vertexList[id] != null) {
+            return false;
+        }
+        vertexList[id] = vertex;
+        vertexCount++;
+        return true;
+    }
+
+    /**
+     * Adds edge e to this graph such that it connects vertex v1 to v2.
+     * Fails if either vertex is null, v1 equals v2, e is null or already
+     * in the graph, or v1 is already connected to v2.
+     * @param e  the edge to be added
+     * @param v1 the first vertex to be connected
+     * @param v2 the second vertex to be connected
+     * @return true if the add is successful, false otherwise
+     * @throws IllegalArgumentException if v1 or v2 is not in this graph,
+     *                                  or e has a negative id
+     */
+    public boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2) {
+        // O(d) where d is the degree of v1 and v2
+        if ((v1 == null) || (v2 == null)) {
+            return false;
+        }
+        int from = indexOf(v1);
+        int to = indexOf(v2);
+        if (from == -1 || to == -1) {
+            throw new IllegalArgumentException();
+        }
+        if (from == to || e == null || containsEdge(e)) {
+            return false;
+        }
+        if (e.getId() < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        int outSlot = search(outEdges[from], outCount[from], edgeDest, to);
+        if (outSlot >= 0) {
+            // vertices are already connected by another edge
+            return false;
+        }
+
+        int id = e.getId();
+        ensureEdgeCapacity(id);
+        edgeList[id] = e;
+        edgeSource[id] = from;
+        edgeDest[id] = to;
+        edgeCount++;
+
+        outEdges[from] = insert(outEdges[from], outCount[from], -(outSlot + 1), e);
+        outCount[from]++;
+        int inSlot = search(inEdges[to], inCount[to], edgeSource, from);
+        inEdges[to] = insert(inEdges[to], inCount[to], -(inSlot + 1), e);
+        inCount[to]++;
+        return true;
+    }
+
+    /**
+     * Adds many edges at once: edges[i] connects sources[i] to dests[i].
+     * Every vertex is checked before anything is added, so if one of them is
+     * not in the graph the graph is left unchanged. Edges are then accepted
+     * or skipped exactly like addEdge() would, but instead of one sorted
+     * insert per edge the edge table is filled in one pass, every touched
+     * adjacency array is grown once, and each is sorted once at the end.
+     * @param edges the edges to be added
+     * @param sources the first vertex of each edge
+     * @param dests the second vertex of each edge
+     * @return the number of edges added
+     * @throws IllegalArgumentException if the arrays are null or have different
+     *                                  lengths, a vertex is not in the graph,
+     *                                  or an edge has a negative id
+     */
+    public int addEdges(GraphEdge[] edges, GraphNode[] sources, GraphNode[] dests) {
+        // O(V + k lg d) where k is the number of edges in the batch
+        if (edges == null || sources == null || dests == null
+                || edges.length != sources.length || edges.length != dests.length) {
+            throw new IllegalArgumentException();
+        }
+        int maxId = -1;
+        for (int i = 0; i < edges.length; i++) {
+            if ((sources[i] != null && indexOf(sources[i]) == -1)
+                    || (dests[i] != null && indexOf(dests[i]) == -1)
+                    || (edges[i] != null && edges[i].getId() < 0)) {
+                throw new IllegalArgumentException();
+            }
+            if (edges[i] != null) {
+                maxId = Math.max(maxId, edges[i].getId());
+            }
+        }
+        ensureEdgeCapacity(maxId);
+
+        // pass 1: claim the edge ids (the edge table is the id set) and count degrees
+        boolean[] accepted = new boolean[edges.length];
+        int[] addOut = new int[vertexList.length];
+        int[] addIn = new int[vertexList.length];
+        for (int i = 0; i < edges.length; i++) {
+            GraphEdge e = edges[i];
+            if (e == null || sources[i] == null || dests[i] == null) {
+                continue;
+            }
+            int id = e.getId();
+            int from = sources[i].getId();
+            int to = dests[i].getId();
+            if (from == to || edgeList[id] != null) {
+                continue;
+            }
+            edgeList[id] = e;
+            edgeSource[id] = from;
+            edgeDest[id] = to;
+            edgeCount++;
+            accepted[i] = true;
+            addOut[from]++;
+            addIn[to]++;
+        }
+
+        // pass 2: grow each outgoing array once and append
+        for (int v = 0; v < vertexList.length; v++) {
+            if (addOut[v] > 0) {
+                outEdges[v] = grow(outEdges[v], outCount[v] + addOut[v]);
+            }
+        }
+        for (int i = 0; i < edges.length; i++) {
+            if (accepted[i]) {
+                int from = sources[i].getId();
+                outEdges[from][outCount[from]++] = edges[i];
+            }
+        }
+
+        // pass 3: sort the touched outgoing arrays by destination and drop
+        // edges that connect an already connected pair (the sort is stable,
+        // so the edge that was there first, or came first in the batch, stays)
+        Comparator<GraphEdge> byDest = new Comparator<GraphEdge>() {
+            public int compare(GraphEdge x, GraphEdge y) {
+                return Integer.compare(edgeDest[x.getId()], edgeDest[y.getId()]);
+            }
+        };
+        for (int v = 0; v < vertexList.length; v++) {
+            if (addOut[v] == 0) {
+                continue;
+            }
+            GraphEdge[] adj = outEdges[v];
+            Arrays.sort(adj, 0, outCount[v], byDest);
+            int kept = 0;
+            for (int slot = 0; slot < outCount[v]; slot++) {
+                if (kept > 0 && edgeDest[adj[kept - 1].getId()] == edgeDest[adj[slot].getId()]) {
+                    // vertices are already connected by another edge
+                    edgeList[adj[slot].getId()] = null;
+                    edgeCount--;
+                    continue;
+                }
+                adj[kept++] = adj[slot];
+            }
+            Arrays.fill(adj, kept, outCount[v], null);
+            outCount[v] = kept;
+        }
+
+        // pass 4: the survivors go into the incoming arrays, sorted by source
+        int added = 0;
+        for (int v = 0; v < vertexList.length; v++) {
+            if (addIn[v] > 0) {
+                inEdges[v] = grow(inEdges[v], inCount[v] + addIn[v]);
+            }
+        }
+        for (int i = 0; i < edges.length; i++) {
+            if (accepted[i] && edgeList[edges[i].getId()] == edges[i]) {
+                int to = dests[i].getId();
+                inEdges[to][inCount[to]++] = edges[i];
+                added++;
+            }
+        }
+        Comparator<GraphEdge> bySource = new Comparator<GraphEdge>() {
+            public int compare(GraphEdge x, GraphEdge y) {
+                return Integer.compare(edgeSource[x.getId()], edgeSource[y.getId()]);
+            }
+        };
+        for (int v = 0; v < vertexList.length; v++) {
+            if (addIn[v] > 0) {
+                Arrays.sort(inEdges[v], 0, inCount[v], bySource);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Makes sure an adjacency array can hold a given number of edges.
+     * @param adj adjacency array (may be null)
+     * @param capacity number of edges it needs to hold
+     * @return adj, or a larger copy of it
+     */
+    private static GraphEdge[] grow(GraphEdge[] adj, int capacity) {
+        if (adj == null) {
+            return new GraphEdge[Math.max(capacity, DEFAULT_DEGREE_CAPACITY)];
+        }
+        if (adj.length >= capacity) {
+            return adj;
+        }
+        return Arrays.copyOf(adj, Math.max(capacity, adj.length * 2));
+    }
+
+    /**
+     * Removes edge from this graph.
+     * Fails if edge is null, or is otherwise not an element of this graph.
+     * @param edge the edge to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public boolean removeEdge(GraphEdge edge) {
+        // O(d) where d is the degree of its endpoints
+        int id = indexOf(edge);
+        if (id == -1) {
+            return false;
+        }
+        int from = edgeSource[id];
+        int to = edgeDest[id];
+        delete(outEdges[from], outCount[from], search(outEdges[from], outCount[from], edgeDest, to));
+        outCount[from]--;
+        delete(inEdges[to], inCount[to], search(inEdges[to], inCount[to], edgeSource, from));
+        inCount[to]--;
+        edgeList[id] = null;
+        edgeCount--;
+        return true;
+    }
+
+    /**
+     * Removes vertex from this graph, together with all its incident edges.
+     * Fails if vertex is null or not an element of this graph.
+     * @param vertex the vertex to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public boolean removeVertex(GraphNode vertex) {
+        // O(sum of the degrees of vertex and its neighbors)
+        int id = indexOf(vertex);
+        if (id == -1) {
+            return false;
+        }
+        while (outCount[id] > 0) {
+            removeEdge(outEdges[id][outCount[id] - 1]);
+        }
+        while (inCount[id] > 0) {
+            removeEdge(inEdges[id][inCount[id] - 1]);
+        }
+        outEdges[id] = null;
+        inEdges[id] = null;
+        vertexList[id] = null;
+        vertexCount--;
+        return true;
+    }
+
+    /**
+     * Removes every edge of edges that is in this graph.
+     * Edges that are not in the graph (or appear twice) are skipped.
+     * The edges are first dropped from the edge table, and then the
+     * adjacency array of every vertex they touched is compacted once,
+     * instead of shifting it once per edge.
+     * @param edges the edges to remove
+     * @return the number of edges removed
+     */
+    public int removeEdges(Collection<? extends GraphEdge> edges) {
+        // O(k + sum of the degrees of the touched vertices)
+        if (edges == null) {
+            return 0;
+        }
+        boolean[] touched = new boolean[vertexList.length];
+        int[] dirty = new int[Math.min(vertexList.length, 2 * edges.size())];
+        int dirtyCount = 0;
+        int removed = 0;
+        for (GraphEdge e : edges) {
+            int id = indexOf(e);
+            if (id == -1) {
+                continue;
+            }
+            edgeList[id] = null;
+            edgeCount--;
+            removed++;
+            if (!touched[edgeSource[id]]) {
+                touched[edgeSource[id]] = true;
+                dirty[dirtyCount++] = edgeSource[id];
+            }
+            if (!touched[edgeDest[id]]) {
+                touched[edgeDest[id]] = true;
+                dirty[dirtyCount++] = edgeDest[id];
+            }
+        }
+        for (int i = 0; i < dirtyCount; i++) {
+            compact(dirty[i]);
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every vertex of vertices that is in this graph, together with
+     * all their incident edges. The doomed vertices are marked first, their
+     * edges are dropped from the edge table, and then every surviving
+     * neighbor's adjacency array is compacted once.
+     * @param vertices the vertices to remove
+     * @return the number of vertices removed
+     */
+    public int removeVertices(Collection<? extends GraphNode> vertices) {
+        // O(k + sum of the degrees of the removed vertices and their neighbors)
+        if (vertices == null) {
+            return 0;
+        }
+        boolean[] doomed = new boolean[vertexList.length];
+        int[] ids = new int[Math.min(vertexList.length, vertices.size())];
+        int removed = 0;
+        for (GraphNode v : vertices) {
+            int id = indexOf(v);
+            if (id != -1 && !doomed[id]) {
+                doomed[id] = true;
+                ids[removed++] = id;
+            }
+        }
+
+        boolean[] touched = new boolean[vertexList.length];
+        int[] dirty = new int[vertexList.length];
+        int dirtyCount = 0;
+        for (int i = 0; i < removed; i++) {
+            int id = ids[i];
+            for (int slot = 0; slot < outCount[id] + inCount[id]; slot++) {
+                boolean out = slot < outCount[id];
+                GraphEdge e = out ? outEdges[id][slot] : inEdges[id][slot - outCount[id]];
+                if (edgeList[e.getId()] != e) {
+                    // already dropped from the other end
+                    continue;
+                }
+                edgeList[e.getId()] = null;
+                edgeCount--;
+                int other = out ? edgeDest[e.getId()] : edgeSource[e.getId()];
+                if (!doomed[other] && !touched[other]) {
+                    touched[other] = true;
+                    dirty[dirtyCount++] = other;
+                }
+            }
+        }
+        for (int i = 0; i < removed; i++) {
+            int id = ids[i];
+            outEdges[id] = null;
+            inEdges[id] = null;
+            outCount[id] = 0;
+            inCount[id] = 0;
+            vertexList[id] = null;
+        }
+        vertexCount -= removed;
+        for (int i = 0; i < dirtyCount; i++) {
+            compact(dirty[i]);
+        }
+        return removed;
+    }
+
+    /**
+     * Squeezes the edges that are no longer in the edge table out of the
+     * adjacency arrays of one vertex, keeping the rest in order.
+     * @param id vertex id
+     */
+    private void compact(int id) {
+        outCount[id] = compact(outEdges[id], outCount[id]);
+        inCount[id] = compact(inEdges[id], inCount[id]);
+    }
+
+    /**
+     * Squeezes the edges that are no longer in the edge table out of an
+     * adjacency array.
+     * @param adj adjacency array (may be null)
+     * @param count number of used slots
+     * @return the new number of used slots
+     */
+    private int compact(GraphEdge[] adj, int count) {
+        if (adj == null) {
+            return 0;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (edgeList[adj[i].getId()] == adj[i]) {
+                adj[kept++] = adj[i];
+            }
+        }
+        Arrays.fill(adj, kept, count, null);
+        return kept;
+    }
+
+    /**
+     * Iterator over the non-null entries of an id-indexed table.
+     * Removing the element just returned from the graph is safe.
+     * @param <T> GraphNode or GraphEdge
+     */
+    private static class TableIterator<T> implements Iterator<T> {
+        /**
+         * the table (captured, so a regrow does not disturb the iteration).
+         */
+        private final T[] table;
+
+        /**
+         * index of the next non-null entry, or table.length.
+         */
+        private int next = -1;
+
+        /**
+         * constructor.
+         * @param table the table to walk
+         */
+        TableIterator(T[] table) {
+            this.table = table;
+            advance();
+        }
+
+        /**
+         * Moves next to the following non-null entry.
+         */
+        private void advance() {
+            do {
+                next++;
+            } while (next < table.length && table[next] == null);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean hasNext() {
+            return next < table.length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T item = table[next];
+            advance();
+            return item;
+        }
+    }
+
+    /**
+     * Read-only view over the outgoing or incoming edges of one vertex.
+     * @param <T> what each edge is reported as
+     */
+    private abstract class AdjacencyView<T> extends AbstractCollection<T> {
+        /**
+         * the vertex id.
+         */
+        private final int id;
+
+        /**
+         * true for outgoing edges, false for incoming ones.
+         */
+        private final boolean out;
+
+        /**
+         * constructor.
+         * @param id the vertex id
+         * @param out true for outgoing edges, false for incoming ones
+         */
+        AdjacencyView(int id, boolean out) {
+            this.id = id;
+            this.out = out;
+        }
+
+        /**
+         * Converts an edge into the reported element.
+         * @param e the edge
+         * @return the element
+         */
+        abstract T map(GraphEdge e);
+
+        /**
+         * {@inheritDoc}
+         */
+        public int size() {
+            return out ? outCount[id] : inCount[id];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int slot = 0;
+
+                public boolean hasNext() {
+                    return slot < size();
+                }
+
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return map(out ? outEdges[id][slot++] : inEdges[id][slot++]);
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns a {@code Factory} that creates an instance of this graph type.
+     * @return a new Factory object
+     */
+    public static Factory<Graph<GraphNode, GraphEdge>> getFactory() {
+        return new Factory<Graph<GraphNode, GraphEdge>>() {
+            public Graph<GraphNode, GraphEdge> create() {
+                return new SparseThreeTenGraph();
+            }
+        };
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        GraphNode[] nodes = new GraphNode[10];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(i);
+        }
+        GraphEdge[] edges = new GraphEdge[8];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = new GraphEdge(i);
+        }
+
+        // same graph as ThreeTenGraph.main()
+        SparseThreeTenGraph graph = new SparseThreeTenGraph();
+        for (GraphNode n : nodes) {
+            graph.addVertex(n);
+        }
+        graph.addEdge(edges[0], nodes[0], nodes[1]);
+        graph.addEdge(edges[1], nodes[1], nodes[2]);
+        graph.addEdge(edges[2], nodes[3], nodes[6]);
+        graph.addEdge(edges[3], nodes[6], nodes[7]);
+        graph.addEdge(edges[4], nodes[8], nodes[9]);
+        graph.addEdge(edges[5], nodes[9], nodes[0]);
+        graph.addEdge(edges[6], nodes[2], nodes[7]);
+        graph.addEdge(edges[7], nodes[1], nodes[8]);
+
+        if (graph.getVertexCount() == 10 && graph.getEdgeCount() == 8) {
+            System.out.println("Yay 1");
+        }
+        if (graph.inDegree(nodes[0]) == 1 && graph.outDegree(nodes[1]) == 2) {
+            System.out.println("Yay 2");
+        }
+        if (graph.toString().equals("0 1 2 7 8 9 3 6 4 5")) {
+            System.out.println("Yay 3");
+        }
+        if (graph.getSource(edges[5]) == nodes[9] && graph.getDest(edges[5]) == nodes[0]
+                && graph.findEdge(nodes[1], nodes[8]) == edges[7] && graph.findEdge(nodes[8], nodes[1]) == null) {
+            System.out.println("Yay 4");
+        }
+        graph.removeVertex(nodes[1]);
+        if (graph.getEdgeCount() == 5 && graph.inDegree(nodes[2]) == 0 && graph.outDegree(nodes[0]) == 0
+                && !graph.containsEdge(edges[7])) {
+            System.out.println("Yay 5");
+        }
+
+        // well past the 200 node cap of ThreeTenGraph: a long chain
+        int n = 200000;
+        SparseThreeTenGraph chain = new SparseThreeTenGraph();
+        GraphNode prev = new GraphNode(0);
+        chain.addVertex(prev);
+        for (int i = 1; i < n; i++) {
+            GraphNode next = new GraphNode(i);
+            chain.addVertex(next);
+            chain.addEdge(new GraphEdge(i - 1), prev, next);
+            prev = next;
+        }
+        if (chain.getVertexCount() == n && chain.getEdgeCount() == n - 1) {
+            System.out.println("Yay 6");
+        }
+
+        // bulk loading: a million edges, including duplicates that must be skipped
+        int m = 1000000;
+        int k = 250000;
+        SparseThreeTenGraph bulk = new SparseThreeTenGraph(k, m);
+        GraphNode[] bulkNodes = new GraphNode[k];
+        for (int i = 0; i < k; i++) {
+            bulkNodes[i] = new GraphNode(i);
+            bulk.addVertex(bulkNodes[i]);
+        }
+        GraphEdge[] bulkEdges = new GraphEdge[m];
+        GraphNode[] from = new GraphNode[m];
+        GraphNode[] to = new GraphNode[m];
+        for (int i = 0; i < m; i++) {
+            bulkEdges[i] = new GraphEdge(i);
+            from[i] = bulkNodes[i % k];
+            to[i] = bulkNodes[(int) ((i % k) + 1 + (i / k) * 7L) % k];
+        }
+        from[m - 1] = from[m - 3];
+        to[m - 1] = to[m - 3];// same pair as an earlier edge
+        bulkEdges[m - 2] = bulkEdges[0];// already in the batch
+        long begin = System.nanoTime();
+        int added = bulk.addEdges(bulkEdges, from, to);
+        long millis = (System.nanoTime() - begin) / 1000000;
+        if (added == m - 2 && bulk.getEdgeCount() == m - 2 && bulk.outDegree(bulkNodes[0]) == 4
+                && bulk.findEdge(from[m - 1], to[m - 1]) == bulkEdges[m - 3]
+                && bulk.getSource(bulkEdges[0]) == bulkNodes[0] && !bulk.containsEdge(bulkEdges[m - 1])) {
+            System.out.println("Yay 7 (" + millis + " ms)");
+        }
+
+        // TopologicalSort runs on it unchanged
+        TopologicalSort topSort = new TopologicalSort();
+        topSort.reset(chain);
+        while (topSort.step()) {
+        }
+        if (prev.getRank() == n - 1) {
+            System.out.println("Yay 8");
+        }
+
+        // pruning 10% of the bulk graph's edges, then 10% of its vertices
+        ArrayList<GraphEdge> staleEdges = new ArrayList<>();
+        for (int i = 0; i < m; i += 10) {
+            staleEdges.add(bulkEdges[i]);
+        }
+        ArrayList<GraphNode> staleNodes = new ArrayList<>();
+        for (int i = 5; i < k; i += 10) {
+            staleNodes.add(bulkNodes[i]);
+        }
+        int edgesBefore = bulk.getEdgeCount();
+        begin = System.nanoTime();
+        int prunedEdges = bulk.removeEdges(staleEdges);
+        int prunedNodes = bulk.removeVertices(staleNodes);
+        millis = (System.nanoTime() - begin) / 1000000;
+        long outs = 0;
+        long ins = 0;
+        boolean clean = true;
+        for (GraphNode v : bulk.getVertices()) {
+            for (GraphEdge e : bulk.getOutEdges(v)) {
+                clean &= bulk.containsEdge(e) && bulk.containsVertex(bulk.getDest(e));
+            }
+            outs += bulk.outDegree(v);
+            ins += bulk.inDegree(v);
+        }
+        if (clean && prunedEdges == m / 10 && prunedNodes == k / 10 && bulk.getVertexCount() == k - k / 10
+                && outs == bulk.getEdgeCount() && ins == bulk.getEdgeCount()
+                && bulk.getEdgeCount() < edgesBefore - prunedEdges && !bulk.containsEdge(bulkEdges[10])) {
+            System.out.println("Yay 9 (" + millis + " ms)");
+        }
+
+        // depth first traversal of a million-node chain, without recursion
+        int deep = 1000000;
+        SparseThreeTenGraph longChain = new SparseThreeTenGraph(deep, deep);
+        GraphNode[] links = new GraphNode[deep];
+        for (int i = 0; i < deep; i++) {
+            links[i] = new GraphNode(i);
+            longChain.addVertex(links[i]);
+        }
+        GraphEdge[] linkEdges = new GraphEdge[deep - 1];
+        for (int i = 0; i < deep - 1; i++) {
+            linkEdges[i] = new GraphEdge(i);
+        }
+        longChain.addEdges(linkEdges, Arrays.copyOf(links, deep - 1), Arrays.copyOfRange(links, 1, deep));
+        final int[] expected = {0};
+        final boolean[] inOrder = {true};
+        begin = System.nanoTime();
+        longChain.depthFirstTraversal(new IntConsumer() {
+            public void accept(int id) {
+                inOrder[0] &= (id == expected[0]++);
+            }
+        });
+        millis = (System.nanoTime() - begin) / 1000000;
+        // and the same order as the generic traversal on the pruned bulk graph
+        if (inOrder[0] && expected[0] == deep && bulk.toString().equals(bulk.freeze().toString())) {
+            System.out.println("Yay 10 (" + millis + " ms)");
+        }
+
+        // the source of a pruned edge need not have any incoming edges (no in-array yet)
+        SparseThreeTenGraph pair = new SparseThreeTenGraph();
+        GraphNode tail = new GraphNode(0);
+        GraphNode head = new GraphNode(1);
+        pair.addVertex(tail);
+        pair.addVertex(head);
+        GraphEdge only = new GraphEdge(0);
+        pair.addEdge(only, tail, head);
+        if (pair.removeEdges(Arrays.asList(only)) == 1 && pair.getEdgeCount() == 0 && pair.outDegree(tail) == 0) {
+            System.out.println("Yay 11");
+        }
+    }
+}
@@ -0,0 +1,346 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components, found with Tarjan's algorithm in one
+ * depth first pass, O(V + E). The recursion is replaced by an explicit
+ * call stack of (vertex, next edge) int pairs, so a path of a million
+ * vertices needs no more than a few int arrays of that length.
+ * A component with more than one vertex is exactly the set of vertices
+ * on some cycle(s) through each other; these are what a topological sort
+ * cannot rank, together with everything they reach.
+ * Tarjan's algorithm completes the components in reverse topological
+ * order of the condensation: no edge leaves a component for a later one.
+ * @author Phat Tran
+ */
+final class StronglyConnected {
+
+    /**
+     * not instantiable.
+     */
+    private StronglyConnected() {
+    }
+
+    /**
+     * Numbers the component of every vertex. Components are numbered in
+     * the order Tarjan's algorithm completes them, so every edge u-->v has
+     * component(u) >= component(v).
+     * @param graph the graph
+     * @return the component number of each vertex; the largest number + 1
+     *         is the number of components
+     */
+    public static int[] componentOf(IntDigraph graph) {
+        // O(V + E)
+        int n = graph.vertexCount();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] component = new int[n];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+
+        // vertices visited but not yet in a component
+        int[] open = new int[n];
+        int openSize = 0;
+
+        // the DFS path and, for each vertex on it, the next edge to follow
+        int[] path = new int[n];
+        int[] cursor = new int[n];
+
+        int counter = 0;
+        int found = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            int depth = 0;
+            path[0] = root;
+            cursor[0] = graph.outBegin(root);
+            index[root] = low[root] = counter++;
+            open[openSize++] = root;
+            while (depth >= 0) {
+                int v = path[depth];
+                if (cursor[depth] < graph.outEnd(v)) {
+                    int w = graph.target(cursor[depth]++);
+                    if (index[w] == -1) {
+                        depth++;
+                        path[depth] = w;
+                        cursor[depth] = graph.outBegin(w);
+                        index[w] = low[w] = counter++;
+                        open[openSize++] = w;
+                    } else if (component[w] == -1) {
+                        // visited and still open: w is on the stack
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+
+                // all of v's edges done
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = open[--openSize];
+                        component[w] = found;
+                    } while (w != v);
+                    found++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int u = path[depth];
+                    low[u] = Math.min(low[u], low[v]);
+                }
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Finds all the strongly connected components.
+     * @param graph the graph
+     * @return the components, each sorted by vertex, ordered by their lowest vertex
+     */
+    public static int[][] components(IntDigraph graph) {
+        return group(componentOf(graph), 1);
+    }
+
+    /**
+     * Finds the components that hold a cycle: those with two or more
+     * vertices (graphs here have no self-loops).
+     * @param graph the graph
+     * @return the cycles, each sorted by vertex, ordered by their lowest vertex
+     */
+    public static int[][] cycles(IntDigraph graph) {
+        return group(componentOf(graph), 2);
+    }
+
+    /**
+     * Finds the components that hold a cycle in a graph of
+     * GraphNode/GraphEdge, through a frozen copy of its structure (see
+     * IntDigraphAdapter.freeze()). Nodes are reported by id; nothing is
+     * written to the nodes.
+     * @param graph the graph (vertex ids must be non-negative)
+     * @return the node ids of each cycle, sorted, ordered by their lowest id
+     */
+    public static int[][] cycles(Graph<GraphNode, GraphEdge> graph) {
+        // O(V + E + largest id) to freeze, then O(V + E)
+        IntDigraphAdapter frozen = (graph instanceof IntDigraphAdapter)
+                ? (IntDigraphAdapter) graph : IntDigraphAdapter.freeze(graph);
+        int[][] cycles = cycles(frozen.getCore());
+        // the frozen vertices are in ascending id order, so mapping keeps each cycle sorted
+        for (int[] cycle : cycles) {
+            for (int i = 0; i < cycle.length; i++) {
+                cycle[i] = frozen.node(cycle[i]).getId();
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Orders every vertex, cycles included: each component is collapsed
+     * into one super-node, the condensation (which has no cycles) is
+     * sorted with Kahn's algorithm, and the components are expanded back
+     * in that order with their members by id. Like
+     * IntDigraph.topologicalOrder(), the queue is FIFO, seeded by lowest
+     * member, so on a graph without cycles the two orders are the same.
+     * @param graph the graph
+     * @return all the vertices; every edge between two components goes forward
+     */
+    public static int[] condensationOrder(IntDigraph graph) {
+        return condensationOrder(graph, componentOf(graph));
+    }
+
+    /**
+     * Orders every vertex with the components already found (see
+     * condensationOrder(IntDigraph)).
+     * @param graph the graph
+     * @param component the component number of each vertex, from componentOf()
+     * @return all the vertices; every edge between two components goes forward
+     */
+    public static int[] condensationOrder(IntDigraph graph, int[] component) {
+        // O(V + E)
+        int n = component.length;
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            count = Math.max(count, component[v] + 1);
+        }
+
+        // members of each component, by id: a counting sort on component
+        int[] start = new int[count + 1];
+        for (int v = 0; v < n; v++) {
+            start[component[v] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] members = new int[n];
+        int[] fill = Arrays.copyOf(start, count);
+        for (int v = 0; v < n; v++) {
+            members[fill[component[v]]++] = v;
+        }
+
+        // in-degree of each super-node, counting every edge that enters it
+        int[] remaining = new int[count];
+        for (int u = 0; u < n; u++) {
+            for (int e = graph.outBegin(u), end = graph.outEnd(u); e < end; e++) {
+                if (component[graph.target(e)] != component[u]) {
+                    remaining[component[graph.target(e)]]++;
+                }
+            }
+        }
+
+        // Kahn over the super-nodes, first in first out
+        int[] queue = new int[count];
+        int tail = 0;
+        for (int v = 0; v < n; v++) {
+            int c = component[v];
+            if (remaining[c] == 0 && members[start[c]] == v) {
+                queue[tail++] = c;
+            }
+        }
+        int[] order = new int[n];
+        int placed = 0;
+        for (int head = 0; head < tail; head++) {
+            int c = queue[head];
+            for (int i = start[c]; i < start[c + 1]; i++) {
+                int u = members[i];
+                order[placed++] = u;
+                for (int e = graph.outBegin(u), end = graph.outEnd(u); e < end; e++) {
+                    int d = component[graph.target(e)];
+                    if (d != c && --remaining[d] == 0) {
+                        queue[tail++] = d;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Collects the vertices of each component.
+     * @param component the component number of each vertex
+     * @param minSize smallest component to keep
+     * @return the components, each sorted by vertex, ordered by their lowest vertex
+     */
+    private static int[][] group(int[] component, int minSize) {
+        // O(V)
+        int n = component.length;
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            count = Math.max(count, component[v] + 1);
+        }
+        int[] size = new int[count];
+        for (int v = 0; v < n; v++) {
+            size[component[v]]++;
+        }
+        for (int c = 0; c < count; c++) {
+            if (size[c] < minSize) {
+                size[c] = 0;
+            }
+        }
+
+        // number the kept components by their first (lowest) vertex
+        int[] slot = new int[count];
+        Arrays.fill(slot, -1);
+        int kept = 0;
+        for (int v = 0; v < n; v++) {
+            if (size[component[v]] > 0 && slot[component[v]] == -1) {
+                slot[component[v]] = kept++;
+            }
+        }
+        int[][] result = new int[kept][];
+        int[] fill = new int[kept];
+        for (int v = 0; v < n; v++) {
+            int c = component[v];
+            if (size[c] > 0) {
+                if (result[slot[c]] == null) {
+                    result[slot[c]] = new int[size[c]];
+                }
+                result[slot[c]][fill[slot[c]]++] = v;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        // 0-->1 1-->2 2-->0 2-->3 3-->4 4-->5 5-->3 5-->6, and 7 on its own
+        IntDigraph small = new IntDigraph(8, new int[] {0, 1, 2, 2, 3, 4, 5, 5},
+                new int[] {1, 2, 0, 3, 4, 5, 3, 6});
+        int[] component = componentOf(small);
+        if (Arrays.deepToString(cycles(small)).equals("[[0, 1, 2], [3, 4, 5]]")
+                && components(small).length == 4 && component[0] > component[3] && component[3] > component[6]) {
+            System.out.println("Yay 1");
+        }
+
+        // a DAG has no cycles, and every vertex is its own component
+        IntDigraph dag = new IntDigraph(6, new int[] {5, 5, 4, 4, 2, 3}, new int[] {2, 0, 0, 1, 3, 1});
+        if (cycles(dag).length == 0 && components(dag).length == 6) {
+            System.out.println("Yay 2");
+        }
+
+        // through GraphNodes with gaps in the ids: 10-->20 20-->10 20-->30
+        SparseThreeTenGraph sparse = new SparseThreeTenGraph();
+        GraphNode[] nodes = new GraphNode[4];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(10 * i);
+            sparse.addVertex(nodes[i]);
+        }
+        sparse.addEdge(new GraphEdge(0), nodes[1], nodes[2]);
+        sparse.addEdge(new GraphEdge(1), nodes[2], nodes[1]);
+        sparse.addEdge(new GraphEdge(2), nodes[2], nodes[3]);
+        if (Arrays.deepToString(cycles(sparse)).equals("[[10, 20]]")) {
+            System.out.println("Yay 3");
+        }
+
+        // one cycle through a million vertices (a path that deep would overflow
+        // a recursive search), plus a million-vertex DAG hanging off it
+        int n = 1000000;
+        int[] from = new int[2 * n];
+        int[] to = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            from[i] = i;
+            to[i] = (i + 1) % n;
+            from[n + i] = (i == 0) ? 0 : n + i - 1;
+            to[n + i] = n + i;
+        }
+        IntDigraph big = new IntDigraph(2 * n, from, to);
+        cycles(big);// warm up
+        long begin = System.nanoTime();
+        int[][] bigCycles = cycles(big);
+        long millis = (System.nanoTime() - begin) / 1000000;
+        if (bigCycles.length == 1 && bigCycles[0].length == n && bigCycles[0][n - 1] == n - 1) {
+            System.out.println("Yay 4 (" + (2 * n) + " vertices in " + millis + " ms)");
+        }
+
+        // the condensation of the first graph: {0, 1, 2} and 7 first, then {3, 4, 5}, then 6
+        if (Arrays.toString(condensationOrder(small)).equals("[0, 1, 2, 7, 3, 4, 5, 6]")
+                && Arrays.equals(condensationOrder(dag), dag.topologicalOrder())) {
+            System.out.println("Yay 5");
+        }
+
+        // every vertex of the big graph is ordered, and edges between components go forward
+        int[] bigComponent = componentOf(big);
+        begin = System.nanoTime();
+        int[] all = condensationOrder(big, bigComponent);
+        millis = (System.nanoTime() - begin) / 1000000;
+        int[] position = new int[2 * n];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < all.length; i++) {
+            position[all[i]] = i;
+        }
+        boolean forward = all.length == 2 * n;
+        for (int u = 0; u < 2 * n; u++) {
+            forward &= position[u] >= 0;
+            for (int e = big.outBegin(u); e < big.outEnd(u); e++) {
+                int w = big.target(e);
+                forward &= bigComponent[u] == bigComponent[w] || position[u] < position[w];
+            }
+        }
+        if (forward && position[n - 1] == n - 1 && position[n] == n) {
+            System.out.println("Yay 6 (" + millis + " ms)");
+        }
+    }
+}
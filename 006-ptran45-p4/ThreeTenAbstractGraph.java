@@ -0,0 +1,644 @@
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.DirectedGraph;
+
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.graph.util.EdgeType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.function.IntConsumer;
+
+/**
+ * ThreeTenAbstractGraph provides default implementations for
+ * the easy methods in the Graph and DirectedGraph interfaces.
+ * Subclasses supply the storage (vertices, edges, adjacency and the
+ * edge endpoints) and everything else is derived from those.
+ * Like ThreeTenGraph, only directed edges are allowed, there are no
+ * parallel edges and no self-loops, and the neighbors of a vertex
+ * are its successors.
+ * @author Phat Tran
+ */
+abstract class ThreeTenAbstractGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphNode, GraphEdge> {
+
+    /**
+     * Returns a view of all edges in this graph.
+     * @return a Collection view of all edges in this graph
+     */
+    public abstract Collection<GraphEdge> getEdges();
+
+    /**
+     * Returns a view of all vertices in this graph.
+     * @return a Collection view of all vertices in this graph
+     */
+    public abstract Collection<GraphNode> getVertices();
+
+    /**
+     * Returns the number of edges in this graph.
+     * @return the number of edges in this graph
+     */
+    public abstract int getEdgeCount();
+
+    /**
+     * Returns the number of vertices in this graph.
+     * @return the number of vertices in this graph
+     */
+    public abstract int getVertexCount();
+
+    /**
+     * Returns true if this graph's vertex collection contains vertex.
+     * @param vertex the vertex whose presence is being queried
+     * @return true iff this graph contains a vertex vertex
+     */
+    public abstract boolean containsVertex(GraphNode vertex);
+
+    /**
+     * Returns a Collection view of the incoming edges incident to vertex.
+     * @param vertex the vertex whose incoming edges are to be returned
+     * @return a Collection view of the incoming edges incident
+     *         to vertex in this graph.
+     */
+    public abstract Collection<GraphEdge> getInEdges(GraphNode vertex);
+
+    /**
+     * Returns a Collection view of the outgoing edges incident to vertex.
+     * @param vertex the vertex whose outgoing edges are to be returned
+     * @return a Collection view of the outgoing edges incident
+     *         to vertex in this graph.
+     */
+    public abstract Collection<GraphEdge> getOutEdges(GraphNode vertex);
+
+    /**
+     * Returns the number of incoming edges incident to vertex.
+     * @param vertex the vertex whose indegree is to be calculated
+     * @return the number of incoming edges incident to vertex
+     */
+    public abstract int inDegree(GraphNode vertex);
+
+    /**
+     * Returns the number of outgoing edges incident to vertex.
+     * @param vertex the vertex whose outdegree is to be calculated
+     * @return the number of outgoing edges incident to vertex
+     */
+    public abstract int outDegree(GraphNode vertex);
+
+    /**
+     * Returns a Collection view of the predecessors of vertex.
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return a Collection view of the predecessors of
+     *         vertex in this graph.
+     */
+    public abstract Collection<GraphNode> getPredecessors(GraphNode vertex);
+
+    /**
+     * Returns a Collection view of the successors of vertex.
+     * @param vertex the vertex whose successors are to be returned
+     * @return a Collection view of the successors of
+     *         vertex in this graph.
+     */
+    public abstract Collection<GraphNode> getSuccessors(GraphNode vertex);
+
+    /**
+     * If directedEdge is an edge in this graph, returns the source.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the source of directedEdge, or null if it is not in this graph
+     */
+    public abstract GraphNode getSource(GraphEdge directedEdge);
+
+    /**
+     * If directedEdge is an edge in this graph, returns the destination.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the destination of directedEdge, or null if it is not in this graph
+     */
+    public abstract GraphNode getDest(GraphEdge directedEdge);
+
+    /**
+     * Returns the edge that connects v1 to v2.
+     * @param v1 first vertex
+     * @param v2 second vertex
+     * @return an edge that connects v1 to v2
+     *         or null if no such edge exists (or either vertex is not present).
+     */
+    public abstract GraphEdge findEdge(GraphNode v1, GraphNode v2);
+
+    /**
+     * Adds vertex to this graph.
+     * @param vertex the vertex to add
+     * @return true if the add is successful, and false otherwise
+     * @throws IllegalArgumentException if vertex is null
+     */
+    public abstract boolean addVertex(GraphNode vertex);
+
+    /**
+     * Adds edge e to this graph such that it connects vertex v1 to v2.
+     * @param e  the edge to be added
+     * @param v1 the first vertex to be connected
+     * @param v2 the second vertex to be connected
+     * @return true if the add is successful, false otherwise
+     * @throws IllegalArgumentException if v1 or v2 is not in this graph
+     */
+    public abstract boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2);
+
+    /**
+     * Removes vertex (and every edge incident to it) from this graph.
+     * @param vertex the vertex to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public abstract boolean removeVertex(GraphNode vertex);
+
+    /**
+     * Removes edge from this graph.
+     * @param edge the edge to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public abstract boolean removeEdge(GraphEdge edge);
+
+    /**
+     * Adds many edges at once: edges[i] connects sources[i] to dests[i].
+     * Every vertex is checked before anything is added, so if one of them is
+     * not in the graph the graph is left unchanged; after that each edge is
+     * added (or skipped) exactly like addEdge() would.
+     * Subclasses override this when they can load a batch faster.
+     * @param edges the edges to be added
+     * @param sources the first vertex of each edge
+     * @param dests the second vertex of each edge
+     * @return the number of edges added
+     * @throws IllegalArgumentException if the arrays are null or have different
+     *                                  lengths, or a vertex is not in the graph
+     */
+    public int addEdges(GraphEdge[] edges, GraphNode[] sources, GraphNode[] dests) {
+        if (edges == null || sources == null || dests == null
+                || edges.length != sources.length || edges.length != dests.length) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < edges.length; i++) {
+            if ((sources[i] != null && !containsVertex(sources[i]))
+                    || (dests[i] != null && !containsVertex(dests[i]))) {
+                throw new IllegalArgumentException();
+            }
+        }
+        int added = 0;
+        for (int i = 0; i < edges.length; i++) {
+            if (addEdge(edges[i], sources[i], dests[i])) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Removes every edge of edges that is in this graph.
+     * Edges that are not in the graph (or appear twice) are skipped.
+     * Subclasses override this when they can prune a batch faster.
+     * @param edges the edges to remove
+     * @return the number of edges removed
+     */
+    public int removeEdges(Collection<? extends GraphEdge> edges) {
+        if (edges == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (GraphEdge e : edges) {
+            if (removeEdge(e)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every vertex of vertices that is in this graph, together with
+     * all their incident edges.
+     * Subclasses override this when they can prune a batch faster.
+     * @param vertices the vertices to remove
+     * @return the number of vertices removed
+     */
+    public int removeVertices(Collection<? extends GraphNode> vertices) {
+        if (vertices == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (GraphNode v : vertices) {
+            if (removeVertex(v)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Compacts this graph into an immutable CSR snapshot that can be shared
+     * between threads and sorted repeatedly (see IntDigraphAdapter.freeze()).
+     * @return the snapshot
+     */
+    public IntDigraphAdapter freeze() {
+        return IntDigraphAdapter.freeze(this);
+    }
+
+    /**
+     * Returns true if v1 is a predecessor of v2 in this graph.
+     * @param v1 the first vertex to be queried
+     * @param v2 the second vertex to be queried
+     * @return true if v1 is a predecessor of v2, and false otherwise
+     */
+    public boolean isPredecessor(GraphNode v1, GraphNode v2) {
+        if ((v1 == null) || (v2 == null)) {
+            return false;
+        }
+        return findEdge(v1, v2) != null;
+    }
+
+    /**
+     * Returns true if v1 is a successor of v2 in this graph.
+     * @param v1 the first vertex to be queried
+     * @param v2 the second vertex to be queried
+     * @return true if v1 is a successor of v2, and false otherwise
+     */
+    public boolean isSuccessor(GraphNode v1, GraphNode v2) {
+        if ((v1 == null) || (v2 == null)) {
+            return false;
+        }
+        return findEdge(v2, v1) != null;
+    }
+
+    /**
+     * Returns the collection of vertices which are connected to vertex
+     * by an outgoing edge (the same as ThreeTenGraph).
+     * @param vertex the vertex whose neighbors are to be returned
+     * @return the collection of vertices which are connected to vertex,
+     *         or null if vertex is not present.
+     */
+    public Collection<GraphNode> getNeighbors(GraphNode vertex) {
+        return getSuccessors(vertex);
+    }
+
+    /**
+     * Returns the number of vertices that are adjacent to vertex.
+     * Equivalent to getNeighbors(vertex).size().
+     * @param vertex the vertex whose neighbor count is to be returned
+     * @return the number of neighboring vertices
+     */
+    public int getNeighborCount(GraphNode vertex) {
+        return outDegree(vertex);
+    }
+
+    /**
+     * Returns true if vertex and edge are incident to each other.
+     * @param vertex vertex
+     * @param edge edge
+     * @return true if vertex and edge are incident to each other.
+     */
+    public boolean isIncident(GraphNode vertex, GraphEdge edge) {
+        if ((vertex == null) || (edge == null)) {
+            return false;
+        }
+        return vertex.equals(getSource(edge)) || vertex.equals(getDest(edge));
+    }
+
+    /**
+     * Returns the number of edges incident to vertex.
+     * @param vertex the vertex whose degree is to be returned
+     * @return the degree of this node
+     */
+    public int degree(GraphNode vertex) {
+        return inDegree(vertex) + outDegree(vertex);
+    }
+
+    /**
+     * Returns true if v1 and v2 share an incident edge.
+     * @param v1 the first vertex to test
+     * @param v2 the second vertex to test
+     * @return true if v1 and v2 share an incident edge
+     */
+    public boolean isNeighbor(GraphNode v1, GraphNode v2) {
+        return isPredecessor(v1, v2) || isPredecessor(v2, v1);
+    }
+
+    /**
+     * Returns the endpoints of edge.
+     * @param edge the edge whose endpoints are to be returned
+     * @return the endpoints (incident vertices) of edge, or null if edge is not present
+     */
+    public Pair<GraphNode> getEndpoints(GraphEdge edge) {
+        GraphNode v1 = getSource(edge);
+        if (v1 == null) {
+            return null;
+        }
+        return new Pair<>(v1, getDest(edge));
+    }
+
+    /**
+     * Returns the collection of edges in this graph which are connected to vertex.
+     * @param vertex the vertex whose incident edges are to be returned
+     * @return the collection of edges which are connected to vertex or null if vertex is not present
+     */
+    public Collection<GraphEdge> getIncidentEdges(GraphNode vertex) {
+        if (!containsVertex(vertex)) {
+            return null;
+        }
+        LinkedList<GraphEdge> ret = new LinkedList<>();
+        ret.addAll(getInEdges(vertex));
+        ret.addAll(getOutEdges(vertex));
+        return ret;
+    }
+
+    /**
+     * Returns the collection of vertices in this graph which are connected to edge.
+     * @param edge the edge whose incident vertices are to be returned
+     * @return the collection of vertices which are connected to edge or null if edge is not present
+     */
+    public Collection<GraphNode> getIncidentVertices(GraphEdge edge) {
+        Pair<GraphNode> p = getEndpoints(edge);
+        if (p == null) {
+            return null;
+        }
+        LinkedList<GraphNode> ret = new LinkedList<>();
+        ret.add(p.getFirst());
+        ret.add(p.getSecond());
+        return ret;
+    }
+
+    /**
+     * Returns true if this graph's edge collection contains edge.
+     * @param edge the edge whose presence is being queried
+     * @return true iff this graph contains an edge edge
+     */
+    public boolean containsEdge(GraphEdge edge) {
+        return getSource(edge) != null;
+    }
+
+    /**
+     * Returns the collection of edges in this graph which are of type edgeType.
+     * @param edgeType the type of edges to be returned
+     * @return the collection of edges which are of type edgeType or null if the graph does not accept edges of this type
+     */
+    public Collection<GraphEdge> getEdges(EdgeType edgeType) {
+        if (edgeType == EdgeType.DIRECTED) {
+            return getEdges();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of edges of type edgeType in this graph.
+     * @param edgeType the type of edge for which the count is to be returned
+     * @return the number of edges of type edgeType in this graph
+     */
+    public int getEdgeCount(EdgeType edgeType) {
+        if (edgeType == EdgeType.DIRECTED) {
+            return getEdgeCount();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of predecessors that vertex has in this graph.
+     * @param vertex the vertex whose predecessor count is to be returned
+     * @return the number of predecessors that vertex has in this graph
+     */
+    public int getPredecessorCount(GraphNode vertex) {
+        return inDegree(vertex);
+    }
+
+    /**
+     * Returns the number of successors that vertex has in this graph.
+     * @param vertex the vertex whose successor count is to be returned
+     * @return the number of successors that vertex has in this graph
+     */
+    public int getSuccessorCount(GraphNode vertex) {
+        return outDegree(vertex);
+    }
+
+    /**
+     * Returns the vertex at the other end of edge from vertex.
+     * @param vertex the vertex to be queried
+     * @param edge   the edge to be queried
+     * @return the vertex at the other end of edge from vertex, or null
+     */
+    public GraphNode getOpposite(GraphNode vertex, GraphEdge edge) {
+        GraphNode source = getSource(edge);
+        if (source == null || vertex == null) {
+            return null;
+        }
+        GraphNode dest = getDest(edge);
+        if (source.equals(vertex)) {
+            return dest;
+        } else if (dest.equals(vertex)) {
+            return source;
+        }
+        return null;
+    }
+
+    /**
+     * Returns all edges that connects v1 to v2.
+     * @param v1 vertex1
+     * @param v2 vertex2
+     * @return a collection containing all edges that connect v1 to v2 or null if there are none
+     */
+    public Collection<GraphEdge> findEdgeSet(GraphNode v1, GraphNode v2) {
+        GraphEdge edge = findEdge(v1, v2);
+        if (edge == null) {
+            return null;
+        }
+        LinkedList<GraphEdge> ret = new LinkedList<>();
+        ret.add(edge);
+        return ret;
+    }
+
+    /**
+     * Returns true if vertex is the source of edge.
+     * @param vertex the vertex to be queried
+     * @param edge   the edge to be queried
+     * @return true iff vertex is the source of edge
+     */
+    public boolean isSource(GraphNode vertex, GraphEdge edge) {
+        GraphNode source = getSource(edge);
+        return source != null && source.equals(vertex);
+    }
+
+    /**
+     * Returns true if vertex is the destination of edge.
+     * @param vertex the vertex to be queried
+     * @param edge   the edge to be queried
+     * @return true iff vertex is the destination of edge
+     */
+    public boolean isDest(GraphNode vertex, GraphEdge edge) {
+        GraphNode dest = getDest(edge);
+        return dest != null && dest.equals(vertex);
+    }
+
+    /**
+     * Adds edge e to this graph such that it connects vertex v1 to v2.
+     * @param e        the edge to be added
+     * @param v1       the first vertex to be connected
+     * @param v2       the second vertex to be connected
+     * @param edgeType the type to be assigned to the edge
+     * @return true if the add is successful, false otherwise
+     * @throws IllegalArgumentException if edgeType is UNDIRECTED
+     */
+    public boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2, EdgeType edgeType) {
+        if (edgeType == EdgeType.UNDIRECTED) {
+            throw new IllegalArgumentException();
+        }
+        return addEdge(e, v1, v2);
+    }
+
+    /**
+     * Adds edge to this graph.
+     * @param edge edge
+     * @param vertices the source and destination of edge, in that order
+     * @return true if the add is successful, and false otherwise
+     */
+    public boolean addEdge(GraphEdge edge, Collection<? extends GraphNode> vertices) {
+        if (edge == null || vertices == null || vertices.size() != 2) {
+            return false;
+        }
+        Iterator<? extends GraphNode> it = vertices.iterator();
+        GraphNode v1 = it.next();
+        return addEdge(edge, v1, it.next());
+    }
+
+    /**
+     * Adds edge to this graph with type edgeType.
+     * @param edge edge
+     * @param vertices the source and destination of edge, in that order
+     * @param edgeType edge type
+     * @return true if the add is successful, and false otherwise
+     * @throws IllegalArgumentException if edgeType is UNDIRECTED
+     */
+    public boolean addEdge(GraphEdge edge, Collection<? extends GraphNode> vertices, EdgeType edgeType) {
+        if (edgeType == EdgeType.UNDIRECTED) {
+            throw new IllegalArgumentException();
+        }
+        return addEdge(edge, vertices);
+    }
+
+    /**
+     * Returns the edge type of edge in this graph.
+     * @param edge edge
+     * @return the EdgeType of edge
+     */
+    public EdgeType getEdgeType(GraphEdge edge) {
+        return EdgeType.DIRECTED;
+    }
+
+    /**
+     * Returns the default edge type for this graph.
+     * @return the default edge type for this graph
+     */
+    public EdgeType getDefaultEdgeType() {
+        return EdgeType.DIRECTED;
+    }
+
+    /**
+     * Returns the number of vertices that are incident to edge.
+     * @param edge the edge whose incident vertex count is to be returned
+     * @return the number of vertices that are incident to edge.
+     */
+    public int getIncidentCount(GraphEdge edge) {
+        return 2;
+    }
+
+    /**
+     * Returns a string of the depth first traversal of the graph, in the
+     * same way as ThreeTenGraph: every round starts from the first vertex
+     * (in getVertices() order) that has not been visited yet and neighbors
+     * are visited in getSuccessors() order. Subclasses that iterate by
+     * ascending id produce exactly the ThreeTenGraph traversal.
+     * @return a string representation of the depth first traversal, or an empty
+     *         string if the graph is empty.
+     */
+    public String depthFirstTraversal() {
+        StringBuilder string = new StringBuilder();
+        depthFirstTraversal(appender(string));
+        return string.toString();
+    }
+
+    /**
+     * Writes the depth first traversal (see depthFirstTraversal()) to out
+     * as it goes: ids separated by single spaces.
+     * @param out where to write
+     * @throws IOException if out throws
+     */
+    public void depthFirstTraversal(Appendable out) throws IOException {
+        try {
+            depthFirstTraversal(appender(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Hands the ids of the depth first traversal (see depthFirstTraversal())
+     * to visit, in order. Iterative, so long chains do not overflow the stack.
+     * @param visit receives each vertex id once
+     */
+    public void depthFirstTraversal(IntConsumer visit) {
+        // O(V + E), one successor iterator per vertex on the current path
+        BitSet visited = new BitSet();
+        ArrayDeque<Iterator<GraphNode>> stack = new ArrayDeque<>();
+
+        for (GraphNode root : getVertices()) {
+            if (visited.get(root.getId())) {
+                continue;
+            }
+            visited.set(root.getId());
+            visit.accept(root.getId());
+            stack.push(getSuccessors(root).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<GraphNode> it = stack.peek();
+                if (!it.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                GraphNode node = it.next();
+                if (!visited.get(node.getId())) {
+                    visited.set(node.getId());
+                    visit.accept(node.getId());
+                    stack.push(getSuccessors(node).iterator());
+                }
+            }
+        }
+    }
+
+    /**
+     * Wraps out as an IntConsumer that writes the ids it is given separated
+     * by single spaces. IOExceptions come out as UncheckedIOException.
+     * @param out where to write
+     * @return the consumer
+     */
+    static IntConsumer appender(final Appendable out) {
+        return new IntConsumer() {
+            private boolean first = true;
+
+            public void accept(int id) {
+                try {
+                    if (!first) {
+                        out.append(' ');
+                    }
+                    first = false;
+                    if (out instanceof StringBuilder) {
+                        ((StringBuilder) out).append(id);// no String per id
+                    } else {
+                        out.append(Integer.toString(id));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return depthFirstTraversal();
+    }
+}
@@ -6,9 +6,17 @@ import edu.uci.ics.jung.graph.util.EdgeType;
 
 import org.apache.commons.collections15.Factory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
 
 /**
  * creating a Graph.
@@ -29,6 +37,34 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * list of edges.
      */
     private GraphEdge[][] matrix = null;
+    /**
+     * edges in the graph, indexed by edge id.
+     */
+    private GraphEdge[] edgeList = null;
+    /**
+     * source vertex id of each edge, indexed by edge id.
+     */
+    private int[] edgeSource = null;
+    /**
+     * destination vertex id of each edge, indexed by edge id.
+     */
+    private int[] edgeDest = null;
+    /**
+     * number of incoming edges of each vertex.
+     */
+    private int[] inCount = null;
+    /**
+     * number of outgoing edges of each vertex.
+     */
+    private int[] outCount = null;
+    /**
+     * number of vertices in the graph.
+     */
+    private int vertexCount = 0;
+    /**
+     * number of edges in the graph.
+     */
+    private int edgeCount = 0;
 
     /**
      * constructor.
@@ -36,6 +72,48 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
     public ThreeTenGraph() {
         vertexList = new GraphNode[MAX_NUMBER_OF_NODES];
         matrix = new GraphEdge[MAX_NUMBER_OF_NODES][MAX_NUMBER_OF_NODES];
+        edgeList = new GraphEdge[MAX_NUMBER_OF_NODES];
+        edgeSource = new int[MAX_NUMBER_OF_NODES];
+        edgeDest = new int[MAX_NUMBER_OF_NODES];
+        inCount = new int[MAX_NUMBER_OF_NODES];
+        outCount = new int[MAX_NUMBER_OF_NODES];
+    }
+
+    /**
+     * Returns the id of edge if edge is in the graph.
+     * @param edge edge
+     * @return the id of edge, or -1 if edge is not in the graph
+     */
+    private int edgeIndex(GraphEdge edge) {
+        // O(1)
+        if (edge == null) {
+            return -1;
+        }
+        int id = edge.getId();
+        if (id < 0 || id >= edgeList.length || edgeList[id] == null) {
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Records edge in the edge index.
+     * @param edge the new edge
+     * @param start source vertex id
+     * @param end destination vertex id
+     */
+    private void indexEdge(GraphEdge edge, int start, int end) {
+        // amortized O(1)
+        int id = edge.getId();
+        if (id >= edgeList.length) {
+            int capacity = Math.max(id + 1, edgeList.length * 2);
+            edgeList = Arrays.copyOf(edgeList, capacity);
+            edgeSource = Arrays.copyOf(edgeSource, capacity);
+            edgeDest = Arrays.copyOf(edgeDest, capacity);
+        }
+        edgeList[id] = edge;
+        edgeSource[id] = start;
+        edgeDest[id] = end;
     }
 
     /**
@@ -46,18 +124,20 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return a Collection view of all edges in this graph
      */
     public Collection<GraphEdge> getEdges() {
-        // O(n^2) where n is the max number of nodes in the graph
-        // Hint: this method returns a Collection, look at the imports for
-        // what collections you could return here.
-        LinkedList<GraphEdge> edges = new LinkedList<GraphEdge>();
-        for (int startVertex = 0; startVertex < MAX_NUMBER_OF_NODES; startVertex++) {
-            for (int endVertex = 0; endVertex < MAX_NUMBER_OF_NODES; endVertex++) {
-                if (matrix[startVertex][endVertex] != null) {
-                    edges.add(matrix[startVertex][endVertex]);// store edges in the linkedlist
-                }
+        // O(1), a read-only view that walks the matrix rows which have edges
+        return new MatrixView<GraphEdge>(0, MAX_NUMBER_OF_NODES, 0, MAX_NUMBER_OF_NODES) {
+            GraphEdge map(int startVertex, int endVertex) {
+                return matrix[startVertex][endVertex];
             }
-        }
-        return edges;
+
+            public int size() {
+                return edgeCount;
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof GraphEdge) && containsEdge((GraphEdge) o);
+            }
+        };
     }
 
     /**
@@ -67,16 +147,42 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return a Collection view of all vertices in this graph
      */
     public Collection<GraphNode> getVertices() {
-        // O(n) where n is the max number of nodes in the graph
-        // Hint: this method returns a Collection, look at the imports for
-        // what collections you could return here.
-        LinkedList<GraphNode> nodes = new LinkedList<GraphNode>();
-        for (int i = 0; i < MAX_NUMBER_OF_NODES; i++) {
-            if (vertexList[i] != null) {
-                nodes.add(vertexList[i]);// store nodes in the linkedlist
+        // O(1), a read-only view that walks vertexList
+        return new AbstractCollection<GraphNode>() {
+            public Iterator<GraphNode> iterator() {
+                return new Iterator<GraphNode>() {
+                    private int next = advance(0);
+
+                    private int advance(int i) {
+                        while (i < MAX_NUMBER_OF_NODES && vertexList[i] == null) {
+                            i++;
+                        }
+                        return i;
+                    }
+
+                    public boolean hasNext() {
+                        return next < MAX_NUMBER_OF_NODES;
+                    }
+
+                    public GraphNode next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        GraphNode vertex = vertexList[next];
+                        next = advance(next + 1);
+                        return vertex;
+                    }
+                };
             }
-        }
-        return nodes;
+
+            public int size() {
+                return vertexCount;
+            }
+
+            public boolean contains(Object o) {
+                return (o instanceof GraphNode) && containsVertex((GraphNode) o);
+            }
+        };
     }
 
     /**
@@ -84,8 +190,8 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return the number of edges in this graph
      */
     public int getEdgeCount() {
-        // O(n^2) where n is the max number of nodes in the graph
-        GraphEdge.edgeCount = getEdges().size();
+        // O(1)
+        GraphEdge.edgeCount = edgeCount;
         return GraphEdge.edgeCount;
     }
 
@@ -94,8 +200,8 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return the number of vertices in this graph
      */
     public int getVertexCount() {
-        // O(n) where n is the max number of vertices in the graph
-        GraphNode.nodeCount = getVertices().size();
+        // O(1)
+        GraphNode.nodeCount = vertexCount;
         return GraphNode.nodeCount;
     }
 
@@ -127,17 +233,20 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         to vertex in this graph.
      */
     public Collection<GraphEdge> getInEdges(GraphNode vertex) {
-        // O(n) where n is the max number of vertices in the graph
+        // O(1), a read-only view of the vertex's column
         if (vertex == null) {
             return null;
         }
-        LinkedList<GraphEdge> incomingEdge = new LinkedList<GraphEdge>();
-        for (int startVertex = 0; startVertex < MAX_NUMBER_OF_NODES; startVertex++) {
-            if (matrix[startVertex][vertex.getId()] != null) {
-                incomingEdge.add(matrix[startVertex][vertex.getId()]);
+        final int id = vertex.getId();
+        return new MatrixView<GraphEdge>(0, MAX_NUMBER_OF_NODES, id, id + 1) {
+            GraphEdge map(int startVertex, int endVertex) {
+                return matrix[startVertex][endVertex];
             }
-        }
-        return incomingEdge;
+
+            public int size() {
+                return inCount[id];
+            }
+        };
     }
 
     /**
@@ -148,17 +257,20 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         to vertex in this graph.
      */
     public Collection<GraphEdge> getOutEdges(GraphNode vertex) {
-        // O(n) where n is the max number of vertices in the graph
+        // O(1), a read-only view of the vertex's row
         if (vertex == null) {
             return null;
         }
-        LinkedList<GraphEdge> outgoingEdge = new LinkedList<GraphEdge>();
-        for (int endVertex = 0; endVertex < MAX_NUMBER_OF_NODES; endVertex++) {
-            if (matrix[vertex.getId()][endVertex] != null) {
-                outgoingEdge.add(matrix[vertex.getId()][endVertex]);
+        final int id = vertex.getId();
+        return new MatrixView<GraphEdge>(id, id + 1, 0, MAX_NUMBER_OF_NODES) {
+            GraphEdge map(int startVertex, int endVertex) {
+                return matrix[startVertex][endVertex];
             }
-        }
-        return outgoingEdge;
+
+            public int size() {
+                return outCount[id];
+            }
+        };
     }
 
     /**
@@ -168,11 +280,11 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return the number of incoming edges incident to vertex
      */
     public int inDegree(GraphNode vertex) {
-        // O(n) where n is the max number of vertices in the graph
+        // O(1), kept up to date by addEdge/removeEdge/removeVertex
         if (vertex == null) {
             return 0;
         }
-        return getInEdges(vertex).size();
+        return inCount[vertex.getId()];
     }
 
     /**
@@ -182,11 +294,11 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return the number of outgoing edges incident to vertex
      */
     public int outDegree(GraphNode vertex) {
-        // O(n) where n is the max number of vertices in the graph
+        // O(1), kept up to date by addEdge/removeEdge/removeVertex
         if (vertex == null) {
             return 0;
         }
-        return getOutEdges(vertex).size();
+        return outCount[vertex.getId()];
     }
 
     /**
@@ -200,18 +312,21 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         vertex in this graph.
      */
     public Collection<GraphNode> getPredecessors(GraphNode vertex) {
-        // O(n) where n is the max number of vertices in the graph
+        // O(1), a read-only view of the vertex's column
         if (vertex == null) {
             return null;
         }
-        LinkedList<GraphNode> predecessor = new LinkedList<GraphNode>();
-        for (int startVertex = 0; startVertex < MAX_NUMBER_OF_NODES; startVertex++) {
-            // check for outgoing edges for vertex v, which is predecessor of specified vertex
-            if (matrix[startVertex][vertex.getId()] != null) {
-                predecessor.add(vertexList[startVertex]);
+        final int id = vertex.getId();
+        return new MatrixView<GraphNode>(0, MAX_NUMBER_OF_NODES, id, id + 1) {
+            GraphNode map(int startVertex, int endVertex) {
+                // the start of an incoming edge is a predecessor of vertex
+                return vertexList[startVertex];
             }
-        }
-        return predecessor;
+
+            public int size() {
+                return inCount[id];
+            }
+        };
     }
 
     /**
@@ -225,18 +340,21 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         vertex in this graph.
      */
     public Collection<GraphNode> getSuccessors(GraphNode vertex) {
-        // O(n) where n is the max number of vertices in the graph
+        // O(1), a read-only view of the vertex's row
         if (vertex == null) {
             return null;
         }
-        LinkedList<GraphNode> successors = new LinkedList<GraphNode>();
-        for (int endVertex = 0; endVertex < MAX_NUMBER_OF_NODES; endVertex++) {
-            // check for incoming edges for vertex v, which is the successor for specified vertex
-            if (matrix[vertex.getId()][endVertex] != null) {
-                successors.add(vertexList[endVertex]);
+        final int id = vertex.getId();
+        return new MatrixView<GraphNode>(id, id + 1, 0, MAX_NUMBER_OF_NODES) {
+            GraphNode map(int startVertex, int endVertex) {
+                // the end of an outgoing edge is a successor of vertex
+                return vertexList[endVertex];
             }
-        }
-        return successors;
+
+            public int size() {
+                return outCount[id];
+            }
+        };
     }
 
     /**
@@ -287,19 +405,9 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         or null if vertex is not present.
      */
     public Collection<GraphNode> getNeighbors(GraphNode vertex) {
-        // O(n) where n is the max number of vertices in the graph
+        // O(1), the same view as getSuccessors()
         // NOTE: there should be no duplicate nodes in the neighbors.
-        LinkedList<GraphNode> nodes = new LinkedList<GraphNode>();
-        if (vertex == null) {
-            return null;
-        }
-        // check for outgoing edges and self-loop this time
-        for (int endVertex = 0; endVertex < MAX_NUMBER_OF_NODES; endVertex++) {
-            if (matrix[vertex.getId()][endVertex] != null) {
-                nodes.add(vertexList[endVertex]);
-            }
-        }
-        return nodes;
+        return getSuccessors(vertex);
     }
 
     /**
@@ -311,9 +419,9 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return the number of neighboring vertices
      */
     public int getNeighborCount(GraphNode vertex) {
-        // O(n) where n is the max number of vertices in the graph
+        // O(1), the neighbors are the successors
         // NOTE: Not the same as degree() since there should be no duplicate neighbors.
-        return getNeighbors(vertex).size();
+        return outDegree(vertex);
     }
 
     /**
@@ -328,21 +436,12 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         or null otherwise.
      */
     public GraphNode getSource(GraphEdge directedEdge) {
-        // O(n^2) where n is the max number of vertices in the graph
-        GraphNode vertex = null;
-        if ((directedEdge == null) || (getEdgeType(directedEdge) != EdgeType.DIRECTED)) {
+        // O(1), looked up in the edge index
+        int id = edgeIndex(directedEdge);
+        if (id == -1) {
             return null;
         }
-        for (int startVertex = 0; startVertex < MAX_NUMBER_OF_NODES; startVertex++) {
-            for (int endVertex = 0; endVertex < MAX_NUMBER_OF_NODES; endVertex++) {
-                if (matrix[startVertex][endVertex] != null) {
-                    if (matrix[startVertex][endVertex].equals(directedEdge)) {
-                        vertex = vertexList[startVertex];
-                    }
-                }
-            }
-        }
-        return vertex;
+        return vertexList[edgeSource[id]];
     }
 
     /**
@@ -358,21 +457,12 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         graph, or null otherwise.
      */
     public GraphNode getDest(GraphEdge directedEdge) {
-        // O(n^2) where n is the max number of vertices in the graph
-        GraphNode vertex = null;
-        if ((directedEdge == null) || (getEdgeType(directedEdge) != EdgeType.DIRECTED)) {
+        // O(1), looked up in the edge index
+        int id = edgeIndex(directedEdge);
+        if (id == -1) {
             return null;
         }
-        for (int startVertex = 0; startVertex < MAX_NUMBER_OF_NODES; startVertex++) {
-            for (int endVertex = 0; endVertex < MAX_NUMBER_OF_NODES; endVertex++) {
-                if (matrix[startVertex][endVertex] != null) {
-                    if (matrix[startVertex][endVertex].equals(directedEdge)) {
-                        vertex = vertexList[endVertex];
-                    }
-                }
-            }
-        }
-        return vertex;
+        return vertexList[edgeDest[id]];
     }
 
     /**
@@ -421,19 +511,8 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         are incident to each other.
      */
     public boolean isIncident(GraphNode vertex, GraphEdge edge) {
-        // O(n) where n is the max number of vertices in the graph
-        // find incoming and outcoming edges of the vertex
-        for (GraphEdge e : getInEdges(vertex)) {
-            if (e.equals(edge)) {
-                return true;
-            }
-        }
-        for (GraphEdge e : getOutEdges(vertex)) {
-            if (e.equals(edge)) {
-                return true;
-            }
-        }
-        return false;
+        // O(1)
+        return isSource(vertex, edge) || isDest(vertex, edge);
     }
 
     /**
@@ -453,15 +532,27 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @see #addEdge(Object, Object, Object, EdgeType)
      */
     public boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2) {
-        // O(n^2) where n is the max number of vertices in the graph
+        // O(1)
         // vertices is null, vertices are not in the graph
         if ((v1 == null) || (v2 == null)) {
             return false;
         }
-        if (!getVertices().contains(v1) || !getVertices().contains(v2)) {
+        if (!containsVertex(v1) || !containsVertex(v2)) {
             throw new IllegalArgumentException();
         }
-        if(v1.equals(v2)){
+        return connect(e, v1.getId(), v2.getId());
+    }
+
+    /**
+     * Adds e as the edge from start to end, given that both vertices are in the graph.
+     * @param e the edge to be added
+     * @param start the id of the first vertex
+     * @param end the id of the second vertex
+     * @return true if the add is successful, false otherwise
+     */
+    private boolean connect(GraphEdge e, int start, int end) {
+        // O(1)
+        if (start == end) {
             return false;
         }
 
@@ -473,25 +564,66 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
         if (getEdgeType(e) != EdgeType.DIRECTED) {
             return false;
         }
+        if (e.getId() < 0) {
+            throw new IllegalArgumentException();
+        }
 
-        for (GraphEdge edge : getEdges()) {
-            // if the edge already in the graph, return false
-            if (edge.equals(e)) {
-                return false;
-            }
+        // if the edge already in the graph, return false
+        if (containsEdge(e)) {
+            return false;
         }
 
         // vertices are already connected by another edge
-        if (matrix[v1.getId()][v2.getId()] != null) {
-            if (!matrix[v1.getId()][v2.getId()].equals(e)) {
-                return false;
-            }
-        }else {// vertices are not connected
-            matrix[v1.getId()][v2.getId()] = e;
+        if (matrix[start][end] != null) {
+            return false;
         }
+        // vertices are not connected
+        matrix[start][end] = e;
+        indexEdge(e, start, end);
+        outCount[start]++;
+        inCount[end]++;
+        edgeCount++;
         return true;
     }
 
+    /**
+     * Adds many edges at once: edges[i] connects sources[i] to dests[i].
+     * Every vertex is checked before anything is added, so if one of them is
+     * not in the graph the graph is left unchanged. After that, each edge is
+     * added exactly like addEdge() would (skipping nulls, self-loops, edges
+     * already in the graph or earlier in the batch, and pairs of vertices that
+     * are already connected), in a single O(k) pass over the k edges.
+     * @param edges the edges to be added
+     * @param sources the first vertex of each edge
+     * @param dests the second vertex of each edge
+     * @return the number of edges added
+     * @throws IllegalArgumentException if the arrays are null or have different
+     *                                  lengths, or a vertex is not in the graph
+     */
+    public int addEdges(GraphEdge[] edges, GraphNode[] sources, GraphNode[] dests) {
+        // O(k) where k is the number of edges in the batch
+        if (edges == null || sources == null || dests == null
+                || edges.length != sources.length || edges.length != dests.length) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < edges.length; i++) {
+            if ((sources[i] != null && !containsVertex(sources[i]))
+                    || (dests[i] != null && !containsVertex(dests[i]))) {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        int added = 0;
+        for (int i = 0; i < edges.length; i++) {
+            // the edge index doubles as the set of edge ids seen so far
+            if (sources[i] != null && dests[i] != null
+                    && connect(edges[i], sources[i].getId(), dests[i].getId())) {
+                added++;
+            }
+        }
+        return added;
+    }
+
     /**
      * Adds vertex to this graph.
      * Fails if vertex is null or already in the graph.
@@ -515,6 +647,7 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
         }
         //vertex is not in the list, now add
         vertexList[vertex.getId()] = vertex;
+        vertexCount++;
         return true;
     }
 
@@ -525,25 +658,17 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return true if the removal is successful, false otherwise
      */
     public boolean removeEdge(GraphEdge edge) {
-        // O(n^2) where n is the max number of vertices in the graph
-        if (edge == null) {
+        // O(1), the edge index gives the matrix cell directly
+        int id = edgeIndex(edge);
+        if (id == -1) {
             return false;
         }
-        if (!getEdges().contains(edge)) {
-            return false;
-        }
-        // loop matrix array
-        for (int startVertex = 0; startVertex < MAX_NUMBER_OF_NODES; startVertex++) {
-            for (int endVertex = 0; endVertex < MAX_NUMBER_OF_NODES; endVertex++) {
-                if (matrix[startVertex][endVertex] != null) {
-                    if (matrix[startVertex][endVertex].equals(edge)) {// if found edge
-                        matrix[startVertex][endVertex] = null;// remove
-                        return true;// then return true
-                    }
-                }
-            }
-        }
-        return false;
+        matrix[edgeSource[id]][edgeDest[id]] = null;// remove
+        edgeList[id] = null;
+        outCount[edgeSource[id]]--;
+        inCount[edgeDest[id]]--;
+        edgeCount--;
+        return true;
     }
 
     /**
@@ -565,26 +690,115 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
         if (vertex == null) {
             return false;
         }
-        if (!getVertices().contains(vertex)) {
+        if (!containsVertex(vertex)) {
             return false;
         }
         // incoming edges
         for (int startVertex = 0; startVertex < MAX_NUMBER_OF_NODES; startVertex++) {
             if (matrix[startVertex][vertex.getId()] != null) {
+                edgeList[matrix[startVertex][vertex.getId()].getId()] = null;
                 matrix[startVertex][vertex.getId()] = null;
+                outCount[startVertex]--;
+                edgeCount--;
             }
         }
         // outgoing edges
         for (int endVertex = 0; endVertex < MAX_NUMBER_OF_NODES; endVertex++) {
             if (matrix[vertex.getId()][endVertex] != null) {
+                edgeList[matrix[vertex.getId()][endVertex].getId()] = null;
                 matrix[vertex.getId()][endVertex] = null;
+                inCount[endVertex]--;
+                edgeCount--;
             }
         }
         // remove vertex
         vertexList[vertex.getId()] = null;
+        inCount[vertex.getId()] = 0;
+        outCount[vertex.getId()] = 0;
+        vertexCount--;
         return true;// return true if the removal is successful, false otherwise
     }
 
+    /**
+     * Removes every edge of edges that is in this graph.
+     * Edges that are not in the graph (or appear twice) are skipped.
+     * @param edges the edges to remove
+     * @return the number of edges removed
+     */
+    public int removeEdges(Collection<? extends GraphEdge> edges) {
+        // O(k) where k is the number of edges given
+        if (edges == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (GraphEdge e : edges) {
+            if (removeEdge(e)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every vertex of vertices that is in this graph, together with
+     * all their incident edges. Instead of sweeping a row and a column of the
+     * matrix per vertex, the doomed vertices are marked and the edge index is
+     * swept once, so the degree counters of the survivors are updated in the
+     * same pass.
+     * @param vertices the vertices to remove
+     * @return the number of vertices removed
+     */
+    public int removeVertices(Collection<? extends GraphNode> vertices) {
+        // O(k + E') where E' is the size of the edge index
+        if (vertices == null) {
+            return 0;
+        }
+        boolean[] doomed = new boolean[MAX_NUMBER_OF_NODES];
+        int removed = 0;
+        for (GraphNode v : vertices) {
+            if (containsVertex(v) && !doomed[v.getId()]) {
+                doomed[v.getId()] = true;
+                removed++;
+            }
+        }
+        if (removed == 0) {
+            return 0;
+        }
+        for (int id = 0; id < edgeList.length; id++) {
+            if (edgeList[id] == null) {
+                continue;
+            }
+            int start = edgeSource[id];
+            int end = edgeDest[id];
+            if (doomed[start] || doomed[end]) {
+                matrix[start][end] = null;
+                edgeList[id] = null;
+                outCount[start]--;
+                inCount[end]--;
+                edgeCount--;
+            }
+        }
+        for (int id = 0; id < MAX_NUMBER_OF_NODES; id++) {
+            if (doomed[id]) {
+                vertexList[id] = null;
+                inCount[id] = 0;
+                outCount[id] = 0;
+            }
+        }
+        vertexCount -= removed;
+        return removed;
+    }
+
+    /**
+     * Compacts this graph into an immutable CSR snapshot that can be shared
+     * between threads and sorted repeatedly (see IntDigraphAdapter.freeze()).
+     * @return the snapshot
+     */
+    public IntDigraphAdapter freeze() {
+        // O(V + E + largest id)
+        return IntDigraphAdapter.freeze(this);
+    }
+
     /**
      * Returns a string of the depth first traversal of the graph.
      * We may need to perform depth first traversal for multiple rounds until all.
@@ -598,44 +812,151 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      *         string if the graph is empty.
      */
     public String depthFirstTraversal() {
-        // O(n^2) where n is the max number of vertices in the graph
-        // Feel free to define private helpers.
-        // Recursion can be helpful.
-        // Make sure to use StringBuilder instead of String concatenation.
         StringBuilder string = new StringBuilder();
-        LinkedList<Boolean> visited = new LinkedList<Boolean>();
-        LinkedList<GraphNode> vertices = new LinkedList<GraphNode>(getVertices());
-        for (int i = 0; i < MAX_NUMBER_OF_NODES; i++) {
-            visited.add(false);
+        depthFirstTraversal(ThreeTenAbstractGraph.appender(string));
+        return string.toString();
+    }
+
+    /**
+     * Writes the depth first traversal (see depthFirstTraversal()) to out
+     * as it goes: ids separated by single spaces.
+     * @param out where to write
+     * @throws IOException if out throws
+     */
+    public void depthFirstTraversal(Appendable out) throws IOException {
+        try {
+            depthFirstTraversal(ThreeTenAbstractGraph.appender(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
 
-        for (int i = 0; i < vertices.size(); i++) {
-            if (visited.get(vertices.get(i).getId()).equals(false)) {// vertex was not visited yet
-                string.append(dftHelper(vertices.get(i), visited));
+    /**
+     * Hands the ids of the depth first traversal (see depthFirstTraversal())
+     * to visit, in order. Iterative, with the current path kept in int
+     * arrays, so nothing is allocated per vertex.
+     * @param visit receives each vertex id once
+     */
+    public void depthFirstTraversal(IntConsumer visit) {
+        // O(V^2), each row of the matrix is scanned once
+        BitSet visited = new BitSet(MAX_NUMBER_OF_NODES);
+        int[] path = new int[vertexCount];// vertices on the current path
+        int[] column = new int[vertexCount];// where to resume scanning each one's row
+
+        for (int root = 0; root < MAX_NUMBER_OF_NODES; root++) {
+            if (vertexList[root] == null || visited.get(root)) {
+                continue;
+            }
+            visited.set(root);
+            visit.accept(root);
+            int depth = 0;
+            path[0] = root;
+            column[0] = 0;
+            while (depth >= 0) {
+                // next unvisited successor, lowest id first
+                GraphEdge[] row = matrix[path[depth]];
+                int v = column[depth];
+                while (v < MAX_NUMBER_OF_NODES && (row[v] == null || visited.get(v))) {
+                    v++;
+                }
+                if (v == MAX_NUMBER_OF_NODES) {
+                    depth--;
+                    continue;
+                }
+                column[depth] = v + 1;
+                visited.set(v);
+                visit.accept(v);
+                depth++;
+                path[depth] = v;
+                column[depth] = 0;
             }
         }
-        return string.toString().trim();
     }
+
     /**
-     * helper method for depthFirstTraversal.
-     * @param vertex takes unvisited vertex
-     * @param visited keep track of visited/unvisited nodes
-     * @return string contaning nodes
+     * Read-only view over the non-null cells of a block of the matrix.
+     * Cells are visited row by row, skipping rows without edges, and
+     * the next cell is only looked up when asked for, so removing the
+     * element just returned from the graph does not break the iteration.
+     * @param <T> what each cell is reported as
      */
-    private String dftHelper(GraphNode vertex, LinkedList<Boolean> visited) {
-        StringBuilder string = new StringBuilder();
-        LinkedList<GraphNode> neighbor = new LinkedList<GraphNode>(getNeighbors(vertex));
-        visited.set(vertex.getId(), true);
-        string.append(vertex.getId());
-        string.append(" ");
-        // this loop is used to check neighbor
-        for (GraphNode node : neighbor) {
-            // starts with lowest ID neighbor
-            if (visited.get(node.getId()).equals(false)) {// vertex's neighbor was not visited yet
-                string.append(dftHelper(node, visited));
-            }
+    private abstract class MatrixView<T> extends AbstractCollection<T> {
+        /**
+         * first row of the block.
+         */
+        private final int rowStart;
+        /**
+         * one past the last row of the block.
+         */
+        private final int rowEnd;
+        /**
+         * first column of the block.
+         */
+        private final int colStart;
+        /**
+         * one past the last column of the block.
+         */
+        private final int colEnd;
+
+        /**
+         * constructor.
+         * @param rowStart first row of the block
+         * @param rowEnd one past the last row of the block
+         * @param colStart first column of the block
+         * @param colEnd one past the last column of the block
+         */
+        MatrixView(int rowStart, int rowEnd, int colStart, int colEnd) {
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.colStart = colStart;
+            this.colEnd = colEnd;
+        }
+
+        /**
+         * Converts a non-null cell into the reported element.
+         * @param startVertex row of the cell
+         * @param endVertex column of the cell
+         * @return the element
+         */
+        abstract T map(int startVertex, int endVertex);
+
+        /**
+         * {@inheritDoc}
+         */
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int row = rowStart;
+                private int col = colStart - 1;
+                private boolean found = false;
+
+                public boolean hasNext() {
+                    if (found) {
+                        return true;
+                    }
+                    col++;
+                    for (; row < rowEnd; row++, col = colStart) {
+                        if (outCount[row] == 0) {
+                            continue;
+                        }
+                        for (; col < colEnd; col++) {
+                            if (matrix[row][col] != null) {
+                                found = true;
+                                return true;
+                            }
+                        }
+                    }
+                    return false;
+                }
+
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    found = false;
+                    return map(row, col);
+                }
+            };
         }
-        return string.toString();
     }
 
     // ********************************************************************************
@@ -701,6 +1022,84 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
         if (graph.toString().trim().equals("0 1 2 7 8 9 3 6 4 5")) {
             System.out.println("Yay 3");
         }
+
+        // edge endpoints come from the edge index
+        if (graph.getSource(edges[5]) == nodes[9] && graph.getDest(edges[5]) == nodes[0]
+                && graph.isSource(nodes[9], edges[5]) && !graph.isDest(nodes[9], edges[5])
+                && graph.getOpposite(nodes[0], edges[5]) == nodes[9]) {
+            System.out.println("Yay 4");
+        }
+        if (graph.removeEdge(edges[5]) && !graph.containsEdge(edges[5]) && graph.getSource(edges[5]) == null
+                && graph.findEdge(nodes[9], nodes[0]) == null && !graph.removeEdge(edges[5])) {
+            System.out.println("Yay 5");
+        }
+
+        // degree counters follow removals
+        graph.removeVertex(nodes[1]);
+        if (graph.outDegree(nodes[0]) == 0 && graph.inDegree(nodes[2]) == 0 && graph.inDegree(nodes[8]) == 0
+                && graph.degree(nodes[2]) == 1 && graph.getPredecessorCount(nodes[7]) == 2
+                && graph.getSuccessorCount(nodes[8]) == 1 && graph.getEdgeCount() == 4) {
+            System.out.println("Yay 6");
+        }
+
+        // views are live and read-only
+        Collection<GraphNode> successors = graph.getSuccessors(nodes[8]);
+        Collection<GraphEdge> all = graph.getEdges();
+        graph.addEdge(edges[5], nodes[8], nodes[0]);
+        if (successors.size() == 2 && successors.contains(nodes[0]) && all.size() == 5
+                && graph.getVertices().size() == 9 && all.contains(edges[5])) {
+            System.out.println("Yay 7");
+        }
+        int seen = 0;
+        for (GraphEdge e : graph.getEdges()) {
+            graph.removeEdge(e);// removing the current element while iterating is fine
+            seen++;
+        }
+        if (seen == 5 && graph.getEdgeCount() == 0 && !graph.getEdges().iterator().hasNext()) {
+            System.out.println("Yay 8");
+        }
+
+        // bulk loading skips duplicates the same way addEdge() does
+        GraphEdge[] batch = {edges[0], edges[1], edges[0], edges[2], edges[3]};
+        GraphNode[] from = {nodes[0], nodes[2], nodes[3], nodes[2], nodes[4]};
+        GraphNode[] to = {nodes[2], nodes[3], nodes[4], nodes[3], nodes[4]};
+        if (graph.addEdges(batch, from, to) == 2 && graph.getEdgeCount() == 2
+                && graph.getSource(edges[0]) == nodes[0] && graph.findEdge(nodes[2], nodes[3]) == edges[1]) {
+            System.out.println("Yay 9");
+        }
+
+        // batch removal
+        for (int i = 4; i < 8; i++) {
+            graph.addEdge(edges[i], nodes[i], nodes[i + 1]);
+        }
+        graph.addEdge(new GraphEdge(8), nodes[8], nodes[2]);
+        int pruned = graph.removeEdges(Arrays.asList(edges[0], edges[4], edges[4], edges[6]));
+        int gone = graph.removeVertices(Arrays.asList(nodes[2], nodes[8], nodes[8], nodes[1]));
+        if (pruned == 3 && gone == 2 && graph.getVertexCount() == 7 && graph.getEdgeCount() == 1
+                && graph.outDegree(nodes[7]) == 0 && graph.inDegree(nodes[3]) == 0
+                && graph.findEdge(nodes[5], nodes[6]) == edges[5] && graph.inDegree(nodes[6]) == 1) {
+            System.out.println("Yay 10");
+        }
+
+        // the traversal streams to an Appendable or an IntConsumer, in the same order
+        graph.addEdge(edges[6], nodes[4], nodes[0]);
+        graph.addEdge(edges[4], nodes[0], nodes[5]);
+        java.io.StringWriter written = new java.io.StringWriter();
+        final StringBuilder handed = new StringBuilder();
+        try {
+            graph.depthFirstTraversal(written);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        graph.depthFirstTraversal(new IntConsumer() {
+            public void accept(int id) {
+                handed.append('[').append(id).append(']');
+            }
+        });
+        if (graph.toString().equals("0 5 6 3 4 7 9") && written.toString().equals(graph.toString())
+                && handed.toString().equals("[0][5][6][3][4][7][9]") && new ThreeTenGraph().toString().isEmpty()) {
+            System.out.println("Yay 11");
+        }
     }
 
     // ********************************************************************************
@@ -747,19 +1146,12 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return the endpoints (incident vertices) of edge
      */
     public Pair<GraphNode> getEndpoints(GraphEdge edge) {
-
-        if (edge == null)
-            return null;
-
-        GraphNode v1 = getSource(edge);
-        if (v1 == null)
-            return null;
-
-        GraphNode v2 = getDest(edge);
-        if (v2 == null)
+        // O(1)
+        int id = edgeIndex(edge);
+        if (id == -1)
             return null;
 
-        return new Pair<>(v1, v2);
+        return new Pair<>(vertexList[edgeSource[id]], vertexList[edgeDest[id]]);
     }
 
     /**
@@ -797,7 +1189,7 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return true iff this graph contains an edge edge
      */
     public boolean containsEdge(GraphEdge edge) {
-        return (getEndpoints(edge) != null);
+        return (edgeIndex(edge) != -1);
     }
 
     /**
@@ -853,10 +1245,14 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return the vertex at the other end of edge from vertex
      */
     public GraphNode getOpposite(GraphNode vertex, GraphEdge edge) {
-        if (getSource(edge).equals(vertex)) {
-            return getDest(edge);
-        } else if (getDest(edge).equals(vertex)) {
-            return getSource(edge);
+        int id = edgeIndex(edge);
+        if (id == -1 || vertex == null) {
+            return null;
+        }
+        if (edgeSource[id] == vertex.getId()) {
+            return vertexList[edgeDest[id]];
+        } else if (edgeDest[id] == vertex.getId()) {
+            return vertexList[edgeSource[id]];
         } else
             return null;
     }
@@ -899,7 +1295,8 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return true iff vertex is the source of edge
      */
     public boolean isSource(GraphNode vertex, GraphEdge edge) {
-        return getSource(edge).equals(vertex);
+        int id = edgeIndex(edge);
+        return id != -1 && vertex != null && edgeSource[id] == vertex.getId();
     }
 
     /**
@@ -910,7 +1307,8 @@ class ThreeTenGraph implements Graph<GraphNode, GraphEdge>, DirectedGraph<GraphN
      * @return true iff vertex is the destination of edge
      */
     public boolean isDest(GraphNode vertex, GraphEdge edge) {
-        return getDest(edge).equals(vertex);
+        int id = edgeIndex(edge);
+        return id != -1 && vertex != null && edgeDest[id] == vertex.getId();
     }
 
     /**
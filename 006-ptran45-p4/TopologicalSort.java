@@ -5,7 +5,19 @@ import java.awt.Color;
 
 import javax.swing.JPanel;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.NoSuchElementException;
 import java.util.LinkedList;
 
@@ -20,16 +32,27 @@ class TopologicalSort implements ThreeTenAlg {
 	 */
 	Graph<GraphNode, GraphEdge> graph;
 
+	/**
+	 * The version being sorted when the graph is a VersionedThreeTenGraph
+	 * (graph is then its snapshot), or null.
+	 */
+	private VersionedThreeTenGraph.Pin pin;
+
 	/**
 	 * The priority queue of nodes for the algorithm.
 	 */
-	WeissPriorityQueue<GraphNode> pqueue;
+	UpdatableQueue<GraphNode> pqueue;
 
 	/**
 	 * The sorted list of nodes for the algorithm.
 	 */
 	LinkedList<GraphNode> queue;
 
+	/**
+	 * Nodes taken out of the priority queue with a cost left (on a cycle).
+	 */
+	ArrayList<GraphNode> warned;
+
 	/**
 	 * Whether or not the algorithm has been started.
 	 */
@@ -40,6 +63,63 @@ class TopologicalSort implements ThreeTenAlg {
 	 */
 	private int maxRank;
 
+	/**
+	 * Whether to queue the nodes in a BucketQueue instead of a binary heap.
+	 */
+	private boolean bucketQueue = false;
+
+	/**
+	 * Where periodic checkpoints go, or null for none.
+	 */
+	private Path checkpointFile = null;
+
+	/**
+	 * Steps between periodic checkpoints.
+	 */
+	private int checkpointInterval;
+
+	/**
+	 * Steps done since the last periodic checkpoint (or the start of the run).
+	 */
+	private int stepsSinceCheckpoint;
+
+	/**
+	 * System.nanoTime() when the sort was started or resumed.
+	 */
+	private long runBegin;
+
+	/**
+	 * The lowest cost per int written seen for a periodic checkpoint, in
+	 * nanoseconds, or 0 before the first: the estimate for the next one.
+	 */
+	private double checkpointNanosPerInt;
+
+	/**
+	 * Total time spent writing periodic checkpoints in this run, in nanoseconds.
+	 */
+	private long checkpointNanos;
+
+	/**
+	 * Number of periodic checkpoints written in this run.
+	 */
+	private int checkpointCount;
+
+	/**
+	 * First int of a checkpoint ("TSCK").
+	 */
+	private static final int CHECKPOINT_MAGIC = 0x5453434B;
+
+	/**
+	 * Checkpoint format version.
+	 */
+	private static final int CHECKPOINT_VERSION = 1;
+
+	/**
+	 * A periodic checkpoint is skipped if it would bring the time spent on
+	 * them in this run over 1/CHECKPOINT_BUDGET of the run (about 3%).
+	 */
+	private static final int CHECKPOINT_BUDGET = 32;
+
 	/**
 	 * The color when a node has "no color".
 	 */
@@ -70,6 +150,11 @@ class TopologicalSort implements ThreeTenAlg {
 	 */
 	public static final Color COLOR_WARNING = new Color(255, 51, 51);
 
+	/**
+	 * The color when a node or an edge is on the critical path.
+	 */
+	public static final Color COLOR_CRITICAL = new Color(51, 153, 255);
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -81,6 +166,10 @@ class TopologicalSort implements ThreeTenAlg {
 	 * {@inheritDoc}
 	 */
 	public void reset(Graph<GraphNode, GraphEdge> graph) {
+		if (pin != null) {
+			pin.close();
+			pin = null;
+		}
 		this.graph = graph;
 		started = false;
 		queue = null;
@@ -100,15 +189,24 @@ class TopologicalSort implements ThreeTenAlg {
 	public void start() {
 		started = true;
 
+		// sort a fixed version while the graph keeps being edited
+		pinGraph();
+
 		// create an empty list
 		queue = new LinkedList<>();
 
 		// create an empty priority queue
-		pqueue = new WeissPriorityQueue<>();
+		pqueue = newQueue();
+
+		// no nodes taken out with a cost left
+		warned = new ArrayList<>();
 
 		// no nodes sorted yet
 		maxRank = -1;
 
+		// the periodic checkpoint budget counts from here
+		startRun();
+
 		for (GraphNode v : graph.getVertices()) {
 
 			// clear rank
@@ -181,6 +279,292 @@ class TopologicalSort implements ThreeTenAlg {
 		// highlight next node with best priority
 		highlightNext();
 
+		if (checkpointFile != null && ++stepsSinceCheckpoint >= checkpointInterval) {
+			periodicCheckpoint();
+		}
+	}
+
+	/**
+	 * Chooses the priority queue used from the next start() or resume() on.
+	 * Costs are in-degrees, small ints that only go down, so a BucketQueue
+	 * can stand in for the binary heap: O(1) cost updates away from the
+	 * lowest cost, and O(lg b) work in the bucket being drained (b nodes)
+	 * instead of O(lg n) plus a HashMap lookup each. The nodes come out in exactly the same order either way,
+	 * warnings on cycles included.
+	 * @param on true for a BucketQueue, false for a WeissPriorityQueue (the default)
+	 */
+	public void setBucketQueue(boolean on) {
+		bucketQueue = on;
+	}
+
+	/**
+	 * Creates an empty priority queue of the chosen kind.
+	 * @return the queue
+	 */
+	private UpdatableQueue<GraphNode> newQueue() {
+		return bucketQueue ? new BucketQueue() : new WeissPriorityQueue<GraphNode>();
+	}
+
+	/**
+	 * Starts counting the periodic checkpoint budget of a new run.
+	 */
+	private void startRun() {
+		stepsSinceCheckpoint = 0;
+		runBegin = System.nanoTime();
+		checkpointNanos = 0;
+		checkpointCount = 0;
+	}
+
+	/**
+	 * Writes a periodic checkpoint, unless its estimated cost would bring
+	 * the time spent on them in this run over budget. The first one of a
+	 * run is written after at most CHECKPOINT_BUDGET intervals whatever
+	 * the estimate, so a cost carried over from an earlier run (say, of a
+	 * write before the JIT warmed up) is measured again instead of holding
+	 * back every checkpoint after it.
+	 */
+	private void periodicCheckpoint() {
+		long begin = System.nanoTime();
+		int ints = checkpointInts();
+		long estimate = (long) (checkpointNanosPerInt * ints);
+		boolean overdue = checkpointCount == 0 && stepsSinceCheckpoint >= CHECKPOINT_BUDGET * checkpointInterval;
+		if (!overdue && CHECKPOINT_BUDGET * (checkpointNanos + estimate) > begin - runBegin) {
+			return;
+		}
+		try {
+			checkpoint(checkpointFile);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		long cost = System.nanoTime() - begin;
+		double perInt = (double) cost / ints;
+		// the cheapest seen: a slow first write (cold JIT or disk) does not hold back the next ones
+		checkpointNanosPerInt = (checkpointNanosPerInt == 0) ? perInt : Math.min(checkpointNanosPerInt, perInt);
+		checkpointNanos += cost;
+		checkpointCount++;
+		stepsSinceCheckpoint = 0;
+	}
+
+	/**
+	 * Turns periodic checkpoints on or off. When on, a checkpoint is
+	 * written to file every interval steps, but never so often that
+	 * writing them takes more than about 3% of the run so far (the first
+	 * of a run may go over, see periodicCheckpoint()).
+	 * @param file where to write them (replaced each time), or null to turn them off
+	 * @param interval steps between checkpoints
+	 * @throws IllegalArgumentException if interval is not positive
+	 */
+	public void setCheckpoint(Path file, int interval) {
+		if (file != null && interval <= 0) {
+			throw new IllegalArgumentException();
+		}
+		checkpointFile = file;
+		checkpointInterval = interval;
+		checkpointNanosPerInt = 0;
+		startRun();
+	}
+
+	/**
+	 * Reports the time spent writing periodic checkpoints since the sort
+	 * was started or resumed.
+	 * @return the time in nanoseconds
+	 */
+	public long getCheckpointNanos() {
+		return checkpointNanos;
+	}
+
+	/**
+	 * Reports the number of periodic checkpoints written since the sort
+	 * was started or resumed.
+	 * @return the count
+	 */
+	public int getCheckpointCount() {
+		return checkpointCount;
+	}
+
+	/**
+	 * Returns the size of a checkpoint of the current state.
+	 * @return the number of ints
+	 */
+	private int checkpointInts() {
+		return 8 + queue.size() + 2 * pqueue.size() + 2 * warned.size();
+	}
+
+	/**
+	 * Writes the state of a started sort: the nodes sorted so far in order,
+	 * the remaining in-degree (cost) of every node still in the priority
+	 * queue, and the nodes that were taken out with a cost left (a cycle).
+	 * Ranks, colors and the queue order all follow from these.
+	 * The stream is flushed but not closed.
+	 * @param out where to write
+	 * @throws IOException if the checkpoint cannot be written
+	 * @throws IllegalStateException if the sort has not been started
+	 */
+	public void checkpoint(OutputStream out) throws IOException {
+		// O(V)
+		if (!started) {
+			throw new IllegalStateException();
+		}
+		// built in memory and written at once, much faster than int by int
+		ByteBuffer data = ByteBuffer.allocate(4 * checkpointInts());
+		data.putInt(CHECKPOINT_MAGIC);
+		data.putInt(CHECKPOINT_VERSION);
+		data.putInt(graph.getVertexCount());
+		data.putInt(graph.getEdgeCount());
+		data.putInt(maxRank);
+
+		data.putInt(queue.size());
+		for (GraphNode v : queue) {
+			data.putInt(v.getId());
+		}
+
+		data.putInt(pqueue.size());
+		for (GraphNode v : pqueue) {
+			data.putInt(v.getId());
+			data.putInt(v.getCost());
+		}
+
+		data.putInt(warned.size());
+		for (GraphNode v : warned) {
+			data.putInt(v.getId());
+			data.putInt(v.getCost());
+		}
+		out.write(data.array());
+		out.flush();
+	}
+
+	/**
+	 * Writes a checkpoint to a file. The file is replaced atomically, so a
+	 * crash while writing leaves the previous checkpoint in place.
+	 * @param file the checkpoint file
+	 * @throws IOException if the checkpoint cannot be written
+	 * @throws IllegalStateException if the sort has not been started
+	 */
+	public void checkpoint(Path file) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temp)) {
+			checkpoint(out);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Starts the sort from a checkpoint instead of from scratch: call
+	 * reset() with the same graph (same node and edge ids), then this
+	 * instead of start(). Node ranks, costs, active flags and colors and
+	 * the edge colors are restored to what they were.
+	 * @param in where to read the checkpoint
+	 * @throws IOException if the checkpoint cannot be read, or was written for another graph
+	 */
+	public void resume(InputStream in) throws IOException {
+		// O(V + E)
+		ByteBuffer data = ByteBuffer.wrap(in.readAllBytes());
+		pinGraph();
+		try {
+			restore(data);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("checkpoint is truncated");
+		}
+		started = true;
+		startRun();
+		highlightNext();
+	}
+
+	/**
+	 * Pins the latest version of a VersionedThreeTenGraph and sorts its
+	 * snapshot from then on; reset() lets go of it. Other graphs are
+	 * sorted as they are.
+	 */
+	private void pinGraph() {
+		// O(1), or O(V + E + largest id) for the first pin after a write
+		if (pin == null && graph instanceof VersionedThreeTenGraph) {
+			pin = ((VersionedThreeTenGraph) graph).pin();
+			graph = pin.getGraph();
+		}
+	}
+
+	/**
+	 * Restores the nodes, edges and queues from a checkpoint.
+	 * @param data the checkpoint
+	 * @throws IOException if the checkpoint was written for another graph
+	 */
+	private void restore(ByteBuffer data) throws IOException {
+		if (data.getInt() != CHECKPOINT_MAGIC || data.getInt() != CHECKPOINT_VERSION) {
+			throw new IOException("not a checkpoint");
+		}
+		if (data.getInt() != graph.getVertexCount() || data.getInt() != graph.getEdgeCount()) {
+			throw new IOException("checkpoint is for another graph");
+		}
+		HashMap<Integer, GraphNode> byId = new HashMap<>();
+		for (GraphNode v : graph.getVertices()) {
+			byId.put(v.getId(), v);
+			v.setRank(-1);
+			v.unsetActive();
+			v.setColor(COLOR_NONE_NODE);
+		}
+		for (GraphEdge e : graph.getEdges()) {
+			e.setColor(COLOR_NONE_EDGE);
+		}
+
+		queue = new LinkedList<>();
+		pqueue = newQueue();
+		maxRank = data.getInt();
+
+		int sorted = data.getInt();
+		for (int i = 0; i < sorted; i++) {
+			GraphNode v = lookup(byId, data.getInt());
+			queue.add(v);
+			v.setRank(i);
+			v.setCost(0);
+			v.setColor(COLOR_INACTIVE_NODE);
+			for (GraphEdge e : graph.getOutEdges(v)) {
+				e.setColor(COLOR_INACTIVE_EDGE);
+			}
+		}
+
+		int queued = data.getInt();
+		for (int i = 0; i < queued; i++) {
+			GraphNode v = lookup(byId, data.getInt());
+			v.setCost(data.getInt());
+			v.setActive();
+			pqueue.add(v);
+		}
+
+		warned = new ArrayList<>();
+		int warnedCount = data.getInt();
+		for (int i = 0; i < warnedCount; i++) {
+			GraphNode v = lookup(byId, data.getInt());
+			v.setCost(data.getInt());
+			v.setActive();
+			v.setColor(COLOR_WARNING);
+			warned.add(v);
+		}
+	}
+
+	/**
+	 * Starts the sort from a checkpoint file (see resume(InputStream)).
+	 * @param file the checkpoint file
+	 * @throws IOException if the checkpoint cannot be read, or was written for another graph
+	 */
+	public void resume(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			resume(in);
+		}
+	}
+
+	/**
+	 * Finds a node of the checkpoint in the graph.
+	 * @param byId the nodes of the graph by id
+	 * @param id the id read from the checkpoint
+	 * @return the node
+	 * @throws IOException if the graph has no such node
+	 */
+	private static GraphNode lookup(HashMap<Integer, GraphNode> byId, int id) throws IOException {
+		GraphNode v = byId.get(id);
+		if (v == null) {
+			throw new IOException("checkpoint is for another graph: no node " + id);
+		}
+		return v;
 	}
 
 	/**
@@ -212,6 +596,7 @@ class TopologicalSort implements ThreeTenAlg {
 			node.setColor(COLOR_INACTIVE_NODE);
 
 		} else {
+			warned.add(node);
 			node.setColor(COLOR_WARNING);
 		}
 		return node;
@@ -228,9 +613,8 @@ class TopologicalSort implements ThreeTenAlg {
 	 */
 	public void updateSuccessorCost(GraphNode minNode) {
 		if (minNode.getCost() == 0) {
-			LinkedList<GraphNode> neighbor = new LinkedList<GraphNode>(graph.getNeighbors(minNode));
 			// Update the cost for all active neighbor nodes
-			for (GraphNode node : neighbor) {
+			for (GraphNode node : graph.getNeighbors(minNode)) {
 				// set the cost to the number of incoming edges
 				if (node.isActive()) {
 					int cost = node.getCost() - 1;
@@ -265,13 +649,246 @@ class TopologicalSort implements ThreeTenAlg {
 			return false;
 		}
 
-		for (GraphEdge e : graph.getEdges()) {
+		// getEdges() may be a live view, so collect the edges before removing any
+		for (GraphEdge e : new ArrayList<>(graph.getEdges())) {
 			if (graph.getSource(e).getId() < graph.getDest(e).getId()) {
 				graph.removeEdge(e);
 			}
 		}
 		return true;
 	}
+
+	/**
+	 * Finds the cycles of the graph in one depth first pass (strongly connected
+	 * components, see StronglyConnected), instead of popping the leftover
+	 * nodes one step at a time. Each cycle is a set of nodes that all reach
+	 * each other; the nodes a cycle merely leads to are not included.
+	 * @return the node ids of each cycle, sorted, ordered by their lowest id
+	 */
+	public int[][] cycles() {
+		return StronglyConnected.cycles(graph);
+	}
+
+	/**
+	 * Paints every node on a cycle and every edge inside a cycle
+	 * COLOR_WARNING, all at once. Other colors are left alone.
+	 * @return the number of cycles found
+	 */
+	public int highlightCycles() {
+		// O(V + E + largest id), see cycles()
+		int[][] cycles = cycles();
+		int maxId = -1;
+		for (GraphNode v : graph.getVertices()) {
+			maxId = Math.max(maxId, v.getId());
+		}
+		// which cycle each id is on, + 1 (0 for none)
+		int[] cycleOf = new int[maxId + 1];
+		for (int i = 0; i < cycles.length; i++) {
+			for (int id : cycles[i]) {
+				cycleOf[id] = i + 1;
+			}
+		}
+		for (GraphNode v : graph.getVertices()) {
+			if (cycleOf[v.getId()] != 0) {
+				v.setColor(COLOR_WARNING);
+			}
+		}
+		for (GraphEdge e : graph.getEdges()) {
+			int c = cycleOf[graph.getSource(e).getId()];
+			if (c != 0 && c == cycleOf[graph.getDest(e).getId()]) {
+				e.setColor(COLOR_WARNING);
+			}
+		}
+		return cycles.length;
+	}
+
+	/**
+	 * Paints the nodes of the critical path (see CriticalPath), and the
+	 * edges between them, COLOR_CRITICAL, all at once. Node and edge
+	 * weights are read from the graph. Other colors are left alone.
+	 * @return how long the whole graph takes, or -1 if it has a cycle
+	 * @throws IllegalArgumentException if a weight is negative
+	 */
+	public long highlightCriticalPath() {
+		// O(V + E + largest id) to freeze, then O(V + E)
+		IntDigraphAdapter frozen = (graph instanceof IntDigraphAdapter)
+				? (IntDigraphAdapter) graph : IntDigraphAdapter.freeze(graph);
+		if (sort(frozen.getCore()).hasCycle()) {
+			return -1;
+		}
+		CriticalPath cp = CriticalPath.compute(frozen);
+		int[] path = cp.getPath();
+		HashMap<Integer, GraphNode> byId = new HashMap<>();
+		for (GraphNode v : graph.getVertices()) {
+			byId.put(v.getId(), v);
+		}
+		for (int i = 0; i < path.length; i++) {
+			GraphNode v = byId.get(path[i]);
+			v.setColor(COLOR_CRITICAL);
+			if (i > 0) {
+				graph.findEdge(byId.get(path[i - 1]), v).setColor(COLOR_CRITICAL);
+			}
+		}
+		return cp.getLength();
+	}
+
+	/**
+	 * Ranks every node, cycles included, instead of warning about the ones
+	 * on or behind a cycle. Each strongly connected component is collapsed
+	 * into one node, the resulting DAG is sorted, and the components are
+	 * expanded back in that order (see StronglyConnected.condensationOrder()),
+	 * so the members of a component get consecutive ranks, lowest id first.
+	 * The ranks are written with setRank(); nothing else is touched.
+	 * No updating and return -1 if sorting has already started.
+	 * @return the number of components (the number of nodes if there is no cycle)
+	 */
+	public int rankComponents() {
+		// O(V + E + largest id), see cycles()
+		if (isStarted()) {
+			return -1;
+		}
+		IntDigraphAdapter frozen = (graph instanceof IntDigraphAdapter)
+				? (IntDigraphAdapter) graph : IntDigraphAdapter.freeze(graph);
+		int[] component = StronglyConnected.componentOf(frozen.getCore());
+		int[] order = StronglyConnected.condensationOrder(frozen.getCore(), component);
+		int count = 0;
+		for (int i = 0; i < order.length; i++) {
+			frozen.node(order[i]).setRank(i);
+			count = Math.max(count, component[order[i]] + 1);
+		}
+		return count;
+	}
+
+	/**
+	 * Sorts the whole graph in one call, for use without the simulator: no
+	 * colors, costs, active flags or ranks are touched on the nodes, and
+	 * there is no priority queue. Nodes whose in-degree drops to zero are
+	 * taken in first-in first-out order (seeded in getVertices() order), so
+	 * the result is a valid topological order but not necessarily the
+	 * lowest-id-first order of the step by step simulation.
+	 * The level of every node and the width of every level are found in
+	 * the same pass (see SortResult).
+	 * @param graph the graph to sort (vertex ids must be non-negative)
+	 * @return the order, ranks, levels and level widths, and the leftovers if there is a cycle
+	 */
+	public static SortResult sort(Graph<GraphNode, GraphEdge> graph) {
+		// O(V + E)
+		int maxId = -1;
+		for (GraphNode v : graph.getVertices()) {
+			maxId = Math.max(maxId, v.getId());
+		}
+		GraphNode[] byId = new GraphNode[maxId + 1];
+		int[] remaining = new int[maxId + 1];
+		int[] ranks = new int[maxId + 1];
+		int[] levels = new int[maxId + 1];
+		Arrays.fill(ranks, -1);
+		Arrays.fill(levels, -1);
+		int[] order = new int[graph.getVertexCount()];
+		int tail = 0;
+		for (GraphNode v : graph.getVertices()) {
+			byId[v.getId()] = v;
+			remaining[v.getId()] = graph.inDegree(v);
+			if (remaining[v.getId()] == 0) {
+				order[tail++] = v.getId();
+				levels[v.getId()] = 0;
+			}
+		}
+
+		// the sorted prefix of order doubles as the queue; a node's level is
+		// final when it is taken, since all its predecessors came before it
+		int[] widths = new int[order.length];
+		int depth = 0;
+		for (int head = 0; head < tail; head++) {
+			int u = order[head];
+			ranks[u] = head;
+			widths[levels[u]]++;
+			depth = Math.max(depth, levels[u] + 1);
+			for (GraphNode w : graph.getSuccessors(byId[u])) {
+				levels[w.getId()] = Math.max(levels[w.getId()], levels[u] + 1);
+				if (--remaining[w.getId()] == 0) {
+					order[tail++] = w.getId();
+				}
+			}
+		}
+		return result(order, tail, ranks, levels, Arrays.copyOf(widths, depth), graph.getVertices());
+	}
+
+	/**
+	 * Sorts a primitive graph in one call (see sort(Graph)). The order is
+	 * the one of IntDigraph.topologicalOrder().
+	 * @param graph the graph to sort
+	 * @return the order, ranks, levels and level widths, and the leftovers if there is a cycle
+	 */
+	public static SortResult sort(IntDigraph graph) {
+		// O(V + E)
+		int n = graph.vertexCount();
+		int[] remaining = new int[n];
+		int[] ranks = new int[n];
+		int[] levels = new int[n];
+		Arrays.fill(ranks, -1);
+		Arrays.fill(levels, -1);
+		int[] order = new int[n];
+		int tail = 0;
+		for (int v = 0; v < n; v++) {
+			remaining[v] = graph.inDegree(v);
+			if (remaining[v] == 0) {
+				order[tail++] = v;
+				levels[v] = 0;
+			}
+		}
+		int[] widths = new int[n];
+		int depth = 0;
+		for (int head = 0; head < tail; head++) {
+			int u = order[head];
+			ranks[u] = head;
+			widths[levels[u]]++;
+			depth = Math.max(depth, levels[u] + 1);
+			for (int e = graph.outBegin(u), end = graph.outEnd(u); e < end; e++) {
+				int w = graph.target(e);
+				levels[w] = Math.max(levels[w], levels[u] + 1);
+				if (--remaining[w] == 0) {
+					order[tail++] = w;
+				}
+			}
+		}
+		return result(order, tail, ranks, levels, Arrays.copyOf(widths, depth), null);
+	}
+
+	/**
+	 * Packs the outcome of a headless sort into a SortResult, finding the
+	 * leftovers (and taking back the levels they got from ranked predecessors).
+	 * @param order the ranked ids in order (the first count entries are used)
+	 * @param count how many ids were ranked
+	 * @param ranks rank of each id, or -1
+	 * @param levels level of each id, updated for the leftovers
+	 * @param widths number of ranked ids on each level
+	 * @param vertices all nodes, in graph order, or null if the ids are 0 to order.length-1
+	 * @return the result
+	 */
+	private static SortResult result(int[] order, int count, int[] ranks, int[] levels, int[] widths,
+			Collection<GraphNode> vertices) {
+		// O(V)
+		int[] leftovers = new int[order.length - count];
+		int found = 0;
+		if (leftovers.length > 0 && vertices != null) {
+			for (GraphNode v : vertices) {
+				if (ranks[v.getId()] == -1) {
+					leftovers[found++] = v.getId();
+					levels[v.getId()] = -1;
+				}
+			}
+		} else if (leftovers.length > 0) {
+			for (int v = 0; v < order.length; v++) {
+				if (ranks[v] == -1) {
+					leftovers[found++] = v;
+					levels[v] = -1;
+				}
+			}
+		}
+		return new SortResult((count == order.length) ? order : Arrays.copyOf(order, count), ranks, leftovers,
+				levels, widths);
+	}
+
 	/**
 	 * test cases.
 	 * @param args command line arguments
@@ -354,6 +971,275 @@ class TopologicalSort implements ThreeTenAlg {
 				&& nodes[2].getRank() == 3 && nodes[3].getRank() == 4 && nodes[1].getRank() == 5)
 			System.out.println("pass six edges!");
 
+		// checkpoint after two nodes, then finish on a fresh copy of the graph
+		topSort.reset(graph);
+		topSort.step();
+		topSort.step();
+		topSort.step();
+		java.io.ByteArrayOutputStream saved = new java.io.ByteArrayOutputStream();
+		try {
+			topSort.checkpoint(saved);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		ThreeTenGraph copy = new ThreeTenGraph();
+		GraphNode[] copies = new GraphNode[6];
+		for (int i = 0; i < copies.length; i++) {
+			copies[i] = new GraphNode(i);
+			copy.addVertex(copies[i]);
+		}
+		int[][] pairs = {{5, 2}, {5, 0}, {4, 0}, {4, 1}, {2, 3}, {3, 1}};
+		for (int i = 0; i < pairs.length; i++) {
+			copy.addEdge(new GraphEdge(i), copies[pairs[i][0]], copies[pairs[i][1]]);
+		}
+		TopologicalSort resumed = new TopologicalSort();
+		resumed.reset(copy);
+		try {
+			resumed.resume(new java.io.ByteArrayInputStream(saved.toByteArray()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		boolean sameState = copies[4].getRank() == 0 && copies[5].getRank() == 1 && copies[0].getCost() == 0
+				&& copies[1].getCost() == 1 && copies[2].getCost() == 0
+				&& copy.findEdge(copies[5], copies[2]).color.equals(COLOR_INACTIVE_EDGE);
+		while (resumed.step()) {
+		}
+		if (sameState && copies[4].getRank() == 0 && copies[5].getRank() == 1 && copies[0].getRank() == 2
+				&& copies[2].getRank() == 3 && copies[3].getRank() == 4 && copies[1].getRank() == 5)
+			System.out.println("pass resume!");
+
+		// periodic checkpoints on a long graph stay within a few percent
+		// (many edges per node, so a run is long next to a checkpoint, which only holds the nodes)
+		int n = 50000;
+		int width = 64;
+		SparseThreeTenGraph chain = new SparseThreeTenGraph(n, width * n);
+		GraphNode[] links = new GraphNode[n];
+		int edgeId = 0;
+		for (int i = 0; i < n; i++) {
+			links[i] = new GraphNode(i);
+			chain.addVertex(links[i]);
+			for (int j = Math.max(0, i - width); j < i; j++) {
+				chain.addEdge(new GraphEdge(edgeId++), links[j], links[i]);
+			}
+		}
+		try {
+			Path file = Files.createTempFile("topsort", ".ckpt");
+			long total = 1;
+			long spent = 1;
+			int written = 0;
+			TopologicalSort longSort = new TopologicalSort();
+			longSort.setCheckpoint(file, 1000);
+			for (int round = 0; round < 3; round++) {
+				// the first rounds warm up the JIT and price a checkpoint;
+				// the last must write its own
+				Files.deleteIfExists(file);
+				longSort.reset(chain);
+				if (round == 0) {
+					longSort.start();
+					for (int i = 0; i < 20; i++) {
+						longSort.checkpoint(new java.io.ByteArrayOutputStream());
+					}
+					longSort.reset(chain);
+				}
+				long begin = System.nanoTime();
+				while (longSort.step()) {
+				}
+				total = System.nanoTime() - begin;
+				spent = longSort.getCheckpointNanos();
+				written = longSort.getCheckpointCount();
+			}
+
+			// "crash", then pick up from the last checkpoint of that run
+			TopologicalSort after = new TopologicalSort();
+			after.reset(chain);
+			after.resume(file);
+			int resumedAt = 0;
+			for (GraphNode v : links) {
+				if (v.getRank() >= 0) {
+					resumedAt++;
+				}
+			}
+			while (after.step()) {
+			}
+			Files.delete(file);
+			if (written > 0 && resumedAt > 0 && links[n - 1].getRank() == n - 1 && spent * 20 < total)
+				System.out.println("pass periodic checkpoint! (" + written + " written, " + spent / 1000
+						+ " us of " + total / 1000000 + " ms)");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		// headless sort: FIFO Kahn, a valid order and no simulator state touched
+		SortResult fast = sort(copy);
+		int[] expectedRanks = {2, 5, 3, 4, 0, 1};
+		boolean untouched = copies[4].getRank() == 0 && copies[1].getRank() == 5;
+		if (Arrays.toString(fast.getOrder()).equals("[4, 5, 0, 2, 3, 1]")
+				&& Arrays.equals(fast.getRanks(), expectedRanks) && !fast.hasCycle() && untouched
+				&& Arrays.equals(sort(copy.freeze().getCore()).getRanks(), expectedRanks))
+			System.out.println("pass headless sort!");
+
+		// 4-->0 0-->1 1-->2 2-->0 (a cycle) 2-->3, and 5 on its own; the ids have gaps
+		SparseThreeTenGraph cyclic = new SparseThreeTenGraph();
+		GraphNode[] ring = new GraphNode[6];
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = new GraphNode(2 * i);
+			cyclic.addVertex(ring[i]);
+		}
+		int[][] ringPairs = {{4, 0}, {0, 1}, {1, 2}, {2, 0}, {2, 3}};
+		for (int i = 0; i < ringPairs.length; i++) {
+			cyclic.addEdge(new GraphEdge(i), ring[ringPairs[i][0]], ring[ringPairs[i][1]]);
+		}
+		SortResult stuck = sort(cyclic);
+		if (stuck.hasCycle() && Arrays.toString(stuck.getOrder()).equals("[8, 10]")
+				&& Arrays.toString(stuck.getLeftovers()).equals("[0, 2, 4, 6]")
+				&& stuck.getRank(10) == 1 && stuck.getRank(2) == -1 && stuck.getRank(3) == -1)
+			System.out.println("pass headless cycle!");
+
+		// levels in the same pass: 4 and 5, then 0 and 2, then 3, then 1
+		SortResult layered = sort(copy.freeze().getCore());
+		if (Arrays.toString(fast.getLevels()).equals("[1, 3, 1, 2, 0, 0]")
+				&& Arrays.equals(layered.getLevels(), fast.getLevels())
+				&& Arrays.toString(fast.getWidths()).equals("[2, 2, 1, 1]") && fast.getDepth() == 4
+				&& fast.getMaxWidth() == 2 && fast.getAverageWidth() == 1.5
+				&& stuck.getLevel(8) == 0 && stuck.getLevel(0) == -1 && stuck.getLevel(6) == -1
+				&& Arrays.toString(stuck.getWidths()).equals("[2]"))
+			System.out.println("pass levels!");
+
+		// the same 100000-node graph as above, in one call instead of stepping
+		sort(chain);// warm up
+		long begin = System.nanoTime();
+		SortResult whole = sort(chain);
+		long millis = (System.nanoTime() - begin) / 1000000;
+		boolean valid = whole.getOrder().length == n;
+		for (GraphEdge e : chain.getEdges()) {
+			valid &= whole.getRank(chain.getSource(e).getId()) < whole.getRank(chain.getDest(e).getId());
+		}
+		if (valid)
+			System.out.println("pass headless speed! (" + millis + " ms)");
+
+		// the bucket queue gives the same steps, warnings included, on a cycle and on the big graph
+		TopologicalSort heapSort = new TopologicalSort();
+		TopologicalSort bucketSort = new TopologicalSort();
+		bucketSort.setBucketQueue(true);
+		boolean sameSteps = true;
+		for (Graph<GraphNode, GraphEdge> g : Arrays.<Graph<GraphNode, GraphEdge>>asList(cyclic, chain)) {
+			// one after the other: both keep their state on the same nodes
+			ArrayList<GraphNode> heapSteps = new ArrayList<>();
+			heapSort.reset(g);
+			while (heapSort.step()) {
+				heapSteps.add((heapSort.pqueue.size() > 0) ? heapSort.pqueue.element() : null);
+			}
+			ArrayList<GraphNode> bucketSteps = new ArrayList<>();
+			bucketSort.reset(g);
+			while (bucketSort.step()) {
+				bucketSteps.add((bucketSort.pqueue.size() > 0) ? bucketSort.pqueue.element() : null);
+			}
+			sameSteps &= heapSteps.equals(bucketSteps) && heapSort.queue.equals(bucketSort.queue)
+					&& heapSort.warned.equals(bucketSort.warned);
+		}
+		long heapTime = 0;
+		long bucketTime = 0;
+		for (int round = 0; round < 3; round++) {
+			begin = System.nanoTime();
+			heapSort.reset(chain);
+			while (heapSort.step()) {
+			}
+			heapTime = System.nanoTime() - begin;
+			begin = System.nanoTime();
+			bucketSort.reset(chain);
+			while (bucketSort.step()) {
+			}
+			bucketTime = System.nanoTime() - begin;
+		}
+		if (sameSteps && heapSort.warned.isEmpty())
+			System.out.println("pass bucket queue! (heap " + heapTime / 1000000 + " ms, buckets "
+					+ bucketTime / 1000000 + " ms)");
+
+		// one ring of 80000 nodes: every step is a warning and no cost ever drops
+		SparseThreeTenGraph bigRing = new SparseThreeTenGraph();
+		GraphNode[] ringNodes = new GraphNode[80000];
+		for (int i = 0; i < ringNodes.length; i++) {
+			ringNodes[i] = new GraphNode(i);
+			bigRing.addVertex(ringNodes[i]);
+		}
+		for (int i = 0; i < ringNodes.length; i++) {
+			bigRing.addEdge(new GraphEdge(i), ringNodes[i], ringNodes[(i + 1) % ringNodes.length]);
+		}
+		begin = System.nanoTime();
+		bucketSort.reset(bigRing);
+		while (bucketSort.step()) {
+		}
+		long ringMillis = (System.nanoTime() - begin) / 1000000;
+		if (bucketSort.warned.size() == ringNodes.length && bucketSort.warned.get(79999) == ringNodes[79999]
+				&& ringMillis < 2000)
+			System.out.println("pass bucket ring! (" + ringMillis + " ms)");
+
+		// only 0, 2 and 4 are on the cycle; 6 is behind it
+		TopologicalSort cycleSort = new TopologicalSort();
+		cycleSort.reset(cyclic);
+		for (GraphNode v : cyclic.getVertices()) {
+			v.setColor(COLOR_NONE_NODE);
+		}
+		for (GraphEdge e : cyclic.getEdges()) {
+			e.setColor(COLOR_NONE_EDGE);
+		}
+		boolean painted = cycleSort.highlightCycles() == 1 && ring[2].getColor().equals(COLOR_WARNING)
+				&& ring[3].getColor().equals(COLOR_NONE_NODE)
+				&& cyclic.findEdge(ring[2], ring[0]).getColor().equals(COLOR_WARNING)
+				&& cyclic.findEdge(ring[2], ring[3]).getColor().equals(COLOR_NONE_EDGE)
+				&& cyclic.findEdge(ring[4], ring[0]).getColor().equals(COLOR_NONE_EDGE);
+		cycleSort.reset(chain);
+		if (painted && Arrays.deepToString(cycleSort.cycles()).equals("[]")
+				&& Arrays.deepToString(StronglyConnected.cycles(cyclic)).equals("[[0, 2, 4]]"))
+			System.out.println("pass cycles!");
+
+		// 8 and 10 have no predecessors; the cycle 0, 2, 4 comes next, then 6
+		cycleSort.reset(cyclic);
+		int components = cycleSort.rankComponents();
+		StringBuilder ranked = new StringBuilder();
+		for (GraphNode v : ring) {
+			ranked.append(v.getRank()).append(' ');
+		}
+		if (components == 4 && ranked.toString().equals("2 3 4 5 0 1 "))
+			System.out.println("pass rank components!");
+
+		// every node takes 1 and the edge 0-->2 adds 3, so the path goes 8, 0, 2, 4, 6
+		cyclic.findEdge(ring[0], ring[1]).setWeight(3);
+		cycleSort.reset(cyclic);
+		long cyclicLength = cycleSort.highlightCriticalPath();
+		cyclic.removeEdge(cyclic.findEdge(ring[2], ring[0]));
+		cycleSort.reset(cyclic);
+		boolean rejected = false;
+		try {
+			ring[0].setWeight(-1);
+		} catch (IllegalArgumentException e) {
+			rejected = ring[0].getWeight() >= 0;
+		}
+		if (rejected && cyclicLength == -1 && cycleSort.highlightCriticalPath() == 8
+				&& ring[4].getColor().equals(COLOR_CRITICAL) && ring[5].getColor().equals(COLOR_NONE_NODE)
+				&& cyclic.findEdge(ring[0], ring[1]).getColor().equals(COLOR_CRITICAL))
+			System.out.println("pass critical path!");
+
+		// a versioned graph is sorted as it was at start(), while edits go on
+		GraphNode[] live = { new GraphNode(0), new GraphNode(1), new GraphNode(2) };
+		VersionedThreeTenGraph versioned = new VersionedThreeTenGraph();
+		for (GraphNode v : live) {
+			versioned.addVertex(v);
+		}
+		versioned.addEdge(new GraphEdge(0), live[0], live[1]); // 0-->1
+		versioned.addEdge(new GraphEdge(1), live[1], live[2]); // 1-->2
+		TopologicalSort pinnedSort = new TopologicalSort();
+		pinnedSort.reset(versioned);
+		pinnedSort.step();
+		versioned.removeEdge(versioned.findEdge(live[0], live[1]));
+		versioned.addEdge(new GraphEdge(2), live[2], live[0]); // 2-->0
+		while (pinnedSort.step()) {
+		}
+		if (live[0].getRank() == 0 && live[1].getRank() == 1 && live[2].getRank() == 2
+				&& versioned.getEdgeCount() == 2 && versioned.findEdge(live[2], live[0]) != null)
+			System.out.println("pass pinned version!");
+		pinnedSort.reset(versioned);
+
 		// write your own testing code ...
 	}
 
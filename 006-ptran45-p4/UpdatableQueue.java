@@ -0,0 +1,54 @@
+/**
+ * The operations TopologicalSort needs from its priority queue: a queue
+ * whose items can change priority while queued. WeissPriorityQueue and
+ * BucketQueue both provide it.
+ * @param <K> the type of items in the queue
+ * @author Phat Tran
+ */
+public interface UpdatableQueue<K> extends Iterable<K> {
+
+	/**
+	 * Adds an item.
+	 * @param x the item
+	 * @return true if it was added
+	 */
+	boolean add(K x);
+
+	/**
+	 * Moves an item whose priority has changed to its new place.
+	 * @param x the item
+	 * @return true, or false if x is not queued
+	 */
+	boolean update(K x);
+
+	/**
+	 * Returns the item with the best priority.
+	 * @return the item
+	 * @throws java.util.NoSuchElementException if empty
+	 */
+	K element();
+
+	/**
+	 * Removes the item with the best priority.
+	 * @return the item
+	 * @throws java.util.NoSuchElementException if empty
+	 */
+	K remove();
+
+	/**
+	 * Returns the number of queued items.
+	 * @return the size
+	 */
+	int size();
+
+	/**
+	 * Tells whether nothing is queued.
+	 * @return true if the size is zero
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Removes every item.
+	 */
+	void clear();
+}
@@ -0,0 +1,1010 @@
+import edu.uci.ics.jung.graph.Graph;
+
+import org.apache.commons.collections15.Factory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A graph that publishes immutable, versioned snapshots of itself, so
+ * renderers and algorithms can work on a fixed version while writers
+ * keep changing the graph (multi-version concurrency control).
+ * <p>
+ * Writes go to a backing graph (a SparseThreeTenGraph by default) under
+ * this object's lock, and every successful write bumps the version. Each
+ * write is also applied to a table of per-vertex rows of outgoing edges
+ * kept copy-on-write: pin() captures the current table in O(1) under the
+ * lock, and after that the writer copies a row (or a chunk of 64 row
+ * slots) the first time it changes it, so a version shares every row
+ * that has not been touched since. The pinned table is turned into an
+ * IntDigraphAdapter by the first getGraph() on it, outside the lock, so
+ * writers never wait for a snapshot to be built; everybody who pins that
+ * version shares it, and a version nobody looks at is never built.
+ * A snapshot stays valid for as long as it is pinned; once a newer
+ * version exists and the last pin on an old one is closed, the old
+ * version is dropped.
+ * <p>
+ * Only the structure is versioned: the snapshots share the GraphNode and
+ * GraphEdge objects, so colors, costs and ranks are not isolated, and the
+ * node ids must be distinct, as for IntDigraphAdapter.freeze().
+ * The read methods of this class see the latest version; like the
+ * backing graph, the collections they return are live and should only be
+ * used by the thread that writes. Other threads should pin().
+ * TopologicalSort sorts a pinned version, and SimGUI pins one for every
+ * repaint.
+ * @author Phat Tran
+ */
+class VersionedThreeTenGraph extends ThreeTenAbstractGraph {
+
+    /**
+     * number of row slots in a chunk of the table.
+     */
+    private static final int CHUNK = 64;
+
+    /**
+     * The outgoing edges of one vertex. A row is changed in place only in
+     * the epoch it was made in; a row from an earlier epoch may belong to
+     * a pinned table and is copied instead.
+     */
+    private static final class Row {
+        /**
+         * the vertex.
+         */
+        final GraphNode vertex;
+
+        /**
+         * the epoch the row was made in.
+         */
+        final int epoch;
+
+        /**
+         * the outgoing edges, then spare room.
+         */
+        GraphEdge[] edges;
+
+        /**
+         * the destination of each edge.
+         */
+        GraphNode[] dests;
+
+        /**
+         * number of edges.
+         */
+        int size;
+
+        /**
+         * constructor.
+         * @param vertex the vertex
+         * @param epoch the epoch it is made in
+         * @param edges the outgoing edges, then spare room
+         * @param dests the destination of each edge
+         * @param size number of edges
+         */
+        Row(GraphNode vertex, int epoch, GraphEdge[] edges, GraphNode[] dests, int size) {
+            this.vertex = vertex;
+            this.epoch = epoch;
+            this.edges = edges;
+            this.dests = dests;
+            this.size = size;
+        }
+    }
+
+    /**
+     * One published version of the graph.
+     */
+    private static final class Version {
+        /**
+         * the version number.
+         */
+        final long number;
+
+        /**
+         * the rows by vertex id, in chunks; nothing in it changes any more.
+         */
+        private final Row[][] table;
+
+        /**
+         * number of vertices.
+         */
+        private final int vertexCount;
+
+        /**
+         * the immutable snapshot, or null until somebody asks for it.
+         */
+        private IntDigraphAdapter graph;
+
+        /**
+         * number of open pins, guarded by the graph's lock.
+         */
+        int pins;
+
+        /**
+         * constructor.
+         * @param number the version number
+         * @param table the rows, which the writer will not change from now on
+         * @param vertexCount number of vertices
+         */
+        Version(long number, Row[][] table, int vertexCount) {
+            this.number = number;
+            this.table = table;
+            this.vertexCount = vertexCount;
+        }
+
+        /**
+         * Returns the snapshot, building it the first time. Only callers
+         * of the same version wait for each other here.
+         * @return the snapshot
+         */
+        synchronized IntDigraphAdapter graph() {
+            // O(1), or O(V + E + largest id) the first time
+            if (graph == null) {
+                GraphNode[] nodes = new GraphNode[vertexCount];
+                int[] offsets = new int[vertexCount + 1];
+                int n = 0;
+                for (Row[] chunk : table) {
+                    for (int i = 0; chunk != null && i < CHUNK; i++) {
+                        if (chunk[i] != null) {
+                            nodes[n] = chunk[i].vertex;
+                            offsets[n + 1] = offsets[n] + chunk[i].size;
+                            n++;
+                        }
+                    }
+                }
+                GraphEdge[] listed = new GraphEdge[offsets[n]];
+                GraphNode[] heads = new GraphNode[offsets[n]];
+                n = 0;
+                for (Row[] chunk : table) {
+                    for (int i = 0; chunk != null && i < CHUNK; i++) {
+                        if (chunk[i] != null) {
+                            System.arraycopy(chunk[i].edges, 0, listed, offsets[n], chunk[i].size);
+                            System.arraycopy(chunk[i].dests, 0, heads, offsets[n], chunk[i].size);
+                            n++;
+                        }
+                    }
+                }
+                graph = IntDigraphAdapter.freeze(nodes, offsets, listed, heads);
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * A pinned version. Close it (try-with-resources) when done so the
+     * version can be dropped.
+     */
+    public final class Pin implements AutoCloseable {
+        /**
+         * the version held.
+         */
+        private final Version version;
+
+        /**
+         * whether close() has been called.
+         */
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        /**
+         * constructor.
+         * @param version the version held
+         */
+        private Pin(Version version) {
+            this.version = version;
+        }
+
+        /**
+         * Returns the immutable snapshot. The first call on a version
+         * builds it, without holding up the writers.
+         * @return the snapshot graph
+         */
+        public IntDigraphAdapter getGraph() {
+            return version.graph();
+        }
+
+        /**
+         * Returns the version number of the snapshot.
+         * @return the version number
+         */
+        public long getVersion() {
+            return version.number;
+        }
+
+        /**
+         * Releases the pin. Closing twice has no effect.
+         */
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                unpin(version);
+            }
+        }
+    }
+
+    /**
+     * the graph that writes go to.
+     */
+    private final Graph<GraphNode, GraphEdge> graph;
+
+    /**
+     * number of the latest version, bumped by every successful write.
+     */
+    private long version;
+
+    /**
+     * the latest captured version, or null if there has been a write since.
+     */
+    private Version current;
+
+    /**
+     * versions that are still pinned, oldest first (current may be one of them).
+     */
+    private final ArrayList<Version> pinned = new ArrayList<>();
+
+    /**
+     * the rows of the latest version by vertex id, in chunks of CHUNK.
+     */
+    private Row[][] table = new Row[1][];
+
+    /**
+     * the epoch each chunk of table was made in.
+     */
+    private int[] chunkEpochs = new int[1];
+
+    /**
+     * the epoch table itself was made in.
+     */
+    private int tableEpoch;
+
+    /**
+     * bumped every time a table is captured, so that everything made
+     * before is copied before it is changed.
+     */
+    private int epoch;
+
+    /**
+     * constructor.
+     */
+    public VersionedThreeTenGraph() {
+        this(new SparseThreeTenGraph());
+    }
+
+    /**
+     * constructor over an existing graph. The graph must not be changed
+     * other than through this object from now on.
+     * @param graph the backing graph
+     */
+    public VersionedThreeTenGraph(Graph<GraphNode, GraphEdge> graph) {
+        // O(V + E)
+        if (graph == null) {
+            throw new IllegalArgumentException();
+        }
+        this.graph = graph;
+        for (GraphNode v : graph.getVertices()) {
+            addRow(v);
+        }
+        for (GraphEdge e : graph.getEdges()) {
+            append(e, graph.getSource(e), graph.getDest(e));
+        }
+    }
+
+    /**
+     * Pins the latest version. This only captures the current table; the
+     * snapshot is built by the first getGraph() on it.
+     * @return the pin; close it when done
+     */
+    public synchronized Pin pin() {
+        // O(1)
+        if (current == null) {
+            current = new Version(version, table, graph.getVertexCount());
+            epoch++;
+        }
+        if (current.pins++ == 0) {
+            pinned.add(current);
+        }
+        return new Pin(current);
+    }
+
+    /**
+     * Releases one pin on v. An unpinned version is forgotten, unless it
+     * is still the current one (then it stays cached for the next pin).
+     * @param v the version
+     */
+    private synchronized void unpin(Version v) {
+        if (--v.pins == 0) {
+            pinned.remove(v);
+        }
+    }
+
+    /**
+     * Returns the number of the latest version.
+     * @return the version number
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns how many versions are currently pinned.
+     * @return the number of pinned versions
+     */
+    public synchronized int getPinnedCount() {
+        return pinned.size();
+    }
+
+    /**
+     * Records a write: bumps the version and retires the current snapshot
+     * (it lives on for whoever has it pinned).
+     * @param changed whether the write changed the graph
+     * @return changed
+     */
+    private boolean written(boolean changed) {
+        if (changed) {
+            version++;
+            current = null;
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the chunk of the table that holds a vertex id, copying the
+     * table and the chunk first if a pinned version may share them.
+     * @param id the vertex id
+     * @return the chunk, safe to change
+     */
+    private Row[] chunkFor(int id) {
+        // O(1), or O(V / CHUNK) for the first write after a pin
+        int c = id / CHUNK;
+        if (tableEpoch != epoch || c >= table.length) {
+            table = Arrays.copyOf(table, Math.max(table.length, c + 1));
+            tableEpoch = epoch;
+        }
+        if (c >= chunkEpochs.length) {
+            chunkEpochs = Arrays.copyOf(chunkEpochs, Math.max(2 * chunkEpochs.length, c + 1));
+        }
+        if (table[c] == null) {
+            table[c] = new Row[CHUNK];
+            chunkEpochs[c] = epoch;
+        } else if (chunkEpochs[c] != epoch) {
+            table[c] = table[c].clone();
+            chunkEpochs[c] = epoch;
+        }
+        return table[c];
+    }
+
+    /**
+     * Returns the row of a vertex, copying it first if a pinned version
+     * may share it.
+     * @param v the vertex
+     * @return the row, safe to change
+     */
+    private Row rowFor(GraphNode v) {
+        // O(1), or O(d) for the first write to the row after a pin
+        Row[] chunk = chunkFor(v.getId());
+        Row row = chunk[v.getId() % CHUNK];
+        if (row.epoch != epoch) {
+            row = new Row(v, epoch, row.edges.clone(), row.dests.clone(), row.size);
+            chunk[v.getId() % CHUNK] = row;
+        }
+        return row;
+    }
+
+    /**
+     * Gives a new vertex an empty row.
+     * @param v the vertex
+     */
+    private void addRow(GraphNode v) {
+        chunkFor(v.getId())[v.getId() % CHUNK] = new Row(v, epoch, new GraphEdge[2], new GraphNode[2], 0);
+    }
+
+    /**
+     * Adds an edge to the row of its source.
+     * @param e the edge
+     * @param v1 its source
+     * @param v2 its destination
+     */
+    private void append(GraphEdge e, GraphNode v1, GraphNode v2) {
+        // amortized O(1)
+        Row row = rowFor(v1);
+        if (row.size == row.edges.length) {
+            row.edges = Arrays.copyOf(row.edges, 2 * row.size);
+            row.dests = Arrays.copyOf(row.dests, 2 * row.size);
+        }
+        row.edges[row.size] = e;
+        row.dests[row.size] = v2;
+        row.size++;
+    }
+
+    /**
+     * Drops the edges that are no longer in the backing graph from a row.
+     * @param v the vertex whose row it is
+     */
+    private void prune(GraphNode v) {
+        // O(d)
+        Row row = rowFor(v);
+        int kept = 0;
+        for (int i = 0; i < row.size; i++) {
+            if (graph.containsEdge(row.edges[i])) {
+                row.edges[kept] = row.edges[i];
+                row.dests[kept] = row.dests[i];
+                kept++;
+            }
+        }
+        Arrays.fill(row.edges, kept, row.size, null);
+        Arrays.fill(row.dests, kept, row.size, null);
+        row.size = kept;
+    }
+
+    /**
+     * Drops a removed vertex's row, and its incoming edges from the rows
+     * of its predecessors.
+     * @param v the vertex
+     * @param predecessors the vertices that had edges into it
+     */
+    private void dropRow(GraphNode v, Collection<GraphNode> predecessors) {
+        chunkFor(v.getId())[v.getId() % CHUNK] = null;
+        for (GraphNode u : predecessors) {
+            if (u != v && graph.containsVertex(u)) {
+                prune(u);
+            }
+        }
+    }
+
+    /**
+     * Returns a view of all edges in this graph.
+     * @return a Collection view of all edges in this graph
+     */
+    public synchronized Collection<GraphEdge> getEdges() {
+        return graph.getEdges();
+    }
+
+    /**
+     * Returns a view of all vertices in this graph.
+     * @return a Collection view of all vertices in this graph
+     */
+    public synchronized Collection<GraphNode> getVertices() {
+        return graph.getVertices();
+    }
+
+    /**
+     * Returns the number of edges in this graph.
+     * @return the number of edges in this graph
+     */
+    public synchronized int getEdgeCount() {
+        return graph.getEdgeCount();
+    }
+
+    /**
+     * Returns the number of vertices in this graph.
+     * @return the number of vertices in this graph
+     */
+    public synchronized int getVertexCount() {
+        return graph.getVertexCount();
+    }
+
+    /**
+     * Returns true if this graph's vertex collection contains vertex.
+     * @param vertex the vertex whose presence is being queried
+     * @return true iff this graph contains a vertex vertex
+     */
+    public synchronized boolean containsVertex(GraphNode vertex) {
+        return graph.containsVertex(vertex);
+    }
+
+    /**
+     * Returns true if this graph's edge collection contains edge.
+     * @param edge the edge whose presence is being queried
+     * @return true iff this graph contains an edge edge
+     */
+    public synchronized boolean containsEdge(GraphEdge edge) {
+        return graph.containsEdge(edge);
+    }
+
+    /**
+     * Returns a Collection view of the incoming edges incident to vertex.
+     * @param vertex the vertex whose incoming edges are to be returned
+     * @return a Collection view of the incoming edges incident
+     *         to vertex in this graph.
+     */
+    public synchronized Collection<GraphEdge> getInEdges(GraphNode vertex) {
+        return graph.getInEdges(vertex);
+    }
+
+    /**
+     * Returns a Collection view of the outgoing edges incident to vertex.
+     * @param vertex the vertex whose outgoing edges are to be returned
+     * @return a Collection view of the outgoing edges incident
+     *         to vertex in this graph.
+     */
+    public synchronized Collection<GraphEdge> getOutEdges(GraphNode vertex) {
+        return graph.getOutEdges(vertex);
+    }
+
+    /**
+     * Returns the number of incoming edges incident to vertex.
+     * @param vertex the vertex whose indegree is to be calculated
+     * @return the number of incoming edges incident to vertex
+     */
+    public synchronized int inDegree(GraphNode vertex) {
+        return graph.inDegree(vertex);
+    }
+
+    /**
+     * Returns the number of outgoing edges incident to vertex.
+     * @param vertex the vertex whose outdegree is to be calculated
+     * @return the number of outgoing edges incident to vertex
+     */
+    public synchronized int outDegree(GraphNode vertex) {
+        return graph.outDegree(vertex);
+    }
+
+    /**
+     * Returns a Collection view of the predecessors of vertex.
+     * @param vertex the vertex whose predecessors are to be returned
+     * @return a Collection view of the predecessors of
+     *         vertex in this graph.
+     */
+    public synchronized Collection<GraphNode> getPredecessors(GraphNode vertex) {
+        return graph.getPredecessors(vertex);
+    }
+
+    /**
+     * Returns a Collection view of the successors of vertex.
+     * @param vertex the vertex whose successors are to be returned
+     * @return a Collection view of the successors of
+     *         vertex in this graph.
+     */
+    public synchronized Collection<GraphNode> getSuccessors(GraphNode vertex) {
+        return graph.getSuccessors(vertex);
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the source.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the source of directedEdge, or null if it is not in this graph
+     */
+    public synchronized GraphNode getSource(GraphEdge directedEdge) {
+        return graph.getSource(directedEdge);
+    }
+
+    /**
+     * If directedEdge is an edge in this graph, returns the destination.
+     * otherwise returns null.
+     * @param directedEdge edge
+     * @return the destination of directedEdge, or null if it is not in this graph
+     */
+    public synchronized GraphNode getDest(GraphEdge directedEdge) {
+        return graph.getDest(directedEdge);
+    }
+
+    /**
+     * Returns the edge that connects v1 to v2.
+     * @param v1 first vertex
+     * @param v2 second vertex
+     * @return an edge that connects v1 to v2
+     *         or null if no such edge exists (or either vertex is not present).
+     */
+    public synchronized GraphEdge findEdge(GraphNode v1, GraphNode v2) {
+        return graph.findEdge(v1, v2);
+    }
+
+    /**
+     * Adds vertex to this graph.
+     * @param vertex the vertex to add
+     * @return true if the add is successful, and false otherwise
+     * @throws IllegalArgumentException if vertex is null
+     */
+    public synchronized boolean addVertex(GraphNode vertex) {
+        if (!graph.addVertex(vertex)) {
+            return false;
+        }
+        addRow(vertex);
+        return written(true);
+    }
+
+    /**
+     * Adds edge e to this graph such that it connects vertex v1 to v2.
+     * @param e  the edge to be added
+     * @param v1 the first vertex to be connected
+     * @param v2 the second vertex to be connected
+     * @return true if the add is successful, false otherwise
+     * @throws IllegalArgumentException if v1 or v2 is not in this graph
+     */
+    public synchronized boolean addEdge(GraphEdge e, GraphNode v1, GraphNode v2) {
+        if (!graph.addEdge(e, v1, v2)) {
+            return false;
+        }
+        append(e, v1, v2);
+        return written(true);
+    }
+
+    /**
+     * Adds many edges at once as one version.
+     * @param edges the edges to be added
+     * @param sources the first vertex of each edge
+     * @param dests the second vertex of each edge
+     * @return the number of edges added
+     * @throws IllegalArgumentException if the arrays are null or have different
+     *                                  lengths, or a vertex is not in the graph
+     */
+    public synchronized int addEdges(GraphEdge[] edges, GraphNode[] sources, GraphNode[] dests) {
+        if (edges == null || sources == null || dests == null
+                || edges.length != sources.length || edges.length != dests.length) {
+            throw new IllegalArgumentException();
+        }
+        HashSet<GraphEdge> fresh = new HashSet<>();
+        for (GraphEdge e : edges) {
+            if (e != null && !graph.containsEdge(e)) {
+                fresh.add(e);
+            }
+        }
+        int added;
+        if (graph instanceof ThreeTenAbstractGraph) {
+            added = ((ThreeTenAbstractGraph) graph).addEdges(edges, sources, dests);
+        } else if (graph instanceof ThreeTenGraph) {
+            added = ((ThreeTenGraph) graph).addEdges(edges, sources, dests);
+        } else {
+            for (int i = 0; i < edges.length; i++) {
+                if ((sources[i] != null && !graph.containsVertex(sources[i]))
+                        || (dests[i] != null && !graph.containsVertex(dests[i]))) {
+                    throw new IllegalArgumentException();
+                }
+            }
+            added = 0;
+            for (int i = 0; i < edges.length; i++) {
+                if (graph.addEdge(edges[i], sources[i], dests[i])) {
+                    added++;
+                }
+            }
+        }
+        for (GraphEdge e : edges) {
+            if (fresh.remove(e) && graph.containsEdge(e)) {
+                append(e, graph.getSource(e), graph.getDest(e));
+            }
+        }
+        written(added > 0);
+        return added;
+    }
+
+    /**
+     * Removes vertex (and every edge incident to it) from this graph.
+     * @param vertex the vertex to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public synchronized boolean removeVertex(GraphNode vertex) {
+        if (!graph.containsVertex(vertex)) {
+            return false;
+        }
+        ArrayList<GraphNode> predecessors = new ArrayList<>(graph.getPredecessors(vertex));
+        if (!graph.removeVertex(vertex)) {
+            return false;
+        }
+        dropRow(vertex, predecessors);
+        return written(true);
+    }
+
+    /**
+     * Removes edge from this graph.
+     * @param edge the edge to remove
+     * @return true if the removal is successful, false otherwise
+     */
+    public synchronized boolean removeEdge(GraphEdge edge) {
+        GraphNode source = graph.getSource(edge);
+        if (!graph.removeEdge(edge)) {
+            return false;
+        }
+        prune(source);
+        return written(true);
+    }
+
+    /**
+     * Removes many edges at once as one version.
+     * @param edges the edges to remove
+     * @return the number of edges removed
+     */
+    public synchronized int removeEdges(Collection<? extends GraphEdge> edges) {
+        if (edges == null) {
+            return 0;
+        }
+        HashSet<GraphNode> sources = new HashSet<>();
+        for (GraphEdge e : edges) {
+            if (graph.containsEdge(e)) {
+                sources.add(graph.getSource(e));
+            }
+        }
+        int removed;
+        if (graph instanceof ThreeTenAbstractGraph) {
+            removed = ((ThreeTenAbstractGraph) graph).removeEdges(edges);
+        } else if (graph instanceof ThreeTenGraph) {
+            removed = ((ThreeTenGraph) graph).removeEdges(edges);
+        } else {
+            removed = 0;
+            for (GraphEdge e : edges) {
+                if (graph.removeEdge(e)) {
+                    removed++;
+                }
+            }
+        }
+        for (GraphNode u : sources) {
+            prune(u);
+        }
+        written(removed > 0);
+        return removed;
+    }
+
+    /**
+     * Removes many vertices (and their edges) at once as one version.
+     * @param vertices the vertices to remove
+     * @return the number of vertices removed
+     */
+    public synchronized int removeVertices(Collection<? extends GraphNode> vertices) {
+        if (vertices == null) {
+            return 0;
+        }
+        HashSet<GraphNode> gone = new HashSet<>();
+        HashSet<GraphNode> predecessors = new HashSet<>();
+        for (GraphNode v : vertices) {
+            if (graph.containsVertex(v) && gone.add(v)) {
+                predecessors.addAll(graph.getPredecessors(v));
+            }
+        }
+        int removed;
+        if (graph instanceof ThreeTenAbstractGraph) {
+            removed = ((ThreeTenAbstractGraph) graph).removeVertices(vertices);
+        } else if (graph instanceof ThreeTenGraph) {
+            removed = ((ThreeTenGraph) graph).removeVertices(vertices);
+        } else {
+            removed = 0;
+            for (GraphNode v : vertices) {
+                if (graph.removeVertex(v)) {
+                    removed++;
+                }
+            }
+        }
+        for (GraphNode v : gone) {
+            chunkFor(v.getId())[v.getId() % CHUNK] = null;
+        }
+        for (GraphNode u : predecessors) {
+            if (graph.containsVertex(u)) {
+                prune(u);
+            }
+        }
+        written(removed > 0);
+        return removed;
+    }
+
+    /**
+     * Returns a {@code Factory} that creates an instance of this graph type.
+     * @return a new Factory object
+     */
+    public static Factory<Graph<GraphNode, GraphEdge>> getFactory() {
+        return new Factory<Graph<GraphNode, GraphEdge>>() {
+            public Graph<GraphNode, GraphEdge> create() {
+                return new VersionedThreeTenGraph();
+            }
+        };
+    }
+
+    /**
+     * test cases.
+     * @param args command line arguments
+     * @throws InterruptedException if interrupted while waiting for the reader
+     */
+    public static void main(String[] args) throws InterruptedException {
+        GraphNode[] nodes = new GraphNode[6];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new GraphNode(i);
+        }
+        final VersionedThreeTenGraph graph = new VersionedThreeTenGraph(new ThreeTenGraph());
+        for (GraphNode n : nodes) {
+            graph.addVertex(n);
+        }
+        graph.addEdge(new GraphEdge(0), nodes[5], nodes[2]);
+        graph.addEdge(new GraphEdge(1), nodes[5], nodes[0]);
+
+        Pin first = graph.pin();
+        Pin again = graph.pin();
+        if (first.getGraph() == again.getGraph() && first.getVersion() == 8 && graph.getPinnedCount() == 1) {
+            System.out.println("Yay 1");
+        }
+
+        graph.addEdge(new GraphEdge(2), nodes[4], nodes[0]);
+        graph.removeVertex(nodes[5]);
+        try (Pin latest = graph.pin()) {
+            if (first.getGraph().getEdgeCount() == 2 && first.getGraph().getVertexCount() == 6
+                    && latest.getGraph().getEdgeCount() == 1 && latest.getGraph().getVertexCount() == 5
+                    && graph.getPinnedCount() == 2) {
+                System.out.println("Yay 2");
+            }
+        }
+        first.close();
+        first.close();
+        if (graph.getPinnedCount() == 1) {
+            again.close();
+            if (graph.getPinnedCount() == 0) {
+                System.out.println("Yay 3");
+            }
+        }
+
+        // a reader sorts pinned versions while the writer keeps adding to a chain
+        final int n = 20000;
+        final VersionedThreeTenGraph chain = new VersionedThreeTenGraph();
+        final GraphNode[] chainNodes = new GraphNode[n];
+        for (int i = 0; i < n; i++) {
+            chainNodes[i] = new GraphNode(i);
+            chain.addVertex(chainNodes[i]);
+        }
+        final boolean[] ok = {true};
+        final int[] reads = {0};
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                long lastVersion = -1;
+                int lastEdges = -1;
+                while (lastEdges < n - 1) {
+                    try (Pin pin = chain.pin()) {
+                        IntDigraphAdapter snapshot = pin.getGraph();
+                        int[] order = snapshot.getCore().topologicalOrder();
+                        // edges only get added, one per version, so the snapshot must match its version
+                        if (pin.getVersion() < lastVersion || snapshot.getEdgeCount() < lastEdges
+                                || snapshot.getEdgeCount() != pin.getVersion() - n
+                                || order.length != n) {
+                            ok[0] = false;
+                        }
+                        lastVersion = pin.getVersion();
+                        lastEdges = snapshot.getEdgeCount();
+                        reads[0]++;
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 1; i < n; i++) {
+            chain.addEdge(new GraphEdge(i - 1), chainNodes[i - 1], chainNodes[i]);
+            if (i % 1000 == 0) {
+                // let the reader in
+                Thread.sleep(1);
+            }
+        }
+        reader.join();
+        if (ok[0] && reads[0] > 0 && chain.getPinnedCount() == 0) {
+            System.out.println("Yay 4 (" + reads[0] + " snapshots)");
+        }
+
+        // pin() only captures the table; the snapshot is built by the reader
+        // while the writer keeps going
+        final int big = 300000;
+        final VersionedThreeTenGraph wide = new VersionedThreeTenGraph();
+        GraphNode[] wideNodes = new GraphNode[big];
+        for (int i = 0; i < big; i++) {
+            wideNodes[i] = new GraphNode(i);
+            wide.addVertex(wideNodes[i]);
+            if (i > 0) {
+                wide.addEdge(new GraphEdge(i - 1), wideNodes[i - 1], wideNodes[i]);
+            }
+        }
+        long begin = System.nanoTime();
+        final Pin widePin = wide.pin();
+        long pinNanos = System.nanoTime() - begin;
+        final boolean[] building = {false};
+        Thread builder = new Thread(new Runnable() {
+            public void run() {
+                building[0] = true;
+                widePin.getGraph();
+            }
+        });
+        builder.start();
+        while (!building[0]) {
+            Thread.yield();
+        }
+        begin = System.nanoTime();
+        wide.addEdge(new GraphEdge(big), wideNodes[big - 1], wideNodes[0]);
+        wide.removeEdge(wide.findEdge(wideNodes[0], wideNodes[1]));
+        long writeNanos = System.nanoTime() - begin;
+        boolean wroteFirst = builder.isAlive();
+        builder.join();
+        begin = System.nanoTime();
+        IntDigraphAdapter.freeze(wide);
+        long freezeNanos = System.nanoTime() - begin;
+        if (widePin.getGraph().getEdgeCount() == big - 1 && widePin.getGraph().findEdge(wideNodes[0], wideNodes[1]) != null
+                && wroteFirst && pinNanos * 10 < freezeNanos) {
+            System.out.println("Yay 5 (pin " + pinNanos / 1000 + " us, two writes " + writeNanos / 1000
+                    + " us, freeze " + freezeNanos / 1000000 + " ms)");
+        }
+        widePin.close();
+
+        // random writes, batches included, on every kind of backing graph: each
+        // pinned version must still read as the graph did when it was pinned
+        java.util.Random rand = new java.util.Random(3);
+        boolean same = true;
+        ArrayList<Graph<GraphNode, GraphEdge>> backings = new ArrayList<>();
+        backings.add(new SparseThreeTenGraph());
+        backings.add(new ThreeTenGraph());
+        backings.add(new edu.uci.ics.jung.graph.DirectedSparseGraph<GraphNode, GraphEdge>());
+        for (Graph<GraphNode, GraphEdge> backing : backings) {
+            VersionedThreeTenGraph fuzzed = new VersionedThreeTenGraph(backing);
+            GraphNode[] pool = new GraphNode[40];
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = new GraphNode(i);
+            }
+            ArrayList<Pin> pins = new ArrayList<>();
+            ArrayList<String> expected = new ArrayList<>();
+            int edgeId = 0;
+            for (int op = 0; op < 3000; op++) {
+                GraphNode u = pool[rand.nextInt(pool.length)];
+                GraphNode v = pool[rand.nextInt(pool.length)];
+                int kind = rand.nextInt(10);
+                if (kind < 2) {
+                    fuzzed.addVertex(u);
+                } else if (kind < 5) {
+                    if (fuzzed.containsVertex(u) && fuzzed.containsVertex(v) && u != v
+                            && fuzzed.findEdge(u, v) == null) {
+                        fuzzed.addEdge(new GraphEdge(edgeId++), u, v);
+                    }
+                } else if (kind == 5) {
+                    fuzzed.removeEdge(fuzzed.findEdge(u, v));
+                } else if (kind == 6) {
+                    fuzzed.removeVertex(u);
+                } else if (kind == 7 && fuzzed.containsVertex(u)) {
+                    ArrayList<GraphNode> heads = new ArrayList<>();
+                    for (GraphNode w : fuzzed.getVertices()) {
+                        if (w != u && fuzzed.findEdge(u, w) == null && rand.nextBoolean()) {
+                            heads.add(w);
+                        }
+                    }
+                    GraphEdge[] batch = new GraphEdge[heads.size()];
+                    GraphNode[] tails = new GraphNode[heads.size()];
+                    for (int i = 0; i < batch.length; i++) {
+                        batch[i] = new GraphEdge(edgeId++);
+                        tails[i] = u;
+                    }
+                    long before = fuzzed.getVersion();
+                    int added = fuzzed.addEdges(batch, tails, heads.toArray(new GraphNode[0]));
+                    same &= fuzzed.getVersion() == before + ((added > 0) ? 1 : 0);
+                } else if (kind == 8) {
+                    ArrayList<GraphEdge> doomed = new ArrayList<>();
+                    if (fuzzed.containsVertex(u)) {
+                        doomed.addAll(fuzzed.getOutEdges(u));
+                    }
+                    doomed.add(fuzzed.findEdge(v, u));
+                    long before = fuzzed.getVersion();
+                    int removed = fuzzed.removeEdges(doomed);
+                    same &= fuzzed.getVersion() == before + ((removed > 0) ? 1 : 0);
+                } else {
+                    long before = fuzzed.getVersion();
+                    int removed = fuzzed.removeVertices(Arrays.asList(u, v));
+                    same &= fuzzed.getVersion() == before + ((removed > 0) ? 1 : 0);
+                }
+                if (rand.nextInt(20) == 0) {
+                    pins.add(fuzzed.pin());
+                    expected.add(describe(fuzzed));
+                }
+            }
+            for (int i = 0; i < pins.size(); i++) {
+                same &= describe(pins.get(i).getGraph()).equals(expected.get(i));
+                pins.get(i).close();
+            }
+            same &= fuzzed.getPinnedCount() == 0 && !pins.isEmpty();
+        }
+        if (same) {
+            System.out.println("Yay 6");
+        }
+    }
+
+    /**
+     * Lists each vertex of a graph with the ids of its successors, for the tests.
+     * @param g the graph
+     * @return one "id:successors" entry per vertex, in id order
+     */
+    private static String describe(Graph<GraphNode, GraphEdge> g) {
+        java.util.TreeMap<Integer, java.util.TreeSet<Integer>> rows = new java.util.TreeMap<>();
+        for (GraphNode v : g.getVertices()) {
+            java.util.TreeSet<Integer> heads = new java.util.TreeSet<>();
+            for (GraphNode w : g.getSuccessors(v)) {
+                heads.add(w.getId());
+            }
+            rows.put(v.getId(), heads);
+        }
+        return rows.toString();
+    }
+}
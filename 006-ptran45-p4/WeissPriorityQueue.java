@@ -9,7 +9,7 @@ import java.util.NoSuchElementException;
  * @param <K> any type
  * @author Phat Tran
  */
-public class WeissPriorityQueue<K> extends WeissAbstractCollection<K> {
+public class WeissPriorityQueue<K> extends WeissAbstractCollection<K> implements UpdatableQueue<K> {
 
 	/**
 	 * defaul capacity for heap.